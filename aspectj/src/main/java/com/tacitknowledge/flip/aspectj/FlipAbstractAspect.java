@@ -17,13 +17,16 @@ package com.tacitknowledge.flip.aspectj;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import com.tacitknowledge.flip.FeatureService;
 import com.tacitknowledge.flip.FlipContext;
 import com.tacitknowledge.flip.aspectj.converters.Converter;
 import com.tacitknowledge.flip.aspectj.converters.ConvertersHandler;
-import com.tacitknowledge.flip.model.FeatureState;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
@@ -55,6 +58,11 @@ public abstract class FlipAbstractAspect {
      */
     private String defaultValue;
     
+    /**
+     * The invocation plans of the intercepted methods.
+     */
+    private final ConcurrentMap<Method, FlipInvocationPlan> plans = new ConcurrentHashMap<Method, FlipInvocationPlan>();
+    
     /**
      * Returns the {@link FeatureService} object used to calculate the features.
      * By default it returns the object set in {@link FlipContext}.
@@ -129,24 +137,18 @@ public abstract class FlipAbstractAspect {
      */
     @Around(value="anyMethod() && @annotation(flip)", argNames="flip")
     public Object aroundFlippableMethods(ProceedingJoinPoint pjp, Flippable flip) throws Throwable {
-        MethodSignature methodSignature = (MethodSignature)pjp.getSignature();
-        Method method = methodSignature.getMethod();
+        FlipInvocationPlan plan = getInvocationPlan(((MethodSignature)pjp.getSignature()).getMethod(), flip);
+        FeatureService featureService = getFeatureService();
         
-        if (isFeatureEnabled(flip.feature())) {
-            Annotation[][] paramAnnotations = method.getParameterAnnotations();
-            Object[] params = pjp.getArgs();
-            Class[] paramTypes = method.getParameterTypes();
-
-            for(int i=0;i<paramAnnotations.length;i++) {
-                FlipParam flipParam = findFlipParamAnnoattion(paramAnnotations[i]);
-                if (!isFeatureEnabled(flipParam.feature())) {
-                    params[i] = getProcessedDisabledValue(paramTypes[i], flipParam.disabledValue(), pjp.getThis());
-                }
+        if (plan.isEnabled(featureService)) {
+            if (!plan.hasFlipParams()) {
+                return pjp.proceed();
             }
-
-            return pjp.proceed(params);
+            
+            Object[] params = plan.processParams(featureService, pjp, getValueExpressionEvaluator());
+            return params == null ? pjp.proceed() : pjp.proceed(params);
         } else {
-            return getProcessedDisabledValue(method.getReturnType(), flip.disabledValue(), pjp.getThis());
+            return plan.getDisabledValue(getValueExpressionEvaluator(), pjp.getThis());
         }
     }
     
@@ -155,18 +157,76 @@ public abstract class FlipAbstractAspect {
         return aroundFlippableMethods(pjp, flip);
     }
     
+    /**
+     * Returns the invocation plan of the method. The plan is built on the first
+     * call of the method and is rebuilt if the annotation, the converters or 
+     * the default value have changed since then.
+     * 
+     * @param method the intercepted method.
+     * @param flip the {@link Flippable} annotation which marks the method.
+     * @return the invocation plan.
+     */
+    private FlipInvocationPlan getInvocationPlan(Method method, Flippable flip) {
+        ConvertersHandler convertersHandler = getConvertersHandler();
+        int convertersModificationCount = convertersHandler.getModificationCount();
+        FlipInvocationPlan plan = plans.get(method);
+        if (plan == null || !plan.isValid(flip, convertersHandler, convertersModificationCount, defaultValue)) {
+            plan = createInvocationPlan(method, flip, convertersHandler, convertersModificationCount);
+            plans.put(method, plan);
+        }
+        return plan;
+    }
+    
+    /**
+     * Builds the invocation plan of the method.
+     * 
+     * @param method the intercepted method.
+     * @param flip the {@link Flippable} annotation which marks the method.
+     * @param convertersHandler the converters handler used to convert the disabled values.
+     * @param convertersModificationCount the modification count of the converters handler.
+     * @return the invocation plan.
+     */
+    private FlipInvocationPlan createInvocationPlan(Method method, Flippable flip, 
+            ConvertersHandler convertersHandler, int convertersModificationCount) {
+        Annotation[][] paramAnnotations = method.getParameterAnnotations();
+        Class[] paramTypes = method.getParameterTypes();
+        
+        int count = 0;
+        FlipParam[] flipParams = new FlipParam[paramAnnotations.length];
+        for(int i=0;i<paramAnnotations.length;i++) {
+            flipParams[i] = findFlipParamAnnoattion(paramAnnotations[i]);
+            if (flipParams[i] != null) {
+                count++;
+            }
+        }
+        
+        int[] paramIndexes = new int[count];
+        String[] paramFeatures = new String[count];
+        FlipInvocationPlan.DisabledValue[] paramDisabledValues = new FlipInvocationPlan.DisabledValue[count];
+        for(int i=0, j=0;i<flipParams.length;i++) {
+            if (flipParams[i] != null) {
+                paramIndexes[j] = i;
+                paramFeatures[j] = getFeature(flipParams[i].feature());
+                paramDisabledValues[j] = createDisabledValue(paramTypes[i], flipParams[i].disabledValue(), convertersHandler);
+                j++;
+            }
+        }
+        
+        return new FlipInvocationPlan(flip, getFeature(flip.feature()), 
+                createDisabledValue(method.getReturnType(), flip.disabledValue(), convertersHandler), 
+                paramIndexes, paramFeatures, paramDisabledValues, 
+                convertersHandler, convertersModificationCount, defaultValue);
+    }
     
     /**
-     * Returns if the feature is enabled. If the feature is empty then the feature
-     * is considered enabled.
+     * Returns the feature name or null if the feature is empty. The empty
+     * feature is considered enabled.
      * 
-     * @param feature the name of the feature to test.
-     * @return true if the feature is enabled or the feature name is empty.
+     * @param feature the name of the feature declared.
+     * @return the feature name or null if it is empty.
      */
-    private boolean isFeatureEnabled(String feature) {
-        return feature == null ||
-                feature.isEmpty() 
-                || getFeatureService().getFeatureState(feature) == FeatureState.ENABLED;
+    private String getFeature(String feature) {
+        return feature == null || feature.isEmpty() ? null : feature;
     }
     
     /**
@@ -185,60 +245,89 @@ public abstract class FlipAbstractAspect {
     }
     
     /**
-     * Processes the disabled value used. If the value contains the <code>${}</code>
-     * statement then this statement is processed using {@link #getValueExpressionEvaluator() }, 
-     * otherwise it is used converter found by {@link #getConvertersHandler() }. 
-     * The converter is found by ouputClass parameter. If no converter is found and 
-     * the outputClass is not a {@link CharSequence} then {@link IllegalArgumentException}
-     * is thrown.
+     * Prepares the disabled value. If the value contains the <code>${}</code>
+     * statement then this statement is processed using {@link #getValueExpressionEvaluator() } 
+     * each time the value is used, otherwise the value is converted by the converter 
+     * found in the converters handler by outputClass parameter. If no converter is 
+     * found and the outputClass is not a {@link CharSequence} then 
+     * {@link IllegalArgumentException} is thrown when the value is used.
      * 
      * @param outputClass the required object type
-     * @param value the disabled value to evaluate.
-     * @param context the object of the method intercepted. This object is used as context to
-     *  evaluate value expression.
+     * @param value the disabled value to prepare.
+     * @param convertersHandler the converters handler.
      * 
-     * @return the evaluated value
-     * @throws IllegalArgumentException if cannot find the converter.
+     * @return the prepared disabled value.
      */
-    private Object getProcessedDisabledValue(Class outputClass, String value, Object context) {
+    private FlipInvocationPlan.DisabledValue createDisabledValue(Class outputClass, String value, ConvertersHandler convertersHandler) {
         if (value == null || value.isEmpty()) {
             value = defaultValue;
         }
+        if (value == null) {
+            return new FlipInvocationPlan.DisabledValue(null, null, null, outputClass, null, null);
+        }
         
         Matcher m = VALUE_EXPRESSION_REGEX.matcher(value);
         if (m.find()) {
-            ValueExpressionEvaluator evaluator = getValueExpressionEvaluator();
-            if (evaluator == null) {
-                return getUntouchedDisabledValue(outputClass, value);
-            }
-            
-            return evaluator.evaluate(context, m.group(1));
+            return createUntouchedDisabledValue(m.group(1), outputClass, value);
         } else {
-            Converter converter = getConvertersHandler().getConverter(outputClass);
+            Converter converter = convertersHandler.getConverter(outputClass);
             if (converter == null) {
-                return getUntouchedDisabledValue(outputClass, value);
+                return createUntouchedDisabledValue(null, outputClass, value);
             }
             
-            return converter.convert(value, outputClass);
+            try {
+                Object converted = converter.convert(value, outputClass);
+                if (isImmutable(converted)) {
+                    return new FlipInvocationPlan.DisabledValue(null, converted, null, outputClass, null, null);
+                }
+            } catch (RuntimeException e) {
+                // the failure is reported when the value is used
+            }
+            return new FlipInvocationPlan.DisabledValue(null, null, value, outputClass, converter, null);
         }
     }
     
     /**
-     * Returns the value if it cannot be converted or evaluated as value expression.
+     * Checks if the converted disabled value could be shared between the calls.
+     * Only the strings, the primitive wrappers, the standard big numbers and 
+     * the enumerations are treated as immutable.
+     * 
+     * @param value the converted value.
+     * @return true if the value is immutable.
+     */
+    private static boolean isImmutable(Object value) {
+        return value == null
+                || value instanceof String
+                || value instanceof Boolean
+                || value instanceof Character
+                || value instanceof Byte
+                || value instanceof Short
+                || value instanceof Integer
+                || value instanceof Long
+                || value instanceof Float
+                || value instanceof Double
+                || value.getClass() == BigInteger.class
+                || value.getClass() == BigDecimal.class
+                || value instanceof Enum;
+    }
+    
+    /**
+     * Prepares the value used if it cannot be converted or evaluated as value expression.
      * If the outputClass parameter is no {@link CharSequence} then the
-     * {@link IllegalArgumentException} is thrown, otherwise the value itself is
-     * returned.
+     * {@link IllegalArgumentException} is thrown when the value is used, otherwise 
+     * the value itself is used.
      * 
+     * @param expression the value expression or null if there is no such.
      * @param outputClass the required output object type.
      * @param value the value.
-     * @return the value string if is possible.
-     * @throws IllegalArgumentException if cannot convert value parameter to outputClass.
+     * @return the prepared disabled value.
      */
-    private Object getUntouchedDisabledValue(Class outputClass, String value) {
+    private FlipInvocationPlan.DisabledValue createUntouchedDisabledValue(String expression, Class outputClass, String value) {
         if (CharSequence.class.isAssignableFrom(outputClass)) {
-            return value;
+            return new FlipInvocationPlan.DisabledValue(expression, value, null, outputClass, null, null);
         } else {
-            throw new IllegalArgumentException(String.format("Cannot find converter for class [%s].", outputClass.getName()));
+            return new FlipInvocationPlan.DisabledValue(expression, null, null, outputClass, null, 
+                    String.format("Cannot find converter for class [%s].", outputClass.getName()));
         }
     }
     
@@ -20,19 +20,34 @@ import org.aspectj.lang.annotation.Aspect;
 /**
  * The default AspectJ aspect. When you configure the AspectJ specify this
  * aspect to intercept all methods annotated with {@link Flippable}.
+ * The aspect is a singleton, so the invocation plans and the default value
+ * set by {@link #setDefaultValue(String)} on the instance returned by
+ * {@link #aspectOf()} are shared by all of the advised methods.
  * 
  * @author ssoloviov
  */
 @Aspect
 public class FlipAspectJAspect extends FlipAbstractAspect {
     
+    private static final FlipAspectJAspect instance = new FlipAspectJAspect();
+    
     /**
-     * Instantiates and returns the aspect to AspectJ.
+     * Returns the aspect instance to AspectJ.
      * 
      * @return the {@link FlipAspectJAspect} instance.
      */
     public static FlipAspectJAspect aspectOf() {
-        return new FlipAspectJAspect();
+        return instance;
     }    
     
+    /**
+     * Returns if the aspect instance is available. The singleton aspect is 
+     * always available.
+     * 
+     * @return always true.
+     */
+    public static boolean hasAspect() {
+        return true;
+    }
+    
 }
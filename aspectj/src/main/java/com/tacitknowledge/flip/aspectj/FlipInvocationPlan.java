@@ -0,0 +1,268 @@
+/*
+ * Copyright 2012 Tacit Knowledge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tacitknowledge.flip.aspectj;
+
+import com.tacitknowledge.flip.FeatureHandle;
+import com.tacitknowledge.flip.FeatureService;
+import com.tacitknowledge.flip.aspectj.converters.Converter;
+import com.tacitknowledge.flip.aspectj.converters.ConvertersHandler;
+import com.tacitknowledge.flip.model.FeatureState;
+import org.aspectj.lang.ProceedingJoinPoint;
+
+/**
+ * The precomputed invocation plan of a method intercepted by {@link FlipAbstractAspect}.
+ * The plan holds the feature of the {@link Flippable} annotation, the indexes 
+ * of the parameters marked with {@link FlipParam} and their features, and 
+ * the disabled values already converted or with the value expressions extracted.
+ * The feature handles are resolved from the feature service the first time 
+ * the plan is used with it.
+ * 
+ * @author ssoloviov
+ */
+final class FlipInvocationPlan {
+    
+    private final Flippable flip;
+    
+    private final String feature;
+    
+    private final DisabledValue disabledValue;
+    
+    private final int[] paramIndexes;
+    
+    private final String[] paramFeatures;
+    
+    private final DisabledValue[] paramDisabledValues;
+    
+    private final ConvertersHandler convertersHandler;
+    
+    private final int convertersModificationCount;
+    
+    private final String defaultValue;
+    
+    private volatile Handles handles;
+
+    /**
+     * Constructs the plan.
+     * 
+     * @param flip the annotation the plan is built for.
+     * @param feature the feature of the method or <code>null</code> if there is no such.
+     * @param disabledValue the value returned if the feature of the method is disabled.
+     * @param paramIndexes the indexes of the parameters marked with {@link FlipParam}.
+     * @param paramFeatures the features of the parameters marked with {@link FlipParam}.
+     * @param paramDisabledValues the values of the parameters marked with {@link FlipParam} 
+     *  if their features are disabled.
+     * @param convertersHandler the converters handler used to build the plan.
+     * @param convertersModificationCount the modification count of the converters handler.
+     * @param defaultValue the default disabled value used to build the plan.
+     */
+    FlipInvocationPlan(Flippable flip, String feature, DisabledValue disabledValue, 
+            int[] paramIndexes, String[] paramFeatures, DisabledValue[] paramDisabledValues, 
+            ConvertersHandler convertersHandler, int convertersModificationCount, String defaultValue) {
+        this.flip = flip;
+        this.feature = feature;
+        this.disabledValue = disabledValue;
+        this.paramIndexes = paramIndexes;
+        this.paramFeatures = paramFeatures;
+        this.paramDisabledValues = paramDisabledValues;
+        this.convertersHandler = convertersHandler;
+        this.convertersModificationCount = convertersModificationCount;
+        this.defaultValue = defaultValue;
+    }
+    
+    /**
+     * Checks if the plan was built for the same annotation, converters and 
+     * default value, so it could be used as is.
+     * 
+     * @param flip the annotation of the intercepted method.
+     * @param convertersHandler the current converters handler.
+     * @param convertersModificationCount the current modification count of the converters handler.
+     * @param defaultValue the current default disabled value.
+     * @return true if the plan is up to date.
+     */
+    boolean isValid(Flippable flip, ConvertersHandler convertersHandler, int convertersModificationCount, String defaultValue) {
+        return this.flip == flip
+                && this.convertersHandler == convertersHandler
+                && this.convertersModificationCount == convertersModificationCount
+                && (this.defaultValue == null ? defaultValue == null : this.defaultValue.equals(defaultValue));
+    }
+    
+    /**
+     * Checks if the feature of the method is enabled.
+     * 
+     * @param featureService the feature service to check the feature with.
+     * @return true if the feature is enabled or the method has no feature.
+     */
+    boolean isEnabled(FeatureService featureService) {
+        return feature == null || isEnabled(featureService, getHandles(featureService).handle, feature);
+    }
+    
+    /**
+     * Returns the value returned if the feature of the method is disabled.
+     * 
+     * @param evaluator the evaluator of the value expressions.
+     * @param context the object of the intercepted method.
+     * @return the disabled value.
+     */
+    Object getDisabledValue(ValueExpressionEvaluator evaluator, Object context) {
+        return disabledValue.get(evaluator, context);
+    }
+    
+    /**
+     * Checks if there are parameters marked with {@link FlipParam}.
+     * 
+     * @return true if at least one parameter is marked.
+     */
+    boolean hasFlipParams() {
+        return paramIndexes.length > 0;
+    }
+    
+    /**
+     * Replaces the values of parameters whose features are disabled with the 
+     * disabled values. The arguments of the join point are copied only if at 
+     * least one of the features is disabled, so the call with all the features 
+     * enabled allocates nothing.
+     * 
+     * @param featureService the feature service to check the features with.
+     * @param pjp the join point of the intercepted method.
+     * @param evaluator the evaluator of the value expressions.
+     * @return the processed parameter values or <code>null</code> if the 
+     *  original values should be used.
+     */
+    Object[] processParams(FeatureService featureService, ProceedingJoinPoint pjp, ValueExpressionEvaluator evaluator) {
+        FeatureHandle[] paramHandles = getHandles(featureService).paramHandles;
+        Object[] params = null;
+        for(int i=0;i<paramIndexes.length;i++) {
+            if (!isEnabled(featureService, paramHandles[i], paramFeatures[i])) {
+                if (params == null) {
+                    params = pjp.getArgs();
+                }
+                params[paramIndexes[i]] = paramDisabledValues[i].get(evaluator, pjp.getThis());
+            }
+        }
+        return params;
+    }
+    
+    private boolean isEnabled(FeatureService featureService, FeatureHandle handle, String feature) {
+        if (feature == null) {
+            return true;
+        }
+        if (handle != null) {
+            return handle.isEnabled();
+        }
+        return featureService.getFeatureState(feature) == FeatureState.ENABLED;
+    }
+    
+    private Handles getHandles(FeatureService featureService) {
+        Handles current = handles;
+        if (current == null || current.featureService != featureService) {
+            current = new Handles(featureService, feature, paramFeatures);
+            handles = current;
+        }
+        return current;
+    }
+
+    /**
+     * The feature handles resolved from a feature service. If the feature 
+     * service does not provide the handle the feature is checked by name.
+     */
+    private static final class Handles {
+        
+        private final FeatureService featureService;
+        
+        private final FeatureHandle handle;
+        
+        private final FeatureHandle[] paramHandles;
+
+        private Handles(FeatureService featureService, String feature, String[] paramFeatures) {
+            this.featureService = featureService;
+            this.handle = resolve(featureService, feature);
+            this.paramHandles = new FeatureHandle[paramFeatures.length];
+            for(int i=0;i<paramFeatures.length;i++) {
+                paramHandles[i] = resolve(featureService, paramFeatures[i]);
+            }
+        }
+        
+        private static FeatureHandle resolve(FeatureService featureService, String feature) {
+            return feature == null || featureService == null ? null : featureService.handle(feature);
+        }
+    }
+    
+    /**
+     * The disabled value of a method or a parameter. The value is either 
+     * converted when the plan is built, or is a value expression evaluated 
+     * on each use, or is converted on each use. The converted value is kept 
+     * in the plan only if it is immutable, because the same instance is 
+     * returned to every caller. Other values and the values the converter 
+     * has failed on while building the plan are converted on each use, so 
+     * the callers never share a mutable instance and the failure is reported 
+     * only when the value is really used.
+     */
+    static final class DisabledValue {
+        
+        private final String expression;
+        
+        private final Object value;
+        
+        private final String text;
+        
+        private final Class outputClass;
+        
+        private final Converter converter;
+        
+        private final String error;
+
+        /**
+         * Constructs the disabled value.
+         * 
+         * @param expression the value expression or <code>null</code> if there is no such.
+         * @param value the converted value used if there is no expression or evaluator.
+         * @param text the text of the value converted on each use by the converter.
+         * @param outputClass the type to convert the text to.
+         * @param converter the converter of the text or <code>null</code> if the value is already converted.
+         * @param error the message of {@link IllegalArgumentException} thrown on use 
+         *  if the value could not be converted.
+         */
+        DisabledValue(String expression, Object value, String text, Class outputClass, Converter converter, String error) {
+            this.expression = expression;
+            this.value = value;
+            this.text = text;
+            this.outputClass = outputClass;
+            this.converter = converter;
+            this.error = error;
+        }
+        
+        /**
+         * Returns the disabled value.
+         * 
+         * @param evaluator the evaluator of the value expression.
+         * @param context the context of the value expression.
+         * @return the disabled value.
+         * @throws IllegalArgumentException if the value cannot be converted.
+         */
+        Object get(ValueExpressionEvaluator evaluator, Object context) {
+            if (expression != null && evaluator != null) {
+                return evaluator.evaluate(context, expression);
+            }
+            if (error != null) {
+                throw new IllegalArgumentException(error);
+            }
+            if (converter != null) {
+                return converter.convert(text, outputClass);
+            }
+            return value;
+        }
+    }
+}
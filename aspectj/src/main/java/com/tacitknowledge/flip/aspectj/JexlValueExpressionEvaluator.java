@@ -15,29 +15,61 @@
  */
 package com.tacitknowledge.flip.aspectj;
 
-import org.apache.commons.jexl2.Expression;
+import com.tacitknowledge.flip.model.ExpressionCache;
 import org.apache.commons.jexl2.JexlContext;
-import org.apache.commons.jexl2.JexlEngine;
 import org.apache.commons.jexl2.ObjectContext;
 
 /**
  * This is default value expression evaluator. This evaluator uses Jexl to evaluate 
- * the expressions.
+ * the expressions. The compiled expressions are cached by the expression string, 
+ * so the disabled values are not parsed on each call. 
  * 
  * @author ssoloviov
  */
 public class JexlValueExpressionEvaluator implements ValueExpressionEvaluator {
+    
+    /**
+     * The default maximum number of compiled expressions held by the evaluator.
+     */
+    public static final int DEFAULT_MAX_CACHE_SIZE = 256;
+
+    private final ExpressionCache expressions;
+
+    /**
+     * Constructs the evaluator with the default cache size.
+     */
+    public JexlValueExpressionEvaluator() {
+        this(DEFAULT_MAX_CACHE_SIZE);
+    }
 
-    private JexlEngine engine = new JexlEngine();
+    /**
+     * Constructs the evaluator which holds at most <code>maxCacheSize</code> 
+     * compiled expressions. The parse cache of the Jexl engine has the same size.
+     * 
+     * @param maxCacheSize the maximum number of expressions to hold.
+     * @throws IllegalArgumentException if the <code>maxCacheSize</code> is not positive.
+     */
+    public JexlValueExpressionEvaluator(int maxCacheSize) {
+        expressions = new ExpressionCache(maxCacheSize);
+        expressions.getEngine().setCache(maxCacheSize);
+    }
     
     /**
      * {@inheritDoc }
      */
     public Object evaluate(Object context, String expression) {
-        Expression jexlExpression = engine.createExpression(expression);
-        JexlContext jexlContext = new ObjectContext(engine, context);
+        JexlContext jexlContext = new ObjectContext(expressions.getEngine(), context);
         
-        return jexlExpression.evaluate(jexlContext);
+        return expressions.getExpression(expression).evaluate(jexlContext);
+    }
+    
+    /**
+     * Returns the cache of compiled expressions used by this evaluator.
+     * 
+     * @return the {@link ExpressionCache} instance.
+     */
+    public ExpressionCache getExpressionCache() {
+        return expressions;
     }
     
 }
@@ -28,6 +28,8 @@ import java.util.Map;
 public class ConvertersHandler {
     
     private final Map<Class, Converter> converters = new HashMap<Class, Converter>();
+    
+    private volatile int modificationCount;
 
     /**
      * Constructs new converter handler.
@@ -46,6 +48,7 @@ public class ConvertersHandler {
         for(Class klass : converter.getManagedClasses()) {
             converters.put(klass, converter);
         }
+        modificationCount++;
     }
     
     /**
@@ -70,6 +73,17 @@ public class ConvertersHandler {
         return converters.get(klass);
     }
     
+    /**
+     * Returns the number of modifications of this handler. The value changes 
+     * each time a converter is registered, so the values converted before could 
+     * be detected as outdated.
+     * 
+     * @return the modification count.
+     */
+    public int getModificationCount() {
+        return modificationCount;
+    }
+    
     /**
      * Register the default converters. It registers converters for primitive types
      * and its wrappers.
@@ -49,6 +49,17 @@ public class FallDownConvertersHandler extends ConvertersHandler {
         }
         return converter;
     }
+
+    /**
+     * Returns the modification count of this handler which also reflects the 
+     * modifications of the parent handler.
+     * 
+     * @return the modification count.
+     */
+    @Override
+    public int getModificationCount() {
+        return super.getModificationCount() + parent.getModificationCount();
+    }
     
     
 }
@@ -16,8 +16,12 @@
 package com.tacitknowledge.flip.aspectj;
 
 import java.lang.reflect.Method;
+import java.util.Date;
 
+import com.tacitknowledge.flip.FeatureHandle;
 import com.tacitknowledge.flip.FeatureService;
+import com.tacitknowledge.flip.aspectj.converters.Converter;
+import com.tacitknowledge.flip.aspectj.converters.ConvertersHandler;
 import com.tacitknowledge.flip.aspectj.fixture.FixtureClass;
 import com.tacitknowledge.flip.model.FeatureState;
 import org.aspectj.lang.ProceedingJoinPoint;
@@ -71,6 +75,7 @@ public class FlipAbstractAspectTest {
     private Method flippableMethodWithShortParam;
     private Method flippableMethodWithElParam;
     private Method flippableMethodWithElParamInsideText;
+    private Method flippableMethodWithUnannotatedParam;
     private Method flippableMethodReturnsBoolean;
     private Method flippableMethodReturnsByte;
     private Method flippableMethodReturnsChar;
@@ -81,6 +86,7 @@ public class FlipAbstractAspectTest {
     private Method flippableMethodReturnsShort;
     private Method flippableMethodReturnsEl;
     private Method flippableMethodReturnsElInsideText;
+    private Method flippableMethodReturnsDate;
     
     @Before
     public void setUp() throws NoSuchMethodException, Throwable {
@@ -92,6 +98,12 @@ public class FlipAbstractAspectTest {
                 return currentMethod.invoke(fixtureClassObject, (Object[]) invocation.getArguments()[0]);
             }
         });
+        when(pjp.proceed()).thenAnswer(new Answer<Object>(){
+
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return currentMethod.invoke(fixtureClassObject, pjp.getArgs());
+            }
+        });
         when(methodSignature.getMethod()).thenAnswer(new Answer<Method>() {
 
             public Method answer(InvocationOnMock invocation) throws Throwable {
@@ -142,6 +154,8 @@ public class FlipAbstractAspectTest {
         when(pjp.getArgs()).thenReturn(new String[]{"xx"});
         
         assertEquals("resultxx", aspect.aroundFlippableMethods(pjp, flipAnnotation));
+        verify(pjp).proceed();
+        verify(pjp, never()).proceed(any(Object[].class));
     }
     
     @Test
@@ -242,6 +256,76 @@ public class FlipAbstractAspectTest {
         
         assertEquals("resultabrakadabra", aspect.aroundFlippableMethods(pjp, flipAnnotation));
     }
+    
+    @Test
+    public void testFlippableMethodWithUnannotatedParamDisabled() throws Throwable {
+        setCurrentMethod(flippableMethodWithUnannotatedParam);
+        when(featureService.getFeatureState(eq("test"))).thenReturn(FeatureState.DISABLED);
+        when(pjp.getArgs()).thenReturn(new String[]{"result", "xx"});
+        
+        assertEquals("resultaaa", aspect.aroundFlippableMethods(pjp, flipAnnotation));
+    }
+    
+    @Test
+    public void testFeatureHandleIsResolvedOnce() throws Throwable {
+        setCurrentMethod(flippableMethod);
+        FeatureHandle handle = mock(FeatureHandle.class);
+        when(featureService.handle(eq("test"))).thenReturn(handle);
+        when(handle.isEnabled()).thenReturn(true, false);
+        
+        assertEquals("result", aspect.aroundFlippableMethods(pjp, flipAnnotation));
+        assertEquals("test-value", aspect.aroundFlippableMethods(pjp, flipAnnotation));
+        verify(featureService, times(1)).handle(eq("test"));
+        verify(featureService, never()).getFeatureState(anyString());
+    }
+    
+    @Test
+    public void testConverterAddedAfterFirstCallIsUsed() throws Throwable {
+        setCurrentMethod(flippableMethodReturnsInt);
+        when(featureService.getFeatureState(eq("test"))).thenReturn(FeatureState.DISABLED);
+        ConvertersHandler convertersHandler = new ConvertersHandler();
+        doReturn(convertersHandler).when(aspect).getConvertersHandler();
+        assertEquals(10, aspect.aroundFlippableMethods(pjp, flipAnnotation));
+        
+        Converter converter = mock(Converter.class);
+        when(converter.getManagedClasses()).thenReturn(new Class[] { Integer.TYPE });
+        when(converter.convert(eq("10"), eq(Integer.TYPE))).thenReturn(20);
+        convertersHandler.addConverter(converter);
+        
+        assertEquals(20, aspect.aroundFlippableMethods(pjp, flipAnnotation));
+    }
+    
+    @Test
+    public void testMutableDisabledValueIsConvertedOnEachCall() throws Throwable {
+        setCurrentMethod(flippableMethodReturnsDate);
+        when(featureService.getFeatureState(eq("test"))).thenReturn(FeatureState.DISABLED);
+        ConvertersHandler convertersHandler = new ConvertersHandler();
+        doReturn(convertersHandler).when(aspect).getConvertersHandler();
+        Converter converter = mock(Converter.class);
+        when(converter.getManagedClasses()).thenReturn(new Class[] { Date.class });
+        when(converter.convert(eq("1000"), eq(Date.class))).thenAnswer(new Answer<Object>() {
+
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return new Date(1000);
+            }
+        });
+        convertersHandler.addConverter(converter);
+        
+        String defaultValue = aspect.getDefaultValue();
+        try {
+            aspect.setDefaultValue(new String("1000"));
+            Object first = aspect.aroundFlippableMethods(pjp, flipAnnotation);
+            aspect.setDefaultValue(new String("1000"));
+            Object second = aspect.aroundFlippableMethods(pjp, flipAnnotation);
+            
+            assertEquals(new Date(1000), first);
+            assertEquals(new Date(1000), second);
+            assertNotSame(first, second);
+            verify(converter, times(3)).convert(eq("1000"), eq(Date.class));
+        } finally {
+            aspect.setDefaultValue(defaultValue);
+        }
+    }
     //-----------------
     @Test
     public void testFlippableMethodReturnsBooleanDisabled() throws Throwable {
@@ -337,6 +421,7 @@ public class FlipAbstractAspectTest {
         flippableMethodWithShortParam = FixtureClass.class.getMethod("flippableMethodWithShortParam", Short.TYPE);
         flippableMethodWithElParam = FixtureClass.class.getMethod("flippableMethodWithElParam", String.class);
         flippableMethodWithElParamInsideText = FixtureClass.class.getMethod("flippableMethodWithElParamInsideText", String.class);
+        flippableMethodWithUnannotatedParam = FixtureClass.class.getMethod("flippableMethodWithUnannotatedParam", String.class, String.class);
 
         flippableMethodReturnsBoolean = FixtureClass.class.getMethod("flippableMethodReturnsBoolean");
         flippableMethodReturnsByte = FixtureClass.class.getMethod("flippableMethodReturnsByte");
@@ -348,6 +433,7 @@ public class FlipAbstractAspectTest {
         flippableMethodReturnsShort = FixtureClass.class.getMethod("flippableMethodReturnsShort");
         flippableMethodReturnsEl = FixtureClass.class.getMethod("flippableMethodReturnsEl");
         flippableMethodReturnsElInsideText = FixtureClass.class.getMethod("flippableMethodReturnsElInsideText");
+        flippableMethodReturnsDate = FixtureClass.class.getMethod("flippableMethodReturnsDate");
         
     }
 
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012 Tacit Knowledge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tacitknowledge.flip.aspectj;
+
+import com.tacitknowledge.flip.aspectj.fixture.FixtureClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ssoloviov
+ */
+public class JexlValueExpressionEvaluatorTest {
+    
+    @Test
+    public void testExpressionIsCompiledOnce() {
+        JexlValueExpressionEvaluator evaluator = new JexlValueExpressionEvaluator();
+        FixtureClass context = new FixtureClass();
+        
+        assertEquals("abrakadabra", evaluator.evaluate(context, "value"));
+        context.setValue("xyz");
+        assertEquals("xyz", evaluator.evaluate(context, "value"));
+        assertEquals(1, evaluator.getExpressionCache().getMissCount());
+        assertEquals(1, evaluator.getExpressionCache().getHitCount());
+    }
+    
+    @Test
+    public void testCacheIsBounded() {
+        JexlValueExpressionEvaluator evaluator = new JexlValueExpressionEvaluator(2);
+        FixtureClass context = new FixtureClass();
+        
+        evaluator.evaluate(context, "value");
+        evaluator.evaluate(context, "value + '1'");
+        assertEquals("abrakadabra2", evaluator.evaluate(context, "value + '2'"));
+        assertEquals(2, evaluator.getExpressionCache().size());
+    }
+    
+}
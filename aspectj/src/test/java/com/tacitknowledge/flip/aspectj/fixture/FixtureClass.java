@@ -17,6 +17,7 @@ package com.tacitknowledge.flip.aspectj.fixture;
 
 import com.tacitknowledge.flip.aspectj.FlipParam;
 import com.tacitknowledge.flip.aspectj.Flippable;
+import java.util.Date;
 
 /**
  *
@@ -99,6 +100,11 @@ public class FixtureClass {
         return "result" + param;
     }
 
+    @Flippable
+    public String flippableMethodWithUnannotatedParam(String prefix, @FlipParam(feature="test", disabledValue="aaa") String param) {
+        return prefix + param;
+    }
+
     @Flippable(feature="test", disabledValue="false")
     public boolean flippableMethodReturnsBoolean() {
         return true;
@@ -148,5 +154,10 @@ public class FixtureClass {
     public String flippableMethodReturnsElInsideText() {
         return "result";
     }
+
+    @Flippable(feature="test")
+    public Date flippableMethodReturnsDate() {
+        return new Date();
+    }
     
 }
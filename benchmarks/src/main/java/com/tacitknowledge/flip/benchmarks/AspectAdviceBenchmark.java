@@ -0,0 +1,186 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.aspectj.runtime.reflect.Factory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tacitknowledge.flip.FeatureService;
+import com.tacitknowledge.flip.FlipContext;
+import com.tacitknowledge.flip.aspectj.FlipAbstractAspect;
+import com.tacitknowledge.flip.aspectj.FlipAspectJAspect;
+import com.tacitknowledge.flip.aspectj.FlipParam;
+import com.tacitknowledge.flip.aspectj.Flippable;
+
+/**
+ * Measures the overhead of the {@link FlipAbstractAspect} advice compared to
+ * the direct call of the method. The join points are built the same way the
+ * woven code does it, so the advice is measured without the weaving itself.
+ * The {@code aspectOf} benchmarks obtain the aspect the way the woven code does.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AspectAdviceBenchmark
+{
+    private File file;
+
+    private Service service;
+
+    private BenchmarkAspect aspect;
+
+    private Method enabledMethod;
+
+    private Method disabledMethod;
+
+    private ProceedingJoinPoint enabledJoinPoint;
+
+    private ProceedingJoinPoint disabledJoinPoint;
+
+    private Method plainMethod;
+
+    private ProceedingJoinPoint plainJoinPoint;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        file = File.createTempFile("flip-benchmark-", ".xml");
+        SyntheticFeatures.writeEvaluationFeatures(file);
+        service = new Service();
+        final FeatureService featureService = SyntheticFeatures.createFeatureService(file);
+        aspect = new BenchmarkAspect(featureService);
+        FlipContext.setFeatureService(featureService);
+
+        final Factory factory = new Factory("Service.java", Service.class);
+        enabledMethod = Service.class.getMethod("enabled", String.class);
+        disabledMethod = Service.class.getMethod("disabled", String.class);
+        enabledJoinPoint = joinPoint(factory, enabledMethod);
+        disabledJoinPoint = joinPoint(factory, disabledMethod);
+        plainMethod = Service.class.getMethod("plain", String.class);
+        plainJoinPoint = joinPoint(factory, plainMethod);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        FlipContext.setFeatureService(null);
+        file.delete();
+    }
+
+    @Benchmark
+    public Object directCall()
+    {
+        return service.enabled("value");
+    }
+
+    @Benchmark
+    public Object adviceEnabled() throws Throwable
+    {
+        return aspect.aroundFlippableMethods(enabledJoinPoint, enabledMethod.getAnnotation(Flippable.class));
+    }
+
+    @Benchmark
+    public Object adviceDisabled() throws Throwable
+    {
+        return aspect.aroundFlippableMethods(disabledJoinPoint, disabledMethod.getAnnotation(Flippable.class));
+    }
+
+    @Benchmark
+    public Object aspectOfAdviceEnabled() throws Throwable
+    {
+        return FlipAspectJAspect.aspectOf().aroundFlippableMethods(enabledJoinPoint, enabledMethod.getAnnotation(Flippable.class));
+    }
+
+    @Benchmark
+    public Object aspectOfAdviceWithoutParams() throws Throwable
+    {
+        return FlipAspectJAspect.aspectOf().aroundFlippableMethods(plainJoinPoint, plainMethod.getAnnotation(Flippable.class));
+    }
+
+    private ProceedingJoinPoint joinPoint(final Factory factory, final Method method)
+    {
+        final MethodSignature signature = (MethodSignature) factory.makeMethodSig(
+                method.getModifiers(), method.getName(), Service.class, method.getParameterTypes(),
+                new String[] { "value" }, new Class[0], method.getReturnType());
+        return (ProceedingJoinPoint) Factory.makeJP(
+                factory.makeSJP(ProceedingJoinPoint.METHOD_EXECUTION, signature, 1),
+                service, service, new Object[] { "value" });
+    }
+
+    /**
+     * The aspect bound to the feature service of the benchmark.
+     */
+    public static class BenchmarkAspect extends FlipAbstractAspect
+    {
+        private final FeatureService featureService;
+
+        public BenchmarkAspect(final FeatureService featureService)
+        {
+            this.featureService = featureService;
+        }
+
+        @Override
+        public FeatureService getFeatureService()
+        {
+            return featureService;
+        }
+    }
+
+    /**
+     * The advised methods.
+     */
+    public static class Service
+    {
+        @Flippable(feature = "static", disabledValue = "disabled")
+        public String enabled(@FlipParam(feature = "static", disabledValue = "disabled") final String value)
+        {
+            return value;
+        }
+
+        @Flippable(feature = "static", disabledValue = "disabled")
+        public String plain(final String value)
+        {
+            return value;
+        }
+
+        @Flippable(feature = "off", disabledValue = "disabled")
+        public String disabled(@FlipParam(feature = "static", disabledValue = "disabled") final String value)
+        {
+            return value;
+        }
+    }
+}
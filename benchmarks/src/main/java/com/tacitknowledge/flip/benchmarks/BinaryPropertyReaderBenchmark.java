@@ -0,0 +1,100 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tacitknowledge.flip.properties.BinaryPropertyReader;
+import com.tacitknowledge.flip.properties.BinarySnapshotCompiler;
+
+/**
+ * Measures the start of the reader of the binary snapshot compiled from the 
+ * XML configuration with the number of features given: mapping the snapshot 
+ * by a new reader and also the first lookup of a feature in it. Compare with 
+ * {@link XmlPropertyReaderBenchmark#parse()}.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryPropertyReaderBenchmark
+{
+    @Param({ "100", "1000", "10000", "50000" })
+    private int features;
+
+    private File source;
+
+    private File snapshot;
+
+    private Properties properties;
+
+    private String feature;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        source = File.createTempFile("flip-benchmark-", ".xml");
+        snapshot = File.createTempFile("flip-benchmark-", ".bin");
+        SyntheticFeatures.writeFeatures(source, features);
+        new BinarySnapshotCompiler().compile(source, snapshot);
+        properties = new Properties();
+        properties.setProperty(BinaryPropertyReader.CONFIG_PROPERTY, snapshot.getAbsolutePath());
+        properties.setProperty(BinaryPropertyReader.CONFIG_WATCH, "false");
+        feature = "feature-" + (features / 2);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        source.delete();
+        snapshot.delete();
+    }
+
+    @Benchmark
+    public Object open()
+    {
+        final BinaryPropertyReader reader = new BinaryPropertyReader();
+        reader.initialize(properties);
+        return reader;
+    }
+
+    @Benchmark
+    public Object openAndLookup()
+    {
+        final BinaryPropertyReader reader = new BinaryPropertyReader();
+        reader.initialize(properties);
+        return reader.getFeatureDescriptor(feature);
+    }
+}
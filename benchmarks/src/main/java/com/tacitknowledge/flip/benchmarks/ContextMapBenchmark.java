@@ -0,0 +1,121 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.benchmarks;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tacitknowledge.flip.Environment;
+import com.tacitknowledge.flip.context.ContextManager;
+import com.tacitknowledge.flip.context.ContextMap;
+import com.tacitknowledge.flip.context.FlipContext;
+import com.tacitknowledge.flip.context.FlipContextProperty;
+
+/**
+ * Measures the lookups of the global {@link ContextMap} across three context 
+ * providers: the property of the first and the last provider, the property 
+ * of the anonymous map and the check of a missing property.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextMapBenchmark
+{
+    private Map<String, Object> context;
+
+    @Setup
+    public void setUp()
+    {
+        final Environment environment = new Environment();
+        environment.getContextProviders().add(new FirstContext());
+        environment.getContextProviders().add(new SecondContext());
+        environment.getContextProviders().add(new ThirdContext());
+        context = new ContextManager(environment).getContext(ContextMap.GLOBAL);
+    }
+
+    @Benchmark
+    public Object firstProvider()
+    {
+        return context.get("first");
+    }
+
+    @Benchmark
+    public Object lastProvider()
+    {
+        return context.get("third");
+    }
+
+    @Benchmark
+    public Object anonymousProperty()
+    {
+        return context.get("anonymous");
+    }
+
+    @Benchmark
+    public boolean missingProperty()
+    {
+        return context.containsKey("missing");
+    }
+
+    @FlipContext(name = "first")
+    public static class FirstContext
+    {
+        public String getFirst()
+        {
+            return "first";
+        }
+    }
+
+    @FlipContext(name = "second")
+    public static class SecondContext
+    {
+        public String getSecond()
+        {
+            return "second";
+        }
+
+        @FlipContextProperty
+        public Map<String, Object> getValues()
+        {
+            return Collections.<String, Object> singletonMap("anonymous", "value");
+        }
+    }
+
+    @FlipContext(name = "third")
+    public static class ThirdContext
+    {
+        public String getThird()
+        {
+            return "third";
+        }
+    }
+}
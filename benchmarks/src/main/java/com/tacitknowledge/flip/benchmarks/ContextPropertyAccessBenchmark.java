@@ -0,0 +1,96 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tacitknowledge.flip.context.ContextPropertyAccessor;
+import com.tacitknowledge.flip.context.ContextPropertyAccessors;
+
+/**
+ * Compares the ways to read a context property from a context provider: 
+ * the plain {@link Method#invoke(Object, Object...)} used before, the reflective 
+ * accessor with suppressed access checks, the generated accessor and the direct call.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextPropertyAccessBenchmark
+{
+    private final UserContext context = new UserContext();
+
+    private Method method;
+
+    private ContextPropertyAccessor reflectiveAccessor;
+
+    private ContextPropertyAccessor generatedAccessor;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException
+    {
+        method = UserContext.class.getMethod("getUserName");
+        reflectiveAccessor = ContextPropertyAccessors.reflective(UserContext.class.getMethod("getUserName"));
+        generatedAccessor = ContextPropertyAccessors.create(UserContext.class.getMethod("getUserName"));
+    }
+
+    @Benchmark
+    public Object methodInvoke() throws Exception
+    {
+        return method.invoke(context);
+    }
+
+    @Benchmark
+    public Object reflectiveAccessor() throws Exception
+    {
+        return reflectiveAccessor.getValue(context);
+    }
+
+    @Benchmark
+    public Object generatedAccessor() throws Exception
+    {
+        return generatedAccessor.getValue(context);
+    }
+
+    @Benchmark
+    public Object directCall()
+    {
+        return context.getUserName();
+    }
+
+    public static class UserContext
+    {
+        public String getUserName()
+        {
+            return "user";
+        }
+    }
+}
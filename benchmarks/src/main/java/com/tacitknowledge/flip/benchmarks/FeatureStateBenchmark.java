@@ -0,0 +1,107 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tacitknowledge.flip.FeatureHandle;
+import com.tacitknowledge.flip.FeatureService;
+import com.tacitknowledge.flip.model.FeatureState;
+
+/**
+ * Measures {@link FeatureService#getFeatureState(String)} for the features of 
+ * different shapes, see {@link SyntheticFeatures#writeEvaluationFeatures(File)}.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeatureStateBenchmark
+{
+    private File file;
+
+    private FeatureService featureService;
+
+    private FeatureHandle deepHandle;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("flip-benchmark-", ".xml");
+        SyntheticFeatures.writeEvaluationFeatures(file);
+        featureService = SyntheticFeatures.createFeatureService(file);
+        deepHandle = featureService.handle(SyntheticFeatures.DEEP_FEATURE);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Benchmark
+    public FeatureState staticState()
+    {
+        return featureService.getFeatureState("static");
+    }
+
+    @Benchmark
+    public FeatureState singleCondition()
+    {
+        return featureService.getFeatureState("condition");
+    }
+
+    @Benchmark
+    public FeatureState manyRules()
+    {
+        return featureService.getFeatureState("rules");
+    }
+
+    @Benchmark
+    public FeatureState deepHierarchy()
+    {
+        return featureService.getFeatureState(SyntheticFeatures.DEEP_FEATURE);
+    }
+
+    @Benchmark
+    public FeatureState missingFeature()
+    {
+        return featureService.getFeatureState("missing");
+    }
+
+    @Benchmark
+    public FeatureState deepHierarchyHandle()
+    {
+        return deepHandle.getFeatureState();
+    }
+}
@@ -0,0 +1,103 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tacitknowledge.flip.FeatureHandle;
+import com.tacitknowledge.flip.FeatureService;
+import com.tacitknowledge.flip.metrics.FeatureMetrics;
+import com.tacitknowledge.flip.metrics.NoOpMetricsSink;
+import com.tacitknowledge.flip.model.FeatureState;
+
+/**
+ * Measures the overhead of the evaluation metrics: the same evaluations as 
+ * {@link FeatureStateBenchmark} with the default {@link NoOpMetricsSink}, 
+ * which is not even timed, and with {@link FeatureMetrics}. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark
+{
+    @Param({ "none", "memory" })
+    private String sink;
+
+    private File file;
+
+    private FeatureService featureService;
+
+    private FeatureHandle staticHandle;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("flip-benchmark-", ".xml");
+        SyntheticFeatures.writeEvaluationFeatures(file);
+        featureService = SyntheticFeatures.createFeatureService(file,
+                "memory".equals(sink) ? new FeatureMetrics() : NoOpMetricsSink.INSTANCE);
+        staticHandle = featureService.handle("static");
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Benchmark
+    public FeatureState staticState()
+    {
+        return featureService.getFeatureState("static");
+    }
+
+    @Benchmark
+    public FeatureState staticHandle()
+    {
+        return staticHandle.getFeatureState();
+    }
+
+    @Benchmark
+    public FeatureState singleCondition()
+    {
+        return featureService.getFeatureState("condition");
+    }
+
+    @Benchmark
+    public FeatureState missingFeature()
+    {
+        return featureService.getFeatureState("missing");
+    }
+}
@@ -0,0 +1,156 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tacitknowledge.flip.Environment;
+import com.tacitknowledge.flip.exceptions.FlipException;
+import com.tacitknowledge.flip.model.FeatureDescriptor;
+import com.tacitknowledge.flip.properties.BinaryPropertyReader;
+import com.tacitknowledge.flip.properties.BinarySnapshotCompiler;
+import com.tacitknowledge.flip.properties.PropertyManager;
+import com.tacitknowledge.flip.properties.PropertyReader;
+import com.tacitknowledge.flip.properties.XmlPropertyReader;
+
+/**
+ * Measures {@link PropertyManager#getFeatureDescriptor(String)} with the
+ * property readers stacked as in a web application: optionally a dynamic
+ * reader like the session one, which has no features, then the XML reader
+ * and the binary snapshot reader of 1,000 features each. The feature found
+ * is only in the last reader and the missing feature is in none of them.
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyManagerBenchmark
+{
+    private static final int FEATURES = 1000;
+
+    @Param({ "false", "true" })
+    private boolean dynamic;
+
+    private File xml;
+
+    private File source;
+
+    private File snapshot;
+
+    private XmlPropertyReader xmlReader;
+
+    private BinaryPropertyReader binaryReader;
+
+    private PropertyManager propertyManager;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        xml = File.createTempFile("flip-benchmark-", ".xml");
+        source = File.createTempFile("flip-benchmark-", ".xml");
+        snapshot = File.createTempFile("flip-benchmark-", ".bin");
+        SyntheticFeatures.writeFeatures(xml, FEATURES);
+        SyntheticFeatures.writeFeatures(source, 2 * FEATURES);
+        new BinarySnapshotCompiler().compile(source, snapshot);
+
+        final Properties properties = new Properties();
+        properties.setProperty(XmlPropertyReader.CONFIG_PROPERTY, xml.getAbsolutePath());
+        properties.setProperty(BinaryPropertyReader.CONFIG_PROPERTY, snapshot.getAbsolutePath());
+        properties.setProperty(XmlPropertyReader.CONFIG_WATCH, "false");
+        xmlReader = new XmlPropertyReader();
+        xmlReader.initialize(properties);
+        binaryReader = new BinaryPropertyReader();
+        binaryReader.initialize(properties);
+
+        final List<PropertyReader> readers = new ArrayList<PropertyReader>();
+        if (dynamic)
+        {
+            readers.add(new EmptyPropertyReader());
+        }
+        readers.add(xmlReader);
+        readers.add(binaryReader);
+        final Environment environment = new Environment();
+        environment.setPropertyReaders(readers);
+        propertyManager = new PropertyManager(environment);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        xmlReader.close();
+        binaryReader.close();
+        xml.delete();
+        source.delete();
+        snapshot.delete();
+    }
+
+    @Benchmark
+    public FeatureDescriptor found()
+    {
+        return propertyManager.getFeatureDescriptor("feature-1500");
+    }
+
+    @Benchmark
+    public Object missing()
+    {
+        try
+        {
+            return propertyManager.getFeatureDescriptor("missing");
+        }
+        catch (final FlipException ex)
+        {
+            return ex;
+        }
+    }
+
+    /**
+     * The dynamic property reader without features.
+     */
+    private static class EmptyPropertyReader implements PropertyReader
+    {
+        @Override
+        public void initialize(final Properties config)
+        {
+        }
+
+        @Override
+        public FeatureDescriptor getFeatureDescriptor(final String name)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import com.tacitknowledge.flip.Environment;
+import com.tacitknowledge.flip.FeatureService;
+import com.tacitknowledge.flip.FeatureServiceImpl;
+import com.tacitknowledge.flip.context.FlipContext;
+import com.tacitknowledge.flip.metrics.MetricsSink;
+import com.tacitknowledge.flip.metrics.NoOpMetricsSink;
+import com.tacitknowledge.flip.properties.PropertyReader;
+import com.tacitknowledge.flip.properties.XmlPropertyReader;
+
+/**
+ * The synthetic feature configurations and context providers used by the benchmarks.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public final class SyntheticFeatures
+{
+    /**
+     * The number of conditional rules of the {@code "rules"} feature.
+     */
+    public static final int RULES = 20;
+
+    /**
+     * The name of the deepest feature of the hierarchy.
+     */
+    public static final String DEEP_FEATURE = "checkout.payment.wallet.applepay.v2";
+
+    private SyntheticFeatures()
+    {}
+
+    /**
+     * Writes the configuration with the features used to benchmark the evaluation:
+     * <ul>
+     * <li>{@code "static"} - the enabled feature;</li>
+     * <li>{@code "off"} - the disabled feature;</li>
+     * <li>{@code "condition"} - the feature with a single JeXL condition;</li>
+     * <li>{@code "rules"} - the feature whose last of {@link #RULES} conditional rules matches;</li>
+     * <li>{@link #DEEP_FEATURE} and its ancestors - the enabled features of the deep hierarchy.</li>
+     * </ul>
+     * 
+     * @param file the file to write.
+     * @throws IOException if the file could not be written.
+     */
+    public static void writeEvaluationFeatures(final File file) throws IOException
+    {
+        final Writer out = open(file);
+        try
+        {
+            out.write("  <feature name=\"static\" state=\"enabled\" />\n");
+            out.write("  <feature name=\"off\" state=\"disabled\" />\n");
+            out.write("  <feature name=\"condition\">\n");
+            out.write("    <rule state=\"enabled\"><condition>segment == 'gold'</condition></rule>\n");
+            out.write("    <rule state=\"disabled\" />\n");
+            out.write("  </feature>\n");
+            out.write("  <feature name=\"rules\">\n");
+            for (int i = 1; i <= RULES; i++)
+            {
+                out.write("    <rule state=\"enabled\"><condition>level == " + (RULES + 1 - i) + "</condition></rule>\n");
+            }
+            out.write("    <rule state=\"disabled\" />\n");
+            out.write("  </feature>\n");
+            String name = DEEP_FEATURE;
+            while (name != null)
+            {
+                out.write("  <feature name=\"" + name + "\" state=\"enabled\" />\n");
+                final int i = name.lastIndexOf('.');
+                name = i < 0 ? null : name.substring(0, i);
+            }
+        }
+        finally
+        {
+            close(out);
+        }
+    }
+
+    /**
+     * Writes the configuration with the number of features passed. Each feature 
+     * has a conditional rule and a default rule.
+     * 
+     * @param file the file to write.
+     * @param count the number of features.
+     * @throws IOException if the file could not be written.
+     */
+    public static void writeFeatures(final File file, final int count) throws IOException
+    {
+        final Writer out = open(file);
+        try
+        {
+            for (int i = 0; i < count; i++)
+            {
+                out.write("  <feature name=\"feature-" + i + "\">\n");
+                out.write("    <rule state=\"enabled\"><condition>level &gt; " + (i % 100) + "</condition></rule>\n");
+                out.write("    <rule state=\"disabled\" />\n");
+                out.write("  </feature>\n");
+            }
+        }
+        finally
+        {
+            close(out);
+        }
+    }
+
+    /**
+     * Creates the feature service which reads the features from the XML file 
+     * and uses {@link UserContext} as the context provider.
+     * 
+     * @param file the XML file with features.
+     * @return the feature service.
+     */
+    public static FeatureService createFeatureService(final File file)
+    {
+        return createFeatureService(file, NoOpMetricsSink.INSTANCE);
+    }
+
+    /**
+     * Creates the feature service as {@link #createFeatureService(File)} 
+     * which reports the evaluations to the metrics sink passed.
+     * 
+     * @param file the XML file with features.
+     * @param metricsSink the metrics sink.
+     * @return the feature service.
+     */
+    public static FeatureService createFeatureService(final File file, final MetricsSink metricsSink)
+    {
+        final Properties properties = new Properties();
+        properties.setProperty(XmlPropertyReader.CONFIG_PROPERTY, file.getAbsolutePath());
+
+        final XmlPropertyReader reader = new XmlPropertyReader();
+        reader.initialize(properties);
+
+        final Environment environment = new Environment();
+        environment.setProperties(properties);
+        environment.setPropertyReaders(Collections.<PropertyReader> singletonList(reader));
+        final List<Object> contextProviders = new ArrayList<Object>();
+        contextProviders.add(new UserContext());
+        environment.setContextProviders(contextProviders);
+        environment.setMetricsSink(metricsSink);
+        return new FeatureServiceImpl(environment);
+    }
+
+    private static Writer open(final File file) throws IOException
+    {
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<features xmlns=\"http://www.tacitknowledge.com/flip\">\n");
+        return out;
+    }
+
+    private static void close(final Writer out) throws IOException
+    {
+        out.write("</features>\n");
+        out.close();
+    }
+
+    /**
+     * The context provider of the synthetic features.
+     */
+    @FlipContext(name = "user")
+    public static class UserContext
+    {
+        public String getSegment()
+        {
+            return "gold";
+        }
+
+        public int getLevel()
+        {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.tacitknowledge.flip.benchmarks.XmlPropertyReaderBenchmark.ReloadablePropertyReader;
+import com.tacitknowledge.flip.properties.XmlPropertyReader;
+
+/**
+ * Prints the peak heap required to read the XML configuration by each of the 
+ * parsers, together with the bytes allocated by the read. JMH reports the parse time and the allocation rate but 
+ * not the peak heap, so the peak is found as the smallest maximum heap size 
+ * (with 1 MB precision) which the read succeeds with in a new JVM:
+ * <pre>
+ * java -cp ... com.tacitknowledge.flip.benchmarks.XmlParserFootprint 10000 50000
+ * </pre>
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class XmlParserFootprint
+{
+    private static final String[] PARSERS = { XmlPropertyReader.PARSER_JAXB, XmlPropertyReader.PARSER_STAX };
+
+    public static void main(final String[] args) throws Exception
+    {
+        if (args.length == 3 && "-read".equals(args[0]))
+        {
+            System.exit(read(new File(args[1]), args[2]) ? 0 : 1);
+        }
+
+        final String[] sizes = args.length == 0 ? new String[] { "1000", "10000", "50000" } : args;
+        System.out.printf("%10s %8s %14s %15s%n", "features", "parser", "peak heap (MB)", "allocated (MB)");
+        for (final String size : sizes)
+        {
+            final File file = File.createTempFile("flip-footprint-", ".xml");
+            try
+            {
+                SyntheticFeatures.writeFeatures(file, Integer.parseInt(size));
+                for (final String parser : PARSERS)
+                {
+                    System.out.printf("%10s %8s %14d %15.1f%n", size, parser, findPeakHeap(file, parser),
+                            measureAllocated(file, parser) / 1048576.0);
+                }
+            }
+            finally
+            {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes allocated by the read after the parser is warmed up.
+     */
+    private static long measureAllocated(final File file, final String parser)
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            read(file, parser);
+        }
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        final long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        if (!read(file, parser))
+        {
+            throw new IllegalStateException("The features were not read by " + parser);
+        }
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+    }
+
+    private static int findPeakHeap(final File file, final String parser) throws IOException,
+            InterruptedException
+    {
+        int low = 1;
+        int high = 1024;
+        while (low < high)
+        {
+            final int middle = (low + high) / 2;
+            if (readInNewJvm(file, parser, middle))
+            {
+                high = middle;
+            }
+            else
+            {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private static boolean readInNewJvm(final File file, final String parser, final int maxHeap)
+            throws IOException, InterruptedException
+    {
+        final Process process = new ProcessBuilder(
+                new File(new File(System.getProperty("java.home"), "bin"), "java").getPath(),
+                "-Xmx" + maxHeap + "m", "-XX:+UseSerialGC", "-cp", System.getProperty("java.class.path"),
+                XmlParserFootprint.class.getName(), "-read", file.getPath(), parser)
+                .redirectErrorStream(true).start();
+        final InputStream out = process.getInputStream();
+        while (out.read() != -1)
+        {
+            // discards the output of the read
+        }
+        return process.waitFor() == 0;
+    }
+
+    private static boolean read(final File file, final String parser)
+    {
+        try
+        {
+            return !newReader(file, parser).getSnapshot().isEmpty();
+        }
+        catch (final OutOfMemoryError ex)
+        {
+            return false;
+        }
+    }
+
+    private static ReloadablePropertyReader newReader(final File file, final String parser)
+    {
+        Logger.getLogger("com.tacitknowledge.flip").setLevel(Level.SEVERE);
+        final Properties properties = new Properties();
+        properties.setProperty(XmlPropertyReader.CONFIG_PROPERTY, file.getAbsolutePath());
+        properties.setProperty(XmlPropertyReader.CONFIG_WATCH, "false");
+        properties.setProperty(XmlPropertyReader.PARSER_PROPERTY, parser);
+        final ReloadablePropertyReader reader = new ReloadablePropertyReader();
+        reader.reload(properties);
+        return reader;
+    }
+}
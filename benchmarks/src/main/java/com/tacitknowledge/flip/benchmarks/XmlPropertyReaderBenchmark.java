@@ -0,0 +1,131 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tacitknowledge.flip.properties.XmlPropertyReader;
+
+/**
+ * Measures reading of the XML configuration with the number of features 
+ * and the parser given: the full parse by a new reader, the reload of the 
+ * unchanged file and the reload of the file touched without changing its content.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlPropertyReaderBenchmark
+{
+    @Param({ "100", "1000", "10000", "50000" })
+    private int features;
+
+    @Param({ XmlPropertyReader.PARSER_JAXB, XmlPropertyReader.PARSER_STAX })
+    private String parser;
+
+    private File file;
+
+    private Properties properties;
+
+    private ReloadablePropertyReader reader;
+
+    private long modified;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("flip-benchmark-", ".xml");
+        SyntheticFeatures.writeFeatures(file, features);
+        properties = new Properties();
+        properties.setProperty(XmlPropertyReader.CONFIG_PROPERTY, file.getAbsolutePath());
+        properties.setProperty(XmlPropertyReader.CONFIG_WATCH, "false");
+        properties.setProperty(XmlPropertyReader.PARSER_PROPERTY, parser);
+        reader = new ReloadablePropertyReader();
+        reader.initialize(properties);
+        modified = file.lastModified();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Benchmark
+    public Object parse()
+    {
+        final ReloadablePropertyReader result = new ReloadablePropertyReader();
+        result.reload(properties);
+        return result;
+    }
+
+    @Benchmark
+    public Object reloadUnchanged()
+    {
+        reader.reload();
+        return reader;
+    }
+
+    @Benchmark
+    public Object reloadTouched()
+    {
+        modified += 1000;
+        file.setLastModified(modified);
+        reader.reload();
+        return reader;
+    }
+
+    /**
+     * The reader which exposes the reload, without scheduling the rereads.
+     */
+    public static class ReloadablePropertyReader extends XmlPropertyReader
+    {
+        public void reload(final Properties config)
+        {
+            super.initialize(config);
+        }
+
+        public void reload()
+        {
+            readDescriptors();
+        }
+
+        @Override
+        public void initialize(final Properties config)
+        {
+            reload(config);
+        }
+    }
+}
@@ -15,10 +15,18 @@
 package com.tacitknowledge.flip;
 
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.functors.InstanceofPredicate;
 
+import com.tacitknowledge.flip.exceptions.FlipException;
+import com.tacitknowledge.flip.management.FeatureServiceMBeans;
+import com.tacitknowledge.flip.metrics.MetricsSink;
+import com.tacitknowledge.flip.metrics.NoOpMetricsSink;
 import com.tacitknowledge.flip.properties.PropertyReader;
 
 /**
@@ -30,6 +38,12 @@ import com.tacitknowledge.flip.properties.PropertyReader;
  */
 public abstract class AbstractFeatureServiceFactory
 {
+    /**
+     * The property with the class name of the {@link MetricsSink} used when 
+     * the environment has no metrics sink set. The class must have a public 
+     * constructor without arguments.
+     */
+    public static final String CONFIG_METRICS_SINK = "flip.metrics.sink";
 
     /**
      * Performs initialization of the provided environment.
@@ -42,6 +56,70 @@ public abstract class AbstractFeatureServiceFactory
         {
             propertyReader.initialize(env.getProperties());
         }
+        if (env.getMetricsSink() == NoOpMetricsSink.INSTANCE && env.getProperties() != null)
+        {
+            final String sinkClass = env.getProperties().getProperty(CONFIG_METRICS_SINK);
+            if (sinkClass != null && sinkClass.trim().length() > 0)
+            {
+                env.setMetricsSink(createMetricsSink(sinkClass.trim()));
+            }
+        }
+    }
+
+    /**
+     * Creates the feature service for the initialized environment and 
+     * registers its MBeans if {@link FeatureServiceMBeans#CONFIG_JMX_ENABLED} 
+     * is set. The MBeans are kept by the feature service and are unregistered 
+     * when it is closed. The feature service is returned even if the MBeans 
+     * could not be registered. 
+     * 
+     * @param env the initialized {@link Environment}.
+     * @return the feature service.
+     */
+    protected FeatureService newFeatureService(final Environment env)
+    {
+        final FeatureServiceImpl featureService = new FeatureServiceImpl(env);
+        if (FeatureServiceMBeans.isEnabled(env))
+        {
+            try
+            {
+                featureService.setMBeans(FeatureServiceMBeans.register(featureService, env));
+            }
+            catch (final JMException ex)
+            {
+                Logger.getLogger(AbstractFeatureServiceFactory.class.getName()).log(Level.WARNING, 
+                        "Cannot register the MBeans of the feature service.", ex);
+            }
+        }
+        return featureService;
+    }
+
+    /**
+     * Instantiates the metrics sink of the class named. 
+     * 
+     * @param className the class name of the metrics sink.
+     * @return the new metrics sink.
+     * @throws FlipException if the class could not be instantiated.
+     */
+    protected MetricsSink createMetricsSink(final String className)
+    {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null)
+        {
+            classLoader = getClass().getClassLoader();
+        }
+        try
+        {
+            return Class.forName(className, true, classLoader).asSubclass(MetricsSink.class).newInstance();
+        }
+        catch (final Exception ex)
+        {
+            throw new FlipException(String.format("The metrics sink [%s] could not be created.", className), ex);
+        }
+        catch (final LinkageError ex)
+        {
+            throw new FlipException(String.format("The metrics sink [%s] could not be created.", className), ex);
+        }
     }
 
     /**
@@ -18,12 +18,14 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
+import com.tacitknowledge.flip.metrics.MetricsSink;
+import com.tacitknowledge.flip.metrics.NoOpMetricsSink;
 import com.tacitknowledge.flip.properties.PropertyReader;
 
 /**
  * This class represents a place holder for all of the environment related information
  * that is required by the Flip system, such as {@link Properties}, a list of
- * {@link PropertyReader}s and context providers.
+ * {@link PropertyReader}s, context providers and the {@link MetricsSink}.
  * 
  * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
  * @author Petric Coroli <pcoroli@tacitknowledge.com>
@@ -36,6 +38,8 @@ public class Environment
 
     private List<Object> contextProviders = new ArrayList<Object>();
 
+    private MetricsSink metricsSink = NoOpMetricsSink.INSTANCE;
+
     public List<PropertyReader> getPropertyReaders()
     {
         return propertyReaders;
@@ -65,4 +69,14 @@ public class Environment
     {
         this.contextProviders = contextProviders;
     }
+
+    public MetricsSink getMetricsSink()
+    {
+        return metricsSink;
+    }
+
+    public void setMetricsSink(final MetricsSink metricsSink)
+    {
+        this.metricsSink = metricsSink == null ? NoOpMetricsSink.INSTANCE : metricsSink;
+    }
 }
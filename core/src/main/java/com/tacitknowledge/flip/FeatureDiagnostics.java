@@ -0,0 +1,272 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip;
+
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.tacitknowledge.flip.model.FeatureState;
+
+/**
+ * The diagnostics of the features which could not be evaluated, i.e. the
+ * missing features and the features whose evaluation has failed. The problems
+ * are counted per feature and logged at most once per interval for each
+ * feature, the message tells how many problems were not logged since the last
+ * one. Nothing is formatted unless the message is logged. The counters are
+ * thread-safe. The problems are counted for at most {@link #DEFAULT_MAX_FEATURES} 
+ * features, the problems of the features found after that share one counter, 
+ * so their messages are limited together and do not name the feature. <br />
+ * The messages are logged with the logger of {@link FeatureServiceImpl}, 
+ * which logged them before the diagnostics were introduced, so the existing 
+ * logging configuration still applies to them.
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FeatureDiagnostics
+{
+    /**
+     * The property of the {@link Environment} with the interval in milliseconds
+     * between the messages logged for the same feature.
+     */
+    public static final String CONFIG_LOG_INTERVAL = "flip.diagnostics.interval";
+
+    /**
+     * The default interval between the messages logged for the same feature.
+     */
+    public static final long DEFAULT_LOG_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * The default maximum number of features whose problems are counted separately.
+     */
+    public static final int DEFAULT_MAX_FEATURES = 4096;
+
+    private static final Logger logger = Logger.getLogger(FeatureServiceImpl.class.getName());
+
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<String, Counters>();
+
+    private final long logIntervalNanos;
+
+    private final int maxFeatures;
+
+    private final Counters overflow;
+
+    /**
+     * Constructs the diagnostics which log the problems of the same feature at
+     * most once per interval passed.
+     *
+     * @param logInterval the interval in milliseconds, 0 to log every problem.
+     */
+    public FeatureDiagnostics(final long logInterval)
+    {
+        this(logInterval, DEFAULT_MAX_FEATURES);
+    }
+
+    /**
+     * Constructs the diagnostics which log the problems of the same feature at
+     * most once per interval passed and count the problems of at most 
+     * <code>maxFeatures</code> features separately.
+     *
+     * @param logInterval the interval in milliseconds, 0 to log every problem.
+     * @param maxFeatures the maximum number of features whose problems are 
+     *      counted separately.
+     */
+    public FeatureDiagnostics(final long logInterval, final int maxFeatures)
+    {
+        this.logIntervalNanos = TimeUnit.MILLISECONDS.toNanos(logInterval);
+        this.maxFeatures = maxFeatures;
+        this.overflow = new Counters();
+    }
+
+    /**
+     * Records the feature which has no descriptor.
+     *
+     * @param name the name of the feature.
+     */
+    public void missing(final String name)
+    {
+        final Counters current = getCounters(name);
+        current.missing.incrementAndGet();
+        final long suppressed = current.shouldLog();
+        if (suppressed >= 0)
+        {
+            if (current == overflow)
+            {
+                logOverflow(suppressed);
+                return;
+            }
+            logger.log(Level.WARNING, String.format(
+                    "Couldn't find a feature descriptor for feature named [%s]. Using [%s] value.%s",
+                    name, FeatureState.DISABLED, suppressedMessage(suppressed)));
+        }
+    }
+
+    /**
+     * Records the feature whose evaluation has failed.
+     *
+     * @param name the name of the feature.
+     * @param ex the error raised by the evaluation.
+     */
+    public void failed(final String name, final Exception ex)
+    {
+        final Counters current = getCounters(name);
+        current.failed.incrementAndGet();
+        final long suppressed = current.shouldLog();
+        if (suppressed >= 0)
+        {
+            if (current == overflow)
+            {
+                logOverflow(suppressed);
+                return;
+            }
+            logger.log(Level.WARNING, String.format(
+                    "An exception has occured during Feature State extraction for feature named [%s]. Using [%s] value.%s",
+                    name, FeatureState.DISABLED, suppressedMessage(suppressed)), ex);
+        }
+    }
+
+    /**
+     * Returns the number of lookups of the feature which has no descriptor.
+     *
+     * @param name the name of the feature.
+     * @return the number of times the feature was missing.
+     */
+    public long getMissingCount(final String name)
+    {
+        final Counters current = counters.get(name);
+        return current == null ? 0 : current.missing.get();
+    }
+
+    /**
+     * Returns the number of failed evaluations of the feature.
+     *
+     * @param name the name of the feature.
+     * @return the number of times the evaluation has failed.
+     */
+    public long getFailureCount(final String name)
+    {
+        final Counters current = counters.get(name);
+        return current == null ? 0 : current.failed.get();
+    }
+
+    /**
+     * Returns the names of the features which were missing or failed.
+     *
+     * @return the sorted set of feature names.
+     */
+    public SortedSet<String> getFeatureNames()
+    {
+        return Collections.unmodifiableSortedSet(new TreeSet<String>(counters.keySet()));
+    }
+
+    /**
+     * Returns the number of problems of the features which are not counted 
+     * separately because the maximum number of features was reached.
+     *
+     * @return the number of missing features and failed evaluations.
+     */
+    public long getOverflowCount()
+    {
+        return overflow.missing.get() + overflow.failed.get();
+    }
+
+    /**
+     * Forgets all of the problems recorded.
+     */
+    public void clear()
+    {
+        counters.clear();
+        overflow.missing.set(0);
+        overflow.failed.set(0);
+    }
+
+    private Counters getCounters(final String name)
+    {
+        Counters current = counters.get(name);
+        if (current == null)
+        {
+            if (counters.size() >= maxFeatures)
+            {
+                return overflow;
+            }
+            final Counters created = new Counters();
+            current = counters.putIfAbsent(name, created);
+            if (current == null)
+            {
+                current = created;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Logs the problem of the feature which is not counted separately. The 
+     * shared counter mixes the problems of many features, so neither the 
+     * feature nor its exception is logged.
+     */
+    private void logOverflow(final long suppressed)
+    {
+        logger.log(Level.WARNING, String.format(
+                "Couldn't evaluate a feature which is not tracked, the diagnostics are tracked for %d features only. Using [%s] value.%s",
+                maxFeatures, FeatureState.DISABLED, suppressedMessage(suppressed)));
+    }
+
+    private static String suppressedMessage(final long suppressed)
+    {
+        return suppressed == 0 ? "" : String.format(" %d more times since the last message.", suppressed);
+    }
+
+    /**
+     * The counters of the problems of one feature.
+     */
+    private class Counters
+    {
+        private final AtomicLong missing = new AtomicLong();
+
+        private final AtomicLong failed = new AtomicLong();
+
+        private final AtomicLong suppressed = new AtomicLong();
+
+        private final AtomicLong lastLogged = new AtomicLong(System.nanoTime() - logIntervalNanos);
+
+        /**
+         * Decides if the problem just recorded should be logged.
+         *
+         * @return the number of problems not logged before this one, or -1 if
+         *      this one should not be logged either.
+         */
+        public long shouldLog()
+        {
+            if (!logger.isLoggable(Level.WARNING))
+            {
+                return -1;
+            }
+            final long now = System.nanoTime();
+            final long last = lastLogged.get();
+            if (now - last >= logIntervalNanos && lastLogged.compareAndSet(last, now))
+            {
+                return suppressed.getAndSet(0);
+            }
+            suppressed.incrementAndGet();
+            return -1;
+        }
+    }
+}
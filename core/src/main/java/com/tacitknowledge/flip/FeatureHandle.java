@@ -0,0 +1,52 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip;
+
+import com.tacitknowledge.flip.model.FeatureState;
+
+/**
+ * The long-lived reference to a feature obtained from {@link FeatureService#handle(String)}. 
+ * The handle is bound to the feature descriptors of the feature and its ancestors, 
+ * so checking its state does not look up the descriptors by name. When the 
+ * descriptors are reloaded the handle is bound again on the next check. 
+ * The handles are thread-safe and are intended to be kept in static or instance 
+ * fields of the code which checks the feature frequently. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public interface FeatureHandle
+{
+    /**
+     * Returns the name of the feature. 
+     * 
+     * @return the feature name.
+     */
+    String getName();
+
+    /**
+     * Returns the current state of the feature. The result is the same as 
+     * {@link FeatureService#getFeatureState(String)} returns for the feature name. 
+     * 
+     * @return one of values of {@link FeatureState}.
+     */
+    FeatureState getFeatureState();
+
+    /**
+     * Checks if the feature is enabled. 
+     * 
+     * @return <code>true</code> if the feature state is {@link FeatureState#ENABLED}.
+     */
+    boolean isEnabled();
+}
@@ -0,0 +1,115 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The table of feature paths. The path of a feature is the list of names of 
+ * all its ancestors followed by the feature name itself, i.e. the path of 
+ * {@code "a.b.c"} is {@code ["a", "a.b", "a.b.c"]}. The path is computed once 
+ * per feature name and then reused, so the feature names are not split on 
+ * each evaluation. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+class FeatureHierarchy
+{
+    /**
+     * The separator of the parent and child feature names.
+     */
+    static final char SEPARATOR = '.';
+
+    /**
+     * The default maximum number of paths held by the table.
+     */
+    static final int DEFAULT_MAX_SIZE = 4096;
+
+    private final ConcurrentMap<String, String[]> paths = new ConcurrentHashMap<String, String[]>();
+
+    private final int maxSize;
+
+    /**
+     * Constructs the table which holds at most {@link #DEFAULT_MAX_SIZE} paths.
+     */
+    FeatureHierarchy()
+    {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructs the table which holds at most <code>maxSize</code> paths. 
+     * The paths of the features requested after the table is full are computed 
+     * on each request.
+     * 
+     * @param maxSize the maximum number of paths to hold.
+     */
+    FeatureHierarchy(final int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the path of the feature. The first element is the top most 
+     * ancestor and the last one is the feature name passed. The returned 
+     * array is shared and should not be modified. 
+     * 
+     * @param name the feature name.
+     * @return the path of the feature.
+     */
+    String[] getPath(final String name)
+    {
+        String[] path = paths.get(name);
+        if (path == null)
+        {
+            path = buildPath(name);
+            if (paths.size() < maxSize)
+            {
+                paths.putIfAbsent(name, path);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Forgets all of the paths computed.
+     */
+    void clear()
+    {
+        paths.clear();
+    }
+
+    /**
+     * Builds the path of the feature.
+     * 
+     * @param name the feature name.
+     * @return the path of the feature.
+     */
+    static String[] buildPath(final String name)
+    {
+        final List<String> result = new ArrayList<String>();
+        int i = name.indexOf(SEPARATOR);
+        while (i >= 0)
+        {
+            result.add(name.substring(0, i));
+            i = name.indexOf(SEPARATOR, i + 1);
+        }
+        result.add(name);
+        return result.toArray(new String[result.size()]);
+    }
+}
@@ -14,6 +14,8 @@
 */
 package com.tacitknowledge.flip;
 
+import java.util.Collection;
+
 import com.tacitknowledge.flip.model.FeatureState;
 
 /**
@@ -34,4 +36,38 @@ public interface FeatureService
      *  otherwise - {@link FeatureState#DISABLED}
      */
     FeatureState getFeatureState(String name);
+
+    /**
+     * Returns the handle of the feature. The handle is bound to the feature 
+     * descriptors, so it is the fastest way to check the same feature many times. 
+     * 
+     * @param name this is the name of the feature to obtain handle for.
+     * @return the {@link FeatureHandle} of the feature.
+     */
+    FeatureHandle handle(String name);
+
+    /**
+     * Evaluates the features in one pass. The context property values and the 
+     * states of the common ancestors are shared by all of the features evaluated. 
+     * 
+     * @param names the names of the features to obtain state for.
+     * @return the {@link FeatureStates} of the features in the order of names passed.
+     */
+    FeatureStates getFeatureStates(Collection<String> names);
+
+    /**
+     * Evaluates all of the features known to the cacheable property readers. 
+     * 
+     * @return the {@link FeatureStates} of all features ordered by name.
+     */
+    FeatureStates getAllFeatureStates();
+
+    /**
+     * Evaluates the features whose names start with the prefix passed. 
+     * Only the features known to the cacheable property readers are evaluated. 
+     * 
+     * @param prefix the prefix of the feature names, e.g. {@code "checkout."}.
+     * @return the {@link FeatureStates} of the features found ordered by name.
+     */
+    FeatureStates getFeatureStatesByPrefix(String prefix);
 }
@@ -17,6 +17,7 @@ package com.tacitknowledge.flip;
 import java.util.List;
 import java.util.Properties;
 
+import com.tacitknowledge.flip.metrics.MetricsSink;
 import com.tacitknowledge.flip.properties.PropertyReader;
 
 /**
@@ -53,7 +54,7 @@ public class FeatureServiceDirectFactory extends AbstractFeatureServiceFactory
     public FeatureService createFeatureService()
     {
         initializeEnvironment(environment);
-        return new FeatureServiceImpl(environment);
+        return newFeatureService(environment);
     }
 
     public void setPropertyReaders(final List<PropertyReader> propertyReaders)
@@ -71,6 +72,11 @@ public class FeatureServiceDirectFactory extends AbstractFeatureServiceFactory
         environment.setProperties(properties);
     }
 
+    public void setMetricsSink(final MetricsSink metricsSink)
+    {
+        environment.setMetricsSink(metricsSink);
+    }
+
     public void setEnvironment(final Environment environment)
     {
         this.environment = environment;
@@ -14,31 +14,52 @@
 */
 package com.tacitknowledge.flip;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.jexl2.JexlException;
 
 import com.tacitknowledge.flip.context.ContextManager;
+import com.tacitknowledge.flip.context.EvaluationScope;
 import com.tacitknowledge.flip.exceptions.FlipException;
+import com.tacitknowledge.flip.jfr.FlightRecorderEvents;
+import com.tacitknowledge.flip.management.FeatureServiceMBeans;
+import com.tacitknowledge.flip.metrics.MetricsSink;
+import com.tacitknowledge.flip.metrics.NoOpMetricsSink;
 import com.tacitknowledge.flip.model.FeatureDescriptor;
 import com.tacitknowledge.flip.model.FeatureState;
 import com.tacitknowledge.flip.properties.PropertyManager;
 
 /**
- * Implementation of {@link FeatureService} contract
+ * Implementation of {@link FeatureService} contract. Each feature requested 
+ * is reported to the {@link MetricsSink} of the environment with its state 
+ * and the duration of its evaluation, unless the sink is the 
+ * {@link NoOpMetricsSink}, in which case the evaluations are not timed. 
  * 
  * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
  * @author Petric Coroli <pcoroli@tacitknowledge.com>
  */
 public class FeatureServiceImpl implements FeatureService
 {
-    private static final String FEATURE_HIERARCHY_SEPARATOR = ".";
-
-    private static final Logger logger = Logger.getLogger(FeatureServiceImpl.class.getName());
-
     private final ContextManager contextManager;
 
     private final PropertyManager propertyManager;
 
+    private final FeatureDiagnostics diagnostics;
+
+    private final MetricsSink metrics;
+
+    private final boolean timed;
+
+    private final FeatureHierarchy hierarchy = new FeatureHierarchy();
+
+    private final FlightRecorderEvents events = FlightRecorderEvents.getInstance();
+
+    private volatile FeatureServiceMBeans mbeans;
+
     /**
      * Constructor that in addition to entity instantiation
      * fetches required information from provided {@link Environment}.
@@ -50,52 +71,422 @@ public class FeatureServiceImpl implements FeatureService
     {
         contextManager = new ContextManager(environment);
         propertyManager = new PropertyManager(environment);
+        diagnostics = new FeatureDiagnostics(getLogInterval(environment));
+        metrics = environment.getMetricsSink() == null ? NoOpMetricsSink.INSTANCE : environment.getMetricsSink();
+        timed = metrics != NoOpMetricsSink.INSTANCE;
+    }
+
+    private static long getLogInterval(final Environment environment)
+    {
+        final String interval = environment.getProperties() == null ? null
+                : environment.getProperties().getProperty(FeatureDiagnostics.CONFIG_LOG_INTERVAL);
+        if (interval != null)
+        {
+            try
+            {
+                return Long.parseLong(interval.trim());
+            }
+            catch (final NumberFormatException ex)
+            {
+                // the default interval is used
+            }
+        }
+        return FeatureDiagnostics.DEFAULT_LOG_INTERVAL;
+    }
+
+    /**
+     * Returns the diagnostics of the features which could not be evaluated. 
+     * The missing features and the failed evaluations are counted there 
+     * instead of being thrown to the caller.
+     * 
+     * @return the diagnostics of this feature service.
+     */
+    public FeatureDiagnostics getDiagnostics()
+    {
+        return diagnostics;
+    }
+
+    /**
+     * Returns the property manager which resolves the feature descriptors.
+     * 
+     * @return the property manager of this feature service.
+     */
+    public PropertyManager getPropertyManager()
+    {
+        return propertyManager;
+    }
+
+    /**
+     * Forgets the feature paths computed and the missing features remembered 
+     * by this feature service. 
+     */
+    public void clearCaches()
+    {
+        hierarchy.clear();
+        propertyManager.clearMissingFeatures();
+    }
+
+    /**
+     * Returns the MBeans registered for this feature service. 
+     * 
+     * @return the MBeans or <code>null</code> if they are not registered.
+     */
+    public FeatureServiceMBeans getMBeans()
+    {
+        return mbeans;
+    }
+
+    /**
+     * Sets the MBeans registered for this feature service, so they are 
+     * unregistered when it is closed.
+     * 
+     * @param mbeans the MBeans registered.
+     */
+    public void setMBeans(final FeatureServiceMBeans mbeans)
+    {
+        this.mbeans = mbeans;
     }
 
+    /**
+     * Releases the resources held by this feature service: the MBeans 
+     * registered for it are unregistered and the {@link PropertyManager} 
+     * stops listening to the property readers. 
+     */
+    public void close()
+    {
+        final FeatureServiceMBeans current = mbeans;
+        mbeans = null;
+        if (current != null)
+        {
+            current.unregister();
+        }
+        propertyManager.close();
+    }
+
+    /**
+     * Returns the sink which the evaluations are reported to.
+     * 
+     * @return the metrics sink of this feature service.
+     */
+    public MetricsSink getMetricsSink()
+    {
+        return metrics;
+    }
+
+    /**
+     * {@inheritDoc }
+     * 
+     * <p>The features are evaluated from the top most ancestor down to the 
+     * feature itself. The evaluation stops at the first ancestor which is not 
+     * enabled, so the descendants of a disabled feature are not evaluated.</p>
+     */
     @Override
     public FeatureState getFeatureState(final String name)
     {
-        FeatureState result;
+        if (!timed)
+        {
+            return getFeatureState(hierarchy.getPath(name), null);
+        }
+        final long start = System.nanoTime();
+        return evaluated(name, getFeatureState(hierarchy.getPath(name), null), start);
+    }
+
+    /**
+     * {@inheritDoc }
+     * 
+     * <p>The features are evaluated in one {@link EvaluationScope}, and the state 
+     * of each feature is evaluated once even if it is an ancestor of many features.</p>
+     */
+    @Override
+    public FeatureStates getFeatureStates(final Collection<String> names)
+    {
+        final Set<String> uniqueNames = new LinkedHashSet<String>(names);
+        final String[] result = uniqueNames.toArray(new String[uniqueNames.size()]);
+        final FeatureState[] states = new FeatureState[result.length];
+        final Map<String, FeatureState> evaluated = new HashMap<String, FeatureState>();
+
+        final EvaluationScope scope = EvaluationScope.open();
         try
         {
-            final FeatureDescriptor featureDescriptor = propertyManager.getFeatureDescriptor(name);
-            result = featureDescriptor.process(contextManager);
+            for (int i = 0; i < result.length; i++)
+            {
+                final long start = timed ? System.nanoTime() : 0;
+                states[i] = getFeatureState(hierarchy.getPath(result[i]), evaluated);
+                if (timed)
+                {
+                    evaluated(result[i], states[i], start);
+                }
+            }
         }
-        catch (final FlipException ex)
+        finally
         {
-            logger.log(
-                    Level.WARNING,
-                    String.format(
-                            "An exception has occured during Feature State extraction for feature named [%s]. Using [%s] value.",
-                            name, FeatureState.DISABLED.toString()), ex);
+            scope.close();
+        }
+        return new FeatureStates(result, states);
+    }
 
-            result = FeatureState.DISABLED;
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public FeatureStates getAllFeatureStates()
+    {
+        return getFeatureStates(propertyManager.getFeatureNames());
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public FeatureStates getFeatureStatesByPrefix(final String prefix)
+    {
+        final Set<String> names = new LinkedHashSet<String>();
+        for (final String name : propertyManager.getFeatureNames().tailSet(prefix))
+        {
+            if (!name.startsWith(prefix))
+            {
+                break;
+            }
+            names.add(name);
         }
+        return getFeatureStates(names);
+    }
 
-        if (isFeatureHasParent(name))
+    /**
+     * {@inheritDoc }
+     * 
+     * <p>When some of the property readers are dynamic the handle could not be 
+     * bound to the descriptors, so it only saves computing the feature path.</p>
+     */
+    @Override
+    public FeatureHandle handle(final String name)
+    {
+        return new BoundFeatureHandle(name, hierarchy.getPath(name));
+    }
+
+    /**
+     * Reports the evaluation of the feature requested to the metrics sink.
+     * 
+     * @param name the name of the feature.
+     * @param state the state of the feature.
+     * @param start the value of {@link System#nanoTime()} before the evaluation.
+     * @return the state passed.
+     */
+    private FeatureState evaluated(final String name, final FeatureState state, final long start)
+    {
+        metrics.evaluated(name, state, System.nanoTime() - start);
+        return state;
+    }
+
+    /**
+     * Evaluates the feature path top-down. When the map of evaluated states is 
+     * passed, the states of the features of the path are taken from it and 
+     * stored to it, so the common ancestors of many features are evaluated once.
+     * The path is never empty, as its last element is the feature itself.
+     * 
+     * @param path the feature path
+     * @param evaluated the states of the features evaluated before or <code>null</code>.
+     * @return the state of the last feature of the path or {@link FeatureState#DISABLED} 
+     *      if one of its ancestors is not enabled.
+     */
+    private FeatureState getFeatureState(final String[] path, final Map<String, FeatureState> evaluated)
+    {
+        final int last = path.length - 1;
+        for (int i = 0; i < last; i++)
         {
-            final FeatureState parentResult = getFeatureState(getParentFeatureName(name));
-            result = FeatureState.getByState(parentResult.state() && result.state());
+            if (getFeatureState(path[i], evaluated) != FeatureState.ENABLED)
+            {
+                return FeatureState.DISABLED;
+            }
         }
+        return getFeatureState(path[last], evaluated);
+    }
 
-        return result;
+    /**
+     * Returns the state of the feature without regard to its ancestors, taking 
+     * it from the map of evaluated states and storing it there if the map is 
+     * passed.
+     * 
+     * @param name feature name
+     * @param evaluated the states of the features evaluated before or <code>null</code>.
+     * @return the state of the feature.
+     */
+    private FeatureState getFeatureState(final String name, final Map<String, FeatureState> evaluated)
+    {
+        if (evaluated == null)
+        {
+            return getOwnFeatureState(name);
+        }
+        if (evaluated.containsKey(name))
+        {
+            return evaluated.get(name);
+        }
+        final FeatureState state = getOwnFeatureState(name);
+        evaluated.put(name, state);
+        return state;
     }
 
     /**
-     * Identifies whether provided feature name has parent feature.
+     * Returns the state of the feature without regard to its ancestors.
      * 
      * @param name feature name
-     * @return <code>true</code> in case provided feature name has parent feature,
-     *      <code>false</code> - otherwise.
+     * @return the state of the feature or {@link FeatureState#DISABLED} if the 
+     *      feature could not be evaluated.
+     */
+    private FeatureState getOwnFeatureState(final String name)
+    {
+        return process(name, propertyManager.findFeatureDescriptor(name));
+    }
+
+    private FeatureState process(final String name, final FeatureDescriptor featureDescriptor)
+    {
+        if (featureDescriptor == null)
+        {
+            diagnostics.missing(name);
+            metrics.failed(name);
+            return FeatureState.DISABLED;
+        }
+        try
+        {
+            return events.isEvaluationEnabled() 
+                    ? events.evaluate(name, featureDescriptor, contextManager) : featureDescriptor.process(contextManager);
+        }
+        catch (final FlipException ex)
+        {
+            diagnostics.failed(name, ex);
+        }
+        catch (final JexlException ex)
+        {
+            diagnostics.failed(name, ex);
+        }
+        metrics.failed(name);
+        return FeatureState.DISABLED;
+    }
+
+    /**
+     * The handle bound to the descriptors resolved at some generation of the 
+     * property manager. The descriptors are resolved again when the generation 
+     * changes and some of the features of the path have changed since.
      */
-    private boolean isFeatureHasParent(final String name)
+    private class BoundFeatureHandle implements FeatureHandle
     {
-        return name.contains(FEATURE_HIERARCHY_SEPARATOR);
+        private final String name;
+
+        private final String[] path;
+
+        private volatile Binding binding;
+
+        public BoundFeatureHandle(final String name, final String[] path)
+        {
+            this.name = name;
+            this.path = path;
+        }
+
+        @Override
+        public String getName()
+        {
+            return name;
+        }
+
+        @Override
+        public FeatureState getFeatureState()
+        {
+            if (!timed)
+            {
+                return evaluate();
+            }
+            final long start = System.nanoTime();
+            return evaluated(name, evaluate(), start);
+        }
+
+        private FeatureState evaluate()
+        {
+            if (propertyManager.isDynamic())
+            {
+                return FeatureServiceImpl.this.getFeatureState(path, null);
+            }
+
+            final long generation = propertyManager.getGeneration();
+            Binding current = binding;
+            if (current == null || current.generation != generation)
+            {
+                current = current == null || current.isChanged() 
+                        ? new Binding(path, generation) : new Binding(current, generation);
+                binding = current;
+            }
+            return current.evaluate();
+        }
+
+        @Override
+        public boolean isEnabled()
+        {
+            return getFeatureState() == FeatureState.ENABLED;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("FeatureHandle[%s]", name);
+        }
     }
 
-    private String getParentFeatureName(final String name)
+    /**
+     * The descriptors of the feature path resolved at the generation of the property manager.
+     */
+    private class Binding
     {
-        final int i = name.lastIndexOf(FEATURE_HIERARCHY_SEPARATOR);
-        return name.substring(0, i);
+        private final long generation;
+
+        private final String[] path;
+
+        private final FeatureDescriptor[] descriptors;
+
+        public Binding(final String[] path, final long generation)
+        {
+            this.generation = generation;
+            this.path = path;
+            descriptors = new FeatureDescriptor[path.length];
+            for (int i = 0; i < path.length; i++)
+            {
+                descriptors[i] = propertyManager.findFeatureDescriptor(path[i]);
+            }
+        }
+
+        public Binding(final Binding previous, final long generation)
+        {
+            this.generation = generation;
+            this.path = previous.path;
+            this.descriptors = previous.descriptors;
+        }
+
+        public boolean isChanged()
+        {
+            for (final String name : path)
+            {
+                if (propertyManager.isChanged(name, generation))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public FeatureState evaluate()
+        {
+            final int last = path.length - 1;
+            for (int i = 0; i < last; i++)
+            {
+                if (evaluate(i) != FeatureState.ENABLED)
+                {
+                    return FeatureState.DISABLED;
+                }
+            }
+            return evaluate(last);
+        }
+
+        private FeatureState evaluate(final int i)
+        {
+            return process(path[i], descriptors[i]);
+        }
     }
 }
@@ -105,7 +105,7 @@ public class FeatureServiceReflectionFactory extends AbstractFeatureServiceFacto
 
         initializeEnvironment(environment);
 
-        return new FeatureServiceImpl(environment);
+        return newFeatureService(environment);
     }
 
     /**
@@ -0,0 +1,225 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import com.tacitknowledge.flip.model.FeatureState;
+
+/**
+ * The immutable result of the bulk features evaluation. Each feature has an 
+ * index in the result, the states are stored as bits by that index, so the 
+ * result stays compact for hundreds of features. The indexes are found by 
+ * names in an open-addressed table of ints, so the lookup neither boxes the 
+ * index nor allocates.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public final class FeatureStates
+{
+    private final String[] names;
+
+    /**
+     * The hash table of the feature indexes plus one, zero marks an empty slot.
+     * The size of the table is a power of two at least twice the number of 
+     * features, the collisions are resolved by linear probing.
+     */
+    private final int[] table;
+
+    private final BitSet enabled = new BitSet();
+
+    private final BitSet disabled = new BitSet();
+
+    /**
+     * Constructs the result. The state of the feature is taken from the array 
+     * of states by the index of the feature name. 
+     * 
+     * @param names the unique feature names.
+     * @param states the states of the features, <code>null</code> for the 
+     *      features without a state.
+     */
+    FeatureStates(final String[] names, final FeatureState[] states)
+    {
+        this.names = names;
+        this.table = new int[Integer.highestOneBit(Math.max(names.length, 1)) << 2];
+        final int mask = table.length - 1;
+        for (int i = 0; i < names.length; i++)
+        {
+            int slot = hash(names[i]) & mask;
+            while (table[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+            if (states[i] == FeatureState.ENABLED)
+            {
+                enabled.set(i);
+            }
+            else if (states[i] == FeatureState.DISABLED)
+            {
+                disabled.set(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of features in the result.
+     * 
+     * @return the number of features.
+     */
+    public int size()
+    {
+        return names.length;
+    }
+
+    /**
+     * Returns the names of the features in the order of their indexes.
+     * 
+     * @return the unmodifiable list of feature names.
+     */
+    public List<String> getNames()
+    {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * Returns the name of the feature by its index.
+     * 
+     * @param index the index of the feature.
+     * @return the feature name.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public String getName(final int index)
+    {
+        return names[index];
+    }
+
+    /**
+     * Returns the index of the feature.
+     * 
+     * @param name the feature name.
+     * @return the index of the feature or <code>-1</code> if the feature is not in the result.
+     */
+    public int indexOf(final String name)
+    {
+        if (name == null)
+        {
+            return -1;
+        }
+        final int mask = table.length - 1;
+        for (int slot = hash(name) & mask; table[slot] != 0; slot = (slot + 1) & mask)
+        {
+            final int index = table[slot] - 1;
+            if (name.equals(names[index]))
+            {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(final String name)
+    {
+        final int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the state of the feature by its index.
+     * 
+     * @param index the index of the feature.
+     * @return the state of the feature or <code>null</code> if the feature has no state.
+     */
+    public FeatureState getFeatureState(final int index)
+    {
+        if (enabled.get(index))
+        {
+            return FeatureState.ENABLED;
+        }
+        return disabled.get(index) ? FeatureState.DISABLED : null;
+    }
+
+    /**
+     * Returns the state of the feature.
+     * 
+     * @param name the feature name.
+     * @return the state of the feature or <code>null</code> if the feature 
+     *      has no state or is not in the result.
+     */
+    public FeatureState getFeatureState(final String name)
+    {
+        final int index = indexOf(name);
+        return index < 0 ? null : getFeatureState(index);
+    }
+
+    /**
+     * Checks if the feature is enabled by its index.
+     * 
+     * @param index the index of the feature.
+     * @return <code>true</code> if the feature is enabled.
+     */
+    public boolean isEnabled(final int index)
+    {
+        return enabled.get(index);
+    }
+
+    /**
+     * Checks if the feature is enabled.
+     * 
+     * @param name the feature name.
+     * @return <code>true</code> if the feature is in the result and is enabled.
+     */
+    public boolean isEnabled(final String name)
+    {
+        final int index = indexOf(name);
+        return index >= 0 && enabled.get(index);
+    }
+
+    /**
+     * Returns the names of the enabled features.
+     * 
+     * @return the list of enabled feature names in the order of their indexes.
+     */
+    public List<String> getEnabledNames()
+    {
+        final List<String> result = new ArrayList<String>(enabled.cardinality());
+        for (int i = enabled.nextSetBit(0); i >= 0; i = enabled.nextSetBit(i + 1))
+        {
+            result.add(names[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the copy of the enabled bits. The bit of the feature index is 
+     * set when the feature is enabled.
+     * 
+     * @return the bit set of enabled features.
+     */
+    public BitSet getEnabledBits()
+    {
+        return (BitSet) enabled.clone();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("FeatureStates%s", getEnabledNames());
+    }
+}
@@ -41,6 +41,10 @@ public class ContextDescriptor
 
     private List<Method> anonymousProperties = new ArrayList<Method>();
 
+    private Map<String, ContextPropertyAccessor> propertyAccessors = new HashMap<String, ContextPropertyAccessor>();
+
+    private List<ContextPropertyAccessor> anonymousPropertyAccessors = new ArrayList<ContextPropertyAccessor>();
+
     /**
      * Returns the name of context. This name if taken from {@link FlipContext#name() }
      * field of the class annotation.
@@ -117,6 +121,50 @@ public class ContextDescriptor
         this.properties = properties;
     }
 
+    /**
+     * Returns the accessors of the named properties. The accessors are created 
+     * from the methods in {@link #getProperties()} and are used to read 
+     * the property values. 
+     * 
+     * @return the map of property names and accessors associated with it.
+     */
+    public Map<String, ContextPropertyAccessor> getPropertyAccessors()
+    {
+        return propertyAccessors;
+    }
+
+    /**
+     * Sets the accessors of the named properties. For more details see {@link #getPropertyAccessors() }.
+     * 
+     * @param propertyAccessors the map of property names and accessors.
+     */
+    public void setPropertyAccessors(final Map<String, ContextPropertyAccessor> propertyAccessors)
+    {
+        this.propertyAccessors = propertyAccessors;
+    }
+
+    /**
+     * Returns the accessors of the anonymous properties. The accessors are created 
+     * from the methods in {@link #getAnonymousProperties()} in the same order. 
+     * 
+     * @return the list of anonymous property accessors.
+     */
+    public List<ContextPropertyAccessor> getAnonymousPropertyAccessors()
+    {
+        return anonymousPropertyAccessors;
+    }
+
+    /**
+     * Sets the accessors of the anonymous properties. For more details see 
+     * {@link #getAnonymousPropertyAccessors() }.
+     * 
+     * @param anonymousPropertyAccessors the list of anonymous property accessors.
+     */
+    public void setAnonymousPropertyAccessors(final List<ContextPropertyAccessor> anonymousPropertyAccessors)
+    {
+        this.anonymousPropertyAccessors = anonymousPropertyAccessors;
+    }
+
     /**
      * Returns the instantiated object of the context class. This object will be 
      * used to invoke methods listed in {@link #getAnonymousProperties()} and
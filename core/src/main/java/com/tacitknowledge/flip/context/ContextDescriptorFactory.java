@@ -30,7 +30,9 @@ public class ContextDescriptorFactory
      * The factory method used to create {@link ContextDescriptor}. This method
      * parses using java reflection API and extracts all methods which have no 
      * parameters and have a return type. After that it generates {@link ContextDescriptor}
-     * setting the required information in it.
+     * setting the required information in it. The {@link ContextPropertyAccessor}s 
+     * of the methods are created here, so the property values are read without 
+     * reflection later.
      * 
      * @param contextProvider the context provider object used to obtain such information.
      * @return the {@link ContextDescriptor} object which reflects this context provider.
@@ -73,11 +75,13 @@ public class ContextDescriptorFactory
                 if (Map.class.isAssignableFrom(method.getReturnType()))
                 {
                     contextDescriptor.getAnonymousProperties().add(method);
+                    contextDescriptor.getAnonymousPropertyAccessors().add(ContextPropertyAccessors.create(method));
                 }
             }
             else
             {
                 contextDescriptor.getProperties().put(propertyName, method);
+                contextDescriptor.getPropertyAccessors().put(propertyName, ContextPropertyAccessors.create(method));
             }
         }
     }
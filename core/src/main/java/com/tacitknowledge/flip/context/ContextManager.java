@@ -36,6 +36,10 @@ public class ContextManager
 
     private final List<ContextDescriptor> contextList = new ArrayList<ContextDescriptor>();
 
+    private final Map<String, ContextMap> contextMaps = new HashMap<String, ContextMap>();
+
+    private final ContextMap globalContextMap;
+
     /**
      * Constructs the context manager and adds the context providers set in {@link Environment#getContextProviders() }.
      * 
@@ -57,6 +61,13 @@ public class ContextManager
             contexts.put(contextDescriptor.getName(), contextDescriptor);
             contextList.add(contextDescriptor);
         }
+
+        for (final ContextDescriptor contextDescriptor : contexts.values())
+        {
+            contextMaps.put(contextDescriptor.getName(), 
+                    new ContextMap(Collections.singletonList(contextDescriptor)));
+        }
+        globalContextMap = new ContextMap(contextList);
     }
 
     /**
@@ -68,6 +79,7 @@ public class ContextManager
      * If the context name is the name of one existent context (there is a context
      * provider whose annotation value {@link FlipContext#name()} equals to the 
      * contextName parameter) then that context map is returned.
+     * The map views are created once, so the same view is returned for the same context.
      * 
      * @param contextName the context
      * @return the map view of properties of that context.
@@ -77,16 +89,16 @@ public class ContextManager
     {
         if (ContextMap.GLOBAL.equals(contextName))
         {
-            return new ContextMap(contextList);
+            return globalContextMap;
         }
         else
         {
-            final ContextDescriptor descriptor = contexts.get(contextName);
-            if (descriptor == null)
+            final ContextMap contextMap = contextMaps.get(contextName);
+            if (contextMap == null)
             {
                 throw new UnknownContextException(String.format("Cannot find context with name [%s].", contextName));
             }
-            return new ContextMap(Collections.singletonList(descriptor));
+            return contextMap;
         }
     }
 }
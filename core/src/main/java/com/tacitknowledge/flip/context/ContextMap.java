@@ -14,9 +14,8 @@
 */
 package com.tacitknowledge.flip.context;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -24,6 +23,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.tacitknowledge.flip.exceptions.UnknownContextPropertyException;
+import com.tacitknowledge.flip.jfr.FlightRecorderEvents;
 
 /**
  * The map view of context used to access the context properties. This map does
@@ -33,7 +33,14 @@ import com.tacitknowledge.flip.exceptions.UnknownContextPropertyException;
  * throws {@link UnsupportedOperationException}, exceptions of this rule are:
  * {@link #isEmpty() } which always returns {@code "true"}, {@link #size()} which
  * always returns {@code "1"} and {@link #containsKey(java.lang.Object)} which returns
- * the real existence of the property.
+ * the real existence of the property.<br />
+ * The map indexes the named properties of the contexts by the name, so the 
+ * property is usually found with a single hash lookup. The anonymous properties 
+ * are looked up in the contexts preceding the owner of the named property only. 
+ * The lookup does not throw and catch exceptions for the missing properties. 
+ * While an {@link EvaluationScope} is open the property values are read from 
+ * the context providers once per scope. While a flight recording is running 
+ * the slow reads of the properties are recorded. 
  * 
  * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
  * @author Petric Coroli <pcoroli@tacitknowledge.com>
@@ -43,7 +50,28 @@ public class ContextMap implements Map<String, Object>
 
     public static final String GLOBAL = "_all";
 
-    private final List<ContextDescriptor> contexts;
+    private static final Object MISSING = new Object();
+
+    private static final FlightRecorderEvents events = FlightRecorderEvents.getInstance();
+
+    /**
+     * The read of a context property through the current {@link EvaluationScope} 
+     * timed by the flight recorder event.
+     */
+    private static final FlightRecorderEvents.ContextRead SCOPED_READ = new FlightRecorderEvents.ContextRead()
+    {
+        @Override
+        public Object read(final ContextPropertyAccessor accessor, final Object provider) throws Exception
+        {
+            return EvaluationScope.getValue(accessor, provider);
+        }
+    };
+
+    private final ContextDescriptor[] contexts;
+
+    private final Map<String, Integer> owners = new HashMap<String, Integer>();
+
+    private final int firstAnonymous;
 
     /**
      * Constructs the map view based on the list of context descriptors. The 
@@ -55,7 +83,21 @@ public class ContextMap implements Map<String, Object>
      */
     public ContextMap(final List<ContextDescriptor> contexts)
     {
-        this.contexts = contexts;
+        this.contexts = contexts.toArray(new ContextDescriptor[contexts.size()]);
+
+        int anonymous = this.contexts.length;
+        for (int i = this.contexts.length - 1; i >= 0; i--)
+        {
+            for (final String name : this.contexts[i].getPropertyAccessors().keySet())
+            {
+                owners.put(name, i);
+            }
+            if (!this.contexts[i].getAnonymousPropertyAccessors().isEmpty())
+            {
+                anonymous = i;
+            }
+        }
+        firstAnonymous = anonymous;
     }
 
     @Override
@@ -73,15 +115,7 @@ public class ContextMap implements Map<String, Object>
     @Override
     public boolean containsKey(final Object key)
     {
-        try
-        {
-            getValue(String.valueOf(key));
-            return true;
-        }
-        catch (final MissingValueException ex)
-        {
-            return false;
-        }
+        return getValue(String.valueOf(key)) != MISSING;
     }
 
     @Override
@@ -93,14 +127,12 @@ public class ContextMap implements Map<String, Object>
     @Override
     public Object get(final Object key)
     {
-        try
-        {
-            return getValue(String.valueOf(key));
-        }
-        catch (final MissingValueException ex)
+        final Object value = getValue(String.valueOf(key));
+        if (value == MISSING)
         {
             throw new UnknownContextPropertyException(String.format("Cannot find property named [%s].", key));
         }
+        return value;
     }
 
     @Override
@@ -146,48 +178,41 @@ public class ContextMap implements Map<String, Object>
     }
 
     /**
-     * Returns the value of context property. It loops by the context descriptors
-     * passed to constructor and when it finds the property returns its value.
-     * If there is no such property in all contexts will be raised 
-     * {@link MissingValueException} exception.
+     * Returns the value of context property. The contexts which precede the 
+     * owner of the named property are looked up for the anonymous property only, 
+     * starting from the owner the contexts are looked up in order for the named 
+     * and then the anonymous property. 
      * 
      * @param name the name of property whose value to return.
-     * @return the value of the property
-     * @throws MissingValueException when there is no such property found
+     * @return the value of the property or {@link #MISSING} if there is no such property.
      */
-    private Object getValue(final String name) throws MissingValueException
+    private Object getValue(final String name)
     {
-        for (final ContextDescriptor context : contexts)
+        final Integer owner = owners.get(name);
+        final int ownerIndex = owner == null ? contexts.length : owner.intValue();
+
+        for (int i = firstAnonymous; i < ownerIndex; i++)
         {
-            try
+            final Object value = getAnonymousValue(contexts[i], name);
+            if (value != MISSING)
             {
-                return getValueFromContext(context, name);
+                return value;
             }
-            catch (final MissingValueException ex)
-            {}
         }
-        throw new MissingValueException();
-    }
 
-    /**
-     * Looks up for a property in a specific context.
-     * 
-     * @param contextDescriptor the context descriptor where to find for the property.
-     * @param name the name of property to find.
-     * @return the value of context property found.
-     * @throws MissingValueException when no such property was found in this context.
-     */
-    private Object getValueFromContext(final ContextDescriptor contextDescriptor, final String name)
-        throws MissingValueException
-    {
-        try
+        for (int i = ownerIndex; i < contexts.length; i++)
         {
-            return getNamedValue(contextDescriptor, name);
-        }
-        catch (final MissingValueException ex)
-        {
-            return getAnonymousValue(contextDescriptor, name);
+            Object value = getNamedValue(contexts[i], name);
+            if (value == MISSING)
+            {
+                value = getAnonymousValue(contexts[i], name);
+            }
+            if (value != MISSING)
+            {
+                return value;
+            }
         }
+        return MISSING;
     }
 
     /**
@@ -196,34 +221,24 @@ public class ContextMap implements Map<String, Object>
      * 
      * @param contextDescriptor the context descriptor where to find for the property.
      * @param name the name of the property.
-     * @return the value of the property found.
-     * @throws MissingValueException when there is no such property found.
+     * @return the value of the property found or {@link #MISSING}.
      */
     private Object getNamedValue(final ContextDescriptor contextDescriptor, final String name)
-        throws MissingValueException
     {
-        try
-        {
-            final Method methodToInvoke = contextDescriptor.getProperties().get(name);
-            if (methodToInvoke == null)
-            {
-                throw new MissingValueException();
-            }
-            return methodToInvoke.invoke(contextDescriptor.getContext());
-        }
-        catch (final IllegalAccessException ex)
+        final ContextPropertyAccessor accessor = contextDescriptor.getPropertyAccessors().get(name);
+        if (accessor == null)
         {
-            Logger.getLogger(ContextManager.class.getName()).log(Level.WARNING, null, ex);
+            return MISSING;
         }
-        catch (final IllegalArgumentException ex)
+        try
         {
-            Logger.getLogger(ContextManager.class.getName()).log(Level.WARNING, null, ex);
+            return invoke(contextDescriptor, accessor, name, false);
         }
-        catch (final InvocationTargetException ex)
+        catch (final Exception ex)
         {
             Logger.getLogger(ContextManager.class.getName()).log(Level.WARNING, null, ex);
+            return MISSING;
         }
-        throw new MissingValueException();
     }
 
     /**
@@ -232,31 +247,47 @@ public class ContextMap implements Map<String, Object>
      * 
      * @param contextDescriptor the context descriptor where to find for the property.
      * @param name the name of the property.
-     * @return the value of the property found.
-     * @throws MissingValueException when there is no such property found.
+     * @return the value of the property found or {@link #MISSING}.
      */
     private Object getAnonymousValue(final ContextDescriptor contextDescriptor, final String name)
-        throws MissingValueException
     {
-        for (final Method method : contextDescriptor.getAnonymousProperties())
+        for (final ContextPropertyAccessor accessor : contextDescriptor.getAnonymousPropertyAccessors())
         {
+            final Map<?, ?> map;
             try
             {
-                final Map<?, ?> map = (Map<?, ?>) method.invoke(contextDescriptor.getContext());
-                if (!map.containsKey(name))
-                {
-                    throw new MissingValueException();
-                }
+                map = (Map<?, ?>) invoke(contextDescriptor, accessor, name, true);
+            }
+            catch (final Exception ex)
+            {
+                continue;
+            }
+            if (map != null && map.containsKey(name))
+            {
                 return map.get(name);
             }
-            catch (final IllegalAccessException ex)
-            {}
-            catch (final IllegalArgumentException ex)
-            {}
-            catch (final InvocationTargetException ex)
-            {}
         }
-        throw new MissingValueException();
+        return MISSING;
+    }
+
+    /**
+     * Reads the property of the context provider. 
+     * 
+     * @param contextDescriptor the context descriptor of the provider.
+     * @param accessor the accessor of the property.
+     * @param name the name of the property requested.
+     * @param anonymous <code>true</code> if the accessor reads the anonymous property.
+     * @return the value of the property.
+     * @throws Exception if the property could not be read.
+     */
+    private Object invoke(final ContextDescriptor contextDescriptor, final ContextPropertyAccessor accessor,
+            final String name, final boolean anonymous) throws Exception
+    {
+        if (!events.isContextInvocationEnabled())
+        {
+            return EvaluationScope.getValue(accessor, contextDescriptor.getContext());
+        }
+        return events.readContext(SCOPED_READ, accessor, contextDescriptor.getContext(), name, anonymous);
     }
 
 }
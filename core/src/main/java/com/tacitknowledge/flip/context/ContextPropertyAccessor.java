@@ -0,0 +1,35 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.context;
+
+/**
+ * The accessor which reads the value of a context property from the context 
+ * provider. The accessors are created by {@link ContextDescriptorFactory} once 
+ * per context provider method, so reading the property does not use reflection 
+ * where it is possible. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public interface ContextPropertyAccessor
+{
+    /**
+     * Returns the value of the property. 
+     * 
+     * @param context the context provider object.
+     * @return the value of the property.
+     * @throws Exception the exception thrown by the context provider method.
+     */
+    Object getValue(Object context) throws Exception;
+}
@@ -0,0 +1,143 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.context;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The factory of {@link ContextPropertyAccessor}s. When the context provider 
+ * method is public, its class is public and visible to Flip, the accessor is 
+ * generated with {@link LambdaMetafactory}, so it calls the method directly and 
+ * could be inlined by JIT as any other call. Otherwise, or when the method 
+ * handles are not available in the runtime, the accessor invokes the method 
+ * through reflection with the access checks suppressed. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public final class ContextPropertyAccessors
+{
+    private static final Logger logger = Logger.getLogger(ContextPropertyAccessors.class.getName());
+
+    private ContextPropertyAccessors()
+    {}
+
+    /**
+     * Creates the accessor of the context provider method. 
+     * 
+     * @param method the method without parameters which returns the property value.
+     * @return the accessor calling the method.
+     */
+    public static ContextPropertyAccessor create(final Method method)
+    {
+        if (isDirectlyAccessible(method))
+        {
+            try
+            {
+                return generate(method);
+            }
+            catch (final Throwable ex)
+            {
+                logger.log(Level.FINE, String.format(
+                        "Cannot generate the accessor for [%s]. Using reflection instead.", method), ex);
+            }
+        }
+        return reflective(method);
+    }
+
+    /**
+     * Creates the accessor which calls the method through reflection.
+     * 
+     * @param method the method without parameters which returns the property value.
+     * @return the reflective accessor.
+     */
+    public static ContextPropertyAccessor reflective(final Method method)
+    {
+        try
+        {
+            method.setAccessible(true);
+        }
+        catch (final SecurityException ex)
+        {
+            logger.log(Level.FINE, null, ex);
+        }
+        return new ReflectiveAccessor(method);
+    }
+
+    private static boolean isDirectlyAccessible(final Method method)
+    {
+        final Class<?> type = method.getDeclaringClass();
+        if (!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(type.getModifiers())
+                || Modifier.isStatic(method.getModifiers()))
+        {
+            return false;
+        }
+
+        try
+        {
+            return Class.forName(type.getName(), false, ContextPropertyAccessors.class.getClassLoader()) == type;
+        }
+        catch (final ClassNotFoundException ex)
+        {
+            return false;
+        }
+    }
+
+    private static ContextPropertyAccessor generate(final Method method) throws Throwable
+    {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final MethodHandle implementation = lookup.unreflect(method);
+        final CallSite site = LambdaMetafactory.metafactory(lookup, "getValue",
+                MethodType.methodType(ContextPropertyAccessor.class),
+                MethodType.methodType(Object.class, Object.class), 
+                implementation, implementation.type());
+        return (ContextPropertyAccessor) site.getTarget().invokeWithArguments();
+    }
+
+    private static class ReflectiveAccessor implements ContextPropertyAccessor
+    {
+        private final Method method;
+
+        public ReflectiveAccessor(final Method method)
+        {
+            this.method = method;
+        }
+
+        @Override
+        public Object getValue(final Object context) throws Exception
+        {
+            try
+            {
+                return method.invoke(context);
+            }
+            catch (final InvocationTargetException ex)
+            {
+                if (ex.getCause() instanceof Exception)
+                {
+                    throw (Exception) ex.getCause();
+                }
+                throw ex;
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.context;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The scope of features evaluation, i.e. a request or another unit of work. 
+ * While the scope is open in the current thread each context property is 
+ * read from its context provider at most once, and the value is reused by all 
+ * of the features and conditions evaluated in this scope. The scope is bound 
+ * to the thread which has opened it and should be closed in the same thread:
+ * <pre>
+ * final EvaluationScope scope = EvaluationScope.open();
+ * try {
+ *     ...
+ * } finally {
+ *     scope.close();
+ * }
+ * </pre>
+ * The scopes could be nested, in this case the inner scope shares the values 
+ * of the outer one and the values are discarded when the outermost scope is closed.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public final class EvaluationScope
+{
+    private static final ThreadLocal<EvaluationScope> current = new ThreadLocal<EvaluationScope>();
+
+    private final Map<ContextPropertyAccessor, Object> values = new IdentityHashMap<ContextPropertyAccessor, Object>();
+
+    private int depth;
+
+    private EvaluationScope()
+    {}
+
+    /**
+     * Opens the scope in the current thread. If the scope is already open 
+     * it is returned and should be closed as many times as it was opened.
+     * 
+     * @return the scope open.
+     */
+    public static EvaluationScope open()
+    {
+        EvaluationScope scope = current.get();
+        if (scope == null)
+        {
+            scope = new EvaluationScope();
+            current.set(scope);
+        }
+        scope.depth++;
+        return scope;
+    }
+
+    /**
+     * Returns the scope open in the current thread.
+     * 
+     * @return the current scope or <code>null</code> if there is no open scope.
+     */
+    public static EvaluationScope current()
+    {
+        return current.get();
+    }
+
+    /**
+     * Closes the scope. When the outermost scope is closed the values 
+     * read in it are discarded and the scope is unbound from the thread.
+     */
+    public void close()
+    {
+        if (depth == 0)
+        {
+            return;
+        }
+        if (--depth == 0)
+        {
+            values.clear();
+            if (current.get() == this)
+            {
+                current.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of property values read in this scope.
+     * 
+     * @return the number of values held.
+     */
+    public int size()
+    {
+        return values.size();
+    }
+
+    /**
+     * Returns the value of the property read by the accessor. If there is 
+     * an open scope in the current thread the value is read once per scope.
+     * 
+     * @param accessor the accessor of the property.
+     * @param context the context provider object.
+     * @return the value of the property.
+     * @throws Exception the exception thrown by the context provider method.
+     */
+    static Object getValue(final ContextPropertyAccessor accessor, final Object context) throws Exception
+    {
+        final EvaluationScope scope = current.get();
+        if (scope == null)
+        {
+            return accessor.getValue(context);
+        }
+
+        Object value = scope.values.get(accessor);
+        if (value == null && !scope.values.containsKey(accessor))
+        {
+            value = accessor.getValue(context);
+            scope.values.put(accessor, value);
+        }
+        return value;
+    }
+}
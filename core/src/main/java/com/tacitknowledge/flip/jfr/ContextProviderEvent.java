@@ -0,0 +1,46 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The invocation of a context provider to read a context property. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+@Name("com.tacitknowledge.flip.ContextProviderInvocation")
+@Label("Context Provider Invocation")
+@Description("The read of a context property which took longer than the threshold")
+@Category("Flip")
+@Threshold("100 us")
+@StackTrace(false)
+class ContextProviderEvent extends jdk.jfr.Event
+{
+    @Label("Provider")
+    String provider;
+
+    @Label("Property")
+    String property;
+
+    @Label("Anonymous")
+    @Description("The property was looked up in the map of the anonymous property")
+    boolean anonymous;
+}
@@ -0,0 +1,47 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The evaluation of one feature descriptor. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+@Name("com.tacitknowledge.flip.FeatureEvaluation")
+@Label("Feature Evaluation")
+@Description("The evaluation of a feature which took longer than the threshold")
+@Category("Flip")
+@Threshold("100 us")
+@StackTrace(false)
+class FeatureEvaluationEvent extends jdk.jfr.Event
+{
+    @Label("Feature")
+    String featureName;
+
+    @Label("State")
+    @Description("The state evaluated, null if the evaluation has failed")
+    String state;
+
+    @Label("Rule")
+    @Description("The index of the rule matched, -1 if the state is set or no rule matched")
+    int ruleIndex;
+}
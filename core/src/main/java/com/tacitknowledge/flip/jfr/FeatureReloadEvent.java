@@ -0,0 +1,54 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The reload of the configuration by a property reader. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+@Name("com.tacitknowledge.flip.FeatureReload")
+@Label("Feature Reload")
+@Description("The configuration read and published by a property reader")
+@Category("Flip")
+@StackTrace(false)
+class FeatureReloadEvent extends jdk.jfr.Event
+{
+    @Label("Property Reader")
+    String propertyReader;
+
+    @Label("Parse Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long parseTime;
+
+    @Label("Features")
+    int featureCount;
+
+    @Label("Added")
+    int addedCount;
+
+    @Label("Removed")
+    int removedCount;
+
+    @Label("Modified")
+    int modifiedCount;
+}
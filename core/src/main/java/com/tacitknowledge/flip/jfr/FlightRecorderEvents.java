@@ -0,0 +1,212 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.jfr;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.tacitknowledge.flip.context.ContextManager;
+import com.tacitknowledge.flip.context.ContextPropertyAccessor;
+import com.tacitknowledge.flip.model.FeatureDescriptor;
+import com.tacitknowledge.flip.model.FeatureState;
+
+/**
+ * The emitter of the Java Flight Recorder events. The callers do not depend 
+ * on the <code>jdk.jfr</code> classes, and the emitter does nothing if the JVM 
+ * has no flight recorder. The callers should check that the type of the event 
+ * is enabled, e.g. {@link #isEvaluationEnabled()}, before doing the work 
+ * through the emitter, so nothing is timed while no recording wants the event. 
+ * The emitter does the timed work itself, so the event is created and 
+ * committed in one method and could be eliminated by the escape analysis. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public abstract class FlightRecorderEvents
+{
+    /**
+     * The system property which turns the flight recorder events off when it 
+     * is <code>false</code>.
+     */
+    public static final String CONFIG_JFR_ENABLED = "flip.jfr.enabled";
+
+    private static final FlightRecorderEvents instance = create();
+
+    private volatile boolean evaluationEnabled;
+
+    private volatile boolean contextInvocationEnabled;
+
+    private volatile boolean reloadEnabled;
+
+    FlightRecorderEvents()
+    {
+    }
+
+    /**
+     * Returns the emitter of the events.
+     * 
+     * @return the shared instance of {@link FlightRecorderEvents}.
+     */
+    public static FlightRecorderEvents getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Returns if the event of the feature evaluation is enabled in a running 
+     * recording.
+     * 
+     * @return <code>true</code> if the evaluations should be made through {@link #evaluate}.
+     */
+    public final boolean isEvaluationEnabled()
+    {
+        return evaluationEnabled;
+    }
+
+    /**
+     * Returns if the event of the context provider invocation is enabled in a 
+     * running recording.
+     * 
+     * @return <code>true</code> if the context properties should be read through {@link #readContext}.
+     */
+    public final boolean isContextInvocationEnabled()
+    {
+        return contextInvocationEnabled;
+    }
+
+    /**
+     * Returns if the event of the property reader reload is enabled in a 
+     * running recording.
+     * 
+     * @return <code>true</code> if the reloads should be reported to {@link #reloaded}.
+     */
+    public final boolean isReloadEnabled()
+    {
+        return reloadEnabled;
+    }
+
+    final void setEnabled(final boolean evaluation, final boolean contextInvocation, final boolean reload)
+    {
+        this.evaluationEnabled = evaluation;
+        this.contextInvocationEnabled = contextInvocation;
+        this.reloadEnabled = reload;
+    }
+
+    /**
+     * Processes the feature descriptor and records the evaluation if it took 
+     * longer than the threshold.
+     * 
+     * @param name the name of the feature.
+     * @param descriptor the descriptor to process.
+     * @param contextManager the context manager to process the descriptor with.
+     * @return the state of the feature as {@link FeatureDescriptor#process(ContextManager)} returns it.
+     */
+    public abstract FeatureState evaluate(String name, FeatureDescriptor descriptor, ContextManager contextManager);
+
+    /**
+     * Reads the context property and records the invocation of the context 
+     * provider if it took longer than the threshold.
+     * 
+     * @param read the read of the property, a shared instance.
+     * @param accessor the accessor of the property.
+     * @param provider the context provider invoked.
+     * @param property the name of the property requested.
+     * @param anonymous <code>true</code> if the anonymous property of the provider is read.
+     * @return the value of the property.
+     * @throws Exception if the property could not be read.
+     */
+    public abstract Object readContext(ContextRead read, ContextPropertyAccessor accessor, Object provider,
+            String property, boolean anonymous) throws Exception;
+
+    /**
+     * Records the reload of a property reader. 
+     * 
+     * @param reader the property reader.
+     * @param parseTimeNanos the time of reading the configuration in nanoseconds.
+     * @param featureCount the number of features read.
+     * @param added the number of features added.
+     * @param removed the number of features removed.
+     * @param modified the number of features modified.
+     */
+    public abstract void reloaded(Object reader, long parseTimeNanos, int featureCount, int added, int removed,
+            int modified);
+
+    /**
+     * The read of a context property timed by {@link FlightRecorderEvents#readContext}. 
+     * The caller passes a shared instance, so nothing is allocated per read.
+     */
+    public interface ContextRead
+    {
+        /**
+         * Reads the property of the context provider.
+         * 
+         * @param accessor the accessor of the property.
+         * @param provider the context provider.
+         * @return the value of the property.
+         * @throws Exception if the property could not be read.
+         */
+        Object read(ContextPropertyAccessor accessor, Object provider) throws Exception;
+    }
+
+    private static FlightRecorderEvents create()
+    {
+        if ("false".equalsIgnoreCase(System.getProperty(CONFIG_JFR_ENABLED)))
+        {
+            return new Disabled();
+        }
+        try
+        {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return (FlightRecorderEvents) Class.forName(FlightRecorderEvents.class.getPackage().getName()
+                    + ".JfrFlightRecorderEvents").newInstance();
+        }
+        catch (final Exception ex)
+        {
+            Logger.getLogger(FlightRecorderEvents.class.getName()).log(Level.FINE, 
+                    "The flight recorder is not available, the events are not emitted.", ex);
+        }
+        catch (final LinkageError ex)
+        {
+            Logger.getLogger(FlightRecorderEvents.class.getName()).log(Level.FINE, 
+                    "The flight recorder is not available, the events are not emitted.", ex);
+        }
+        return new Disabled();
+    }
+
+    /**
+     * The emitter used when there is no flight recorder. No event is ever enabled.
+     */
+    private static class Disabled extends FlightRecorderEvents
+    {
+        @Override
+        public FeatureState evaluate(final String name, final FeatureDescriptor descriptor,
+                final ContextManager contextManager)
+        {
+            return descriptor.process(contextManager);
+        }
+
+        @Override
+        public Object readContext(final ContextRead read, final ContextPropertyAccessor accessor,
+                final Object provider, final String property, final boolean anonymous) throws Exception
+        {
+            return read.read(accessor, provider);
+        }
+
+        @Override
+        public void reloaded(final Object reader, final long parseTimeNanos, final int featureCount, final int added,
+                final int removed, final int modified)
+        {
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.jfr;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+
+import com.tacitknowledge.flip.context.ContextManager;
+import com.tacitknowledge.flip.context.ContextPropertyAccessor;
+import com.tacitknowledge.flip.model.FeatureDescriptor;
+import com.tacitknowledge.flip.model.FeatureState;
+
+/**
+ * The emitter of the flight recorder events. It listens to the flight 
+ * recorder and, each time a recording starts or stops, caches whether each 
+ * of the event types is enabled, so the callers do not pay for the events 
+ * the recordings do not want. It is instantiated by name only when the 
+ * <code>jdk.jfr</code> classes are present. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+final class JfrFlightRecorderEvents extends FlightRecorderEvents implements FlightRecorderListener
+{
+    private volatile EventType[] eventTypes;
+
+    JfrFlightRecorderEvents()
+    {
+        if (!FlightRecorder.isAvailable())
+        {
+            throw new IllegalStateException("The flight recorder is not available.");
+        }
+        // the listener is told when the recorder is initialized, so the
+        // recorder is not initialized here if nobody records
+        FlightRecorder.addListener(this);
+    }
+
+    @Override
+    public void recorderInitialized(final FlightRecorder recorder)
+    {
+        FlightRecorder.register(FeatureEvaluationEvent.class);
+        FlightRecorder.register(ContextProviderEvent.class);
+        FlightRecorder.register(FeatureReloadEvent.class);
+        eventTypes = new EventType[] {
+            EventType.getEventType(FeatureEvaluationEvent.class),
+            EventType.getEventType(ContextProviderEvent.class),
+            EventType.getEventType(FeatureReloadEvent.class) };
+        update();
+    }
+
+    @Override
+    public void recordingStateChanged(final Recording recording)
+    {
+        update();
+    }
+
+    private void update()
+    {
+        final EventType[] types = eventTypes;
+        if (types != null)
+        {
+            setEnabled(types[0].isEnabled(), types[1].isEnabled(), types[2].isEnabled());
+        }
+    }
+
+    @Override
+    public FeatureState evaluate(final String name, final FeatureDescriptor descriptor,
+            final ContextManager contextManager)
+    {
+        final FeatureEvaluationEvent event = new FeatureEvaluationEvent();
+        event.begin();
+        FeatureState state = null;
+        int rule = -1;
+        try
+        {
+            state = descriptor.getState();
+            if (state == null)
+            {
+                rule = descriptor.findMatchedRule(contextManager);
+                state = rule < 0 ? null : descriptor.getRules()[rule].getState();
+            }
+            return state;
+        }
+        finally
+        {
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.featureName = name;
+                event.state = state == null ? null : state.name();
+                event.ruleIndex = rule;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public Object readContext(final ContextRead read, final ContextPropertyAccessor accessor, final Object provider,
+            final String property, final boolean anonymous) throws Exception
+    {
+        final ContextProviderEvent event = new ContextProviderEvent();
+        event.begin();
+        try
+        {
+            return read.read(accessor, provider);
+        }
+        finally
+        {
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.provider = provider == null ? null : provider.getClass().getName();
+                event.property = property;
+                event.anonymous = anonymous;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public void reloaded(final Object reader, final long parseTimeNanos, final int featureCount, final int added,
+            final int removed, final int modified)
+    {
+        final FeatureReloadEvent event = new FeatureReloadEvent();
+        if (event.shouldCommit())
+        {
+            event.propertyReader = reader.getClass().getName();
+            event.parseTime = parseTimeNanos;
+            event.featureCount = featureCount;
+            event.addedCount = added;
+            event.removedCount = removed;
+            event.modifiedCount = modified;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.management;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import com.tacitknowledge.flip.Environment;
+import com.tacitknowledge.flip.FeatureServiceImpl;
+import com.tacitknowledge.flip.properties.CacheablePropertyReader;
+import com.tacitknowledge.flip.properties.PropertyReader;
+
+/**
+ * The MBeans of one feature service registered in an MBean server: the 
+ * {@link FeatureServiceMXBean} and the {@link PropertyReaderMXBean} of each 
+ * cacheable property reader. The registration fails if the beans with the 
+ * same service name are registered already, so the beans of another 
+ * application sharing the server are never replaced. The beans are 
+ * unregistered when this object is closed, e.g. by 
+ * {@link FeatureServiceImpl#close()}. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public final class FeatureServiceMBeans implements Closeable
+{
+    /**
+     * The property of the {@link Environment} which turns the registration of 
+     * the MBeans by the feature service factories on. 
+     */
+    public static final String CONFIG_JMX_ENABLED = "flip.jmx.enabled";
+
+    /**
+     * The property of the {@link Environment} with the name of the feature 
+     * service in the MBean names. By default the name is made of the identity 
+     * hash code of the feature service, so it is unique in the JVM while the 
+     * service is alive. 
+     */
+    public static final String CONFIG_JMX_NAME = "flip.jmx.name";
+
+    /**
+     * The domain of the MBean names.
+     */
+    public static final String DOMAIN = "com.tacitknowledge.flip";
+
+    private final MBeanServer server;
+
+    private final List<ObjectName> registered;
+
+    private final List<ObjectName> objectNames;
+
+    private FeatureServiceMBeans(final MBeanServer server, final List<ObjectName> registered)
+    {
+        this.server = server;
+        this.registered = registered;
+        this.objectNames = Collections.unmodifiableList(registered);
+    }
+
+    /**
+     * Returns if the environment asks to register the MBeans.
+     * 
+     * @param environment the environment of the feature service.
+     * @return <code>true</code> if {@link #CONFIG_JMX_ENABLED} is <code>true</code>.
+     */
+    public static boolean isEnabled(final Environment environment)
+    {
+        return environment.getProperties() != null 
+                && "true".equalsIgnoreCase(environment.getProperties().getProperty(CONFIG_JMX_ENABLED));
+    }
+
+    /**
+     * Registers the MBeans of the feature service in the platform MBean server 
+     * under the name taken from {@link #CONFIG_JMX_NAME}.
+     * 
+     * @param featureService the feature service.
+     * @param environment the environment the feature service was created with.
+     * @return the MBeans registered.
+     * @throws JMException if the MBeans could not be registered.
+     */
+    public static FeatureServiceMBeans register(final FeatureServiceImpl featureService, 
+            final Environment environment) throws JMException
+    {
+        String name = environment.getProperties() == null ? null 
+                : environment.getProperties().getProperty(CONFIG_JMX_NAME);
+        if (name == null || name.trim().length() == 0)
+        {
+            name = "flip-" + Integer.toHexString(System.identityHashCode(featureService));
+        }
+        return register(ManagementFactory.getPlatformMBeanServer(), name.trim(), featureService, 
+                environment.getPropertyReaders());
+    }
+
+    /**
+     * Registers the MBeans of the feature service. If any of the MBeans could 
+     * not be registered the ones registered by this call are unregistered. 
+     * 
+     * @param server the MBean server.
+     * @param name the name of the feature service.
+     * @param featureService the feature service.
+     * @param propertyReaders the property readers of the feature service.
+     * @return the MBeans registered.
+     * @throws JMException if the MBeans could not be registered, 
+     *      {@link javax.management.InstanceAlreadyExistsException} if the MBeans 
+     *      of a feature service with the same name are registered already.
+     */
+    public static FeatureServiceMBeans register(final MBeanServer server, final String name, 
+            final FeatureServiceImpl featureService, final List<PropertyReader> propertyReaders) throws JMException
+    {
+        final FeatureServiceMBeans result = new FeatureServiceMBeans(server, new ArrayList<ObjectName>());
+        try
+        {
+            final ObjectName serviceName = new ObjectName(String.format("%s:type=FeatureService,name=%s", 
+                    DOMAIN, quote(name)));
+            server.registerMBean(new StandardMBean(new FeatureServiceManagement(featureService, propertyReaders), 
+                    FeatureServiceMXBean.class, true), serviceName);
+            result.registered.add(serviceName);
+
+            int index = 0;
+            for (final PropertyReader reader : propertyReaders)
+            {
+                if (reader instanceof CacheablePropertyReader)
+                {
+                    final ObjectName readerName = new ObjectName(String.format(
+                            "%s:type=PropertyReader,service=%s,name=%s", 
+                            DOMAIN, quote(name), quote(index + "-" + reader.getClass().getSimpleName())));
+                    server.registerMBean(new StandardMBean(
+                            new PropertyReaderManagement((CacheablePropertyReader) reader), 
+                            PropertyReaderMXBean.class, true), readerName);
+                    result.registered.add(readerName);
+                }
+                index++;
+            }
+        }
+        catch (final JMException ex)
+        {
+            result.unregister();
+            throw ex;
+        }
+        return result;
+    }
+
+    /**
+     * Unregisters the MBeans of the feature service with the name passed. 
+     * 
+     * @param server the MBean server.
+     * @param name the name of the feature service.
+     * @throws JMException if the MBeans could not be unregistered.
+     */
+    public static void unregister(final MBeanServer server, final String name) throws JMException
+    {
+        final List<ObjectName> names = new ArrayList<ObjectName>();
+        names.addAll(server.queryNames(new ObjectName(String.format("%s:type=FeatureService,name=%s", 
+                DOMAIN, quote(name))), null));
+        names.addAll(server.queryNames(new ObjectName(String.format("%s:type=PropertyReader,service=%s,*", 
+                DOMAIN, quote(name))), null));
+        for (final ObjectName objectName : names)
+        {
+            try
+            {
+                server.unregisterMBean(objectName);
+            }
+            catch (final InstanceNotFoundException ex)
+            {
+                // unregistered concurrently
+            }
+        }
+    }
+
+    /**
+     * Returns the names of the MBeans registered.
+     * 
+     * @return the unmodifiable list of MBean names, the name of the 
+     *      {@link FeatureServiceMXBean} goes first.
+     */
+    public List<ObjectName> getObjectNames()
+    {
+        return objectNames;
+    }
+
+    /**
+     * Unregisters the MBeans. The MBeans which are not registered anymore are skipped.
+     */
+    public void unregister()
+    {
+        for (final ObjectName objectName : objectNames)
+        {
+            try
+            {
+                server.unregisterMBean(objectName);
+            }
+            catch (final InstanceNotFoundException ex)
+            {
+                // unregistered before
+            }
+            catch (final JMException ex)
+            {
+                Logger.getLogger(FeatureServiceMBeans.class.getName()).log(Level.WARNING, 
+                        String.format("Cannot unregister the MBean [%s].", objectName), ex);
+            }
+        }
+    }
+
+    /**
+     * Unregisters the MBeans, see {@link #unregister()}.
+     */
+    @Override
+    public void close()
+    {
+        unregister();
+    }
+
+    /**
+     * Makes the value usable in the MBean name. 
+     * 
+     * @param value the value.
+     * @return the value with the characters other than letters, digits, dots, 
+     *      dashes and underscores replaced by underscores.
+     */
+    private static String quote(final String value)
+    {
+        return value.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
@@ -0,0 +1,123 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.management;
+
+/**
+ * The management interface of a feature service. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public interface FeatureServiceMXBean
+{
+    /**
+     * The number of features listed by {@link #getTopFeatures()}.
+     */
+    int TOP_FEATURES = 10;
+
+    /**
+     * Returns the generation of the feature descriptors, it changes each time 
+     * the features of the cacheable property readers change.
+     * 
+     * @return the generation.
+     */
+    long getGeneration();
+
+    /**
+     * Returns the number of features known to the cacheable property readers.
+     * 
+     * @return the number of features.
+     */
+    int getFeatureCount();
+
+    /**
+     * Returns the class name of the metrics sink the evaluations are reported to.
+     * 
+     * @return the class name of the metrics sink.
+     */
+    String getMetricsSink();
+
+    /**
+     * Returns the number of compiled expressions held by the expression cache.
+     * 
+     * @return the size of the expression cache.
+     */
+    int getExpressionCacheSize();
+
+    /**
+     * Returns the maximum number of compiled expressions held by the expression cache.
+     * 
+     * @return the maximum size of the expression cache.
+     */
+    int getExpressionCacheMaxSize();
+
+    /**
+     * Returns the number of expressions taken from the expression cache.
+     * 
+     * @return the number of cache hits.
+     */
+    long getExpressionCacheHitCount();
+
+    /**
+     * Returns the number of expressions compiled because they were not in the cache.
+     * 
+     * @return the number of cache misses.
+     */
+    long getExpressionCacheMissCount();
+
+    /**
+     * Returns the part of the expressions taken from the expression cache.
+     * 
+     * @return the hit rate from 0 to 1, or 0 if no expressions were requested.
+     */
+    double getExpressionCacheHitRate();
+
+    /**
+     * Returns the features which were missing or whose evaluation has failed.
+     * 
+     * @return the sorted names of features.
+     */
+    String[] getProblemFeatures();
+
+    /**
+     * Returns the {@link #TOP_FEATURES} most evaluated features.
+     * 
+     * @return the features with their evaluation counts.
+     * @see #topFeatures(int)
+     */
+    String[] getTopFeatures();
+
+    /**
+     * Returns the most evaluated features with their evaluation counts. The 
+     * features are counted only if the metrics sink is 
+     * {@link com.tacitknowledge.flip.metrics.FeatureMetrics}.
+     * 
+     * @param count the maximum number of features to return.
+     * @return the features in the descending order of their evaluation counts.
+     */
+    String[] topFeatures(int count);
+
+    /**
+     * Reads the configuration of each refreshable property reader again.
+     * 
+     * @return the number of property readers reloaded.
+     */
+    int reload();
+
+    /**
+     * Clears the expression cache, the feature paths and the missing features 
+     * remembered by the feature service.
+     */
+    void clearCaches();
+}
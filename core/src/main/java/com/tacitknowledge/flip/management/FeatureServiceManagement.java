@@ -0,0 +1,145 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.management;
+
+import java.util.List;
+
+import com.tacitknowledge.flip.FeatureServiceImpl;
+import com.tacitknowledge.flip.metrics.FeatureMetrics;
+import com.tacitknowledge.flip.metrics.FeatureStatistics;
+import com.tacitknowledge.flip.model.ExpressionCache;
+import com.tacitknowledge.flip.properties.PropertyReader;
+import com.tacitknowledge.flip.properties.RefreshablePropertyReader;
+
+/**
+ * The {@link FeatureServiceMXBean} of a {@link FeatureServiceImpl}.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+class FeatureServiceManagement implements FeatureServiceMXBean
+{
+    private final FeatureServiceImpl featureService;
+
+    private final List<PropertyReader> propertyReaders;
+
+    FeatureServiceManagement(final FeatureServiceImpl featureService, final List<PropertyReader> propertyReaders)
+    {
+        this.featureService = featureService;
+        this.propertyReaders = propertyReaders;
+    }
+
+    @Override
+    public long getGeneration()
+    {
+        return featureService.getPropertyManager().getGeneration();
+    }
+
+    @Override
+    public int getFeatureCount()
+    {
+        return featureService.getPropertyManager().getFeatureNames().size();
+    }
+
+    @Override
+    public String getMetricsSink()
+    {
+        return featureService.getMetricsSink().getClass().getName();
+    }
+
+    @Override
+    public int getExpressionCacheSize()
+    {
+        return ExpressionCache.getInstance().size();
+    }
+
+    @Override
+    public int getExpressionCacheMaxSize()
+    {
+        return ExpressionCache.getInstance().getMaxSize();
+    }
+
+    @Override
+    public long getExpressionCacheHitCount()
+    {
+        return ExpressionCache.getInstance().getHitCount();
+    }
+
+    @Override
+    public long getExpressionCacheMissCount()
+    {
+        return ExpressionCache.getInstance().getMissCount();
+    }
+
+    @Override
+    public double getExpressionCacheHitRate()
+    {
+        final long hits = getExpressionCacheHitCount();
+        final long total = hits + getExpressionCacheMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String[] getProblemFeatures()
+    {
+        return featureService.getDiagnostics().getFeatureNames().toArray(new String[0]);
+    }
+
+    @Override
+    public String[] getTopFeatures()
+    {
+        return topFeatures(TOP_FEATURES);
+    }
+
+    @Override
+    public String[] topFeatures(final int count)
+    {
+        if (!(featureService.getMetricsSink() instanceof FeatureMetrics))
+        {
+            return new String[0];
+        }
+        final List<FeatureStatistics> top = ((FeatureMetrics) featureService.getMetricsSink()).getTopFeatures(count);
+        final String[] result = new String[top.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            final FeatureStatistics statistics = top.get(i);
+            result[i] = String.format("%s: %d (enabled %d, disabled %d, failed %d)", statistics.getName(),
+                    statistics.getEvaluationCount(), statistics.getEnabledCount(), statistics.getDisabledCount(),
+                    statistics.getFailureCount());
+        }
+        return result;
+    }
+
+    @Override
+    public int reload()
+    {
+        int result = 0;
+        for (final PropertyReader reader : propertyReaders)
+        {
+            if (reader instanceof RefreshablePropertyReader)
+            {
+                ((RefreshablePropertyReader) reader).reload();
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void clearCaches()
+    {
+        ExpressionCache.getInstance().clear();
+        featureService.clearCaches();
+    }
+}
@@ -0,0 +1,98 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.management;
+
+import java.util.Date;
+
+/**
+ * The management interface of a cacheable property reader. The reload 
+ * counters are kept only by the refreshable property readers, for the other 
+ * readers they are zero. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public interface PropertyReaderMXBean
+{
+    /**
+     * Returns the class name of the property reader.
+     * 
+     * @return the class name.
+     */
+    String getType();
+
+    /**
+     * Returns the version of the snapshot published last.
+     * 
+     * @return the snapshot version.
+     */
+    long getSnapshotVersion();
+
+    /**
+     * Returns the time the snapshot published last was loaded.
+     * 
+     * @return the load time or <code>null</code> if nothing was loaded yet.
+     */
+    Date getLoadTime();
+
+    /**
+     * Returns the number of feature descriptors of the snapshot.
+     * 
+     * @return the number of features.
+     */
+    int getFeatureCount();
+
+    /**
+     * Returns the number of reloads which have parsed the configuration.
+     * 
+     * @return the number of reloads.
+     */
+    long getReloadCount();
+
+    /**
+     * Returns the number of reloads skipped because the configuration was not changed.
+     * 
+     * @return the number of skipped reloads.
+     */
+    long getSkippedReloadCount();
+
+    /**
+     * Returns the number of reloads which could not read the configuration.
+     * 
+     * @return the number of failed reloads.
+     */
+    long getFailedReloadCount();
+
+    /**
+     * Returns the duration of the last reload which has parsed the configuration.
+     * 
+     * @return the duration in microseconds.
+     */
+    long getLastReloadTimeMicros();
+
+    /**
+     * Returns the mean duration of the reloads which have parsed the configuration.
+     * 
+     * @return the duration in microseconds or 0 if there were no reloads.
+     */
+    long getMeanReloadTimeMicros();
+
+    /**
+     * Reads the configuration again right away if the reader is refreshable. 
+     * The reload is counted as skipped if the content has not changed.
+     * 
+     * @return <code>true</code> if the reader is refreshable.
+     */
+    boolean reload();
+}
@@ -0,0 +1,118 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.management;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import com.tacitknowledge.flip.properties.CacheablePropertyReader;
+import com.tacitknowledge.flip.properties.RefreshablePropertyReader;
+import com.tacitknowledge.flip.properties.ReloadStatistics;
+
+/**
+ * The {@link PropertyReaderMXBean} of a cacheable property reader.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+class PropertyReaderManagement implements PropertyReaderMXBean
+{
+    private final CacheablePropertyReader reader;
+
+    PropertyReaderManagement(final CacheablePropertyReader reader)
+    {
+        this.reader = reader;
+    }
+
+    @Override
+    public String getType()
+    {
+        return reader.getClass().getName();
+    }
+
+    @Override
+    public long getSnapshotVersion()
+    {
+        return reader.getSnapshot().getVersion();
+    }
+
+    @Override
+    public Date getLoadTime()
+    {
+        final long loadTime = reader.getSnapshot().getLoadTime();
+        return loadTime == 0 ? null : new Date(loadTime);
+    }
+
+    @Override
+    public int getFeatureCount()
+    {
+        return reader.getSnapshot().size();
+    }
+
+    @Override
+    public long getReloadCount()
+    {
+        final ReloadStatistics statistics = getReloadStatistics();
+        return statistics == null ? 0 : statistics.getReloadCount();
+    }
+
+    @Override
+    public long getSkippedReloadCount()
+    {
+        final ReloadStatistics statistics = getReloadStatistics();
+        return statistics == null ? 0 : statistics.getSkippedReloadCount();
+    }
+
+    @Override
+    public long getFailedReloadCount()
+    {
+        final ReloadStatistics statistics = getReloadStatistics();
+        return statistics == null ? 0 : statistics.getFailedReloadCount();
+    }
+
+    @Override
+    public long getLastReloadTimeMicros()
+    {
+        final ReloadStatistics statistics = getReloadStatistics();
+        return statistics == null ? 0 : statistics.getLastReloadTime(TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public long getMeanReloadTimeMicros()
+    {
+        final ReloadStatistics statistics = getReloadStatistics();
+        if (statistics == null || statistics.getReloadCount() == 0)
+        {
+            return 0;
+        }
+        return statistics.getTotalReloadTime(TimeUnit.MICROSECONDS) / statistics.getReloadCount();
+    }
+
+    @Override
+    public boolean reload()
+    {
+        if (reader instanceof RefreshablePropertyReader)
+        {
+            ((RefreshablePropertyReader) reader).reload();
+            return true;
+        }
+        return false;
+    }
+
+    private ReloadStatistics getReloadStatistics()
+    {
+        return reader instanceof RefreshablePropertyReader 
+                ? ((RefreshablePropertyReader) reader).getReloadStatistics() : null;
+    }
+}
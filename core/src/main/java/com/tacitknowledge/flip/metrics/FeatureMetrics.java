@@ -0,0 +1,211 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.tacitknowledge.flip.model.FeatureState;
+
+/**
+ * The metrics sink which keeps the metrics of each feature in memory: the 
+ * number of enabled and disabled evaluations, the number of failures and the 
+ * latency histogram. The counters are striped when the feature is evaluated 
+ * concurrently, so recording an evaluation does not make the threads contend, 
+ * while the counters of the other features stay small. The metrics are kept 
+ * for at most {@link #DEFAULT_MAX_FEATURES} features, the evaluations of the 
+ * features requested after that are counted as untracked only. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FeatureMetrics implements MetricsSink
+{
+    /**
+     * The default maximum number of features whose metrics are kept.
+     */
+    public static final int DEFAULT_MAX_FEATURES = 4096;
+
+    private static final int ENABLED = 0;
+
+    private static final int DISABLED = 1;
+
+    private static final int FAILED = 2;
+
+    private static final int TOTAL_TIME = 3;
+
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<String, Counters>();
+
+    private final AtomicLong untracked = new AtomicLong();
+
+    private final int maxFeatures;
+
+    /**
+     * Constructs the sink which keeps the metrics of at most 
+     * {@link #DEFAULT_MAX_FEATURES} features.
+     */
+    public FeatureMetrics()
+    {
+        this(DEFAULT_MAX_FEATURES);
+    }
+
+    /**
+     * Constructs the sink which keeps the metrics of at most 
+     * <code>maxFeatures</code> features. 
+     * 
+     * @param maxFeatures the maximum number of features whose metrics are kept.
+     */
+    public FeatureMetrics(final int maxFeatures)
+    {
+        this.maxFeatures = maxFeatures;
+    }
+
+    @Override
+    public void evaluated(final String name, final FeatureState state, final long durationNanos)
+    {
+        final Counters current = getCounters(name);
+        if (current == null)
+        {
+            untracked.incrementAndGet();
+            return;
+        }
+        current.counts.increment(state == FeatureState.ENABLED ? ENABLED : DISABLED);
+        current.counts.add(TOTAL_TIME, durationNanos);
+        current.latency.record(durationNanos);
+    }
+
+    @Override
+    public void failed(final String name)
+    {
+        final Counters current = getCounters(name);
+        if (current == null)
+        {
+            untracked.incrementAndGet();
+            return;
+        }
+        current.counts.increment(FAILED);
+    }
+
+    /**
+     * Returns the metrics of the feature. 
+     * 
+     * @param name the name of the feature.
+     * @return the snapshot of the metrics, with zero counts if the feature was 
+     *      not evaluated.
+     */
+    public FeatureStatistics getStatistics(final String name)
+    {
+        final Counters current = counters.get(name);
+        if (current == null)
+        {
+            return new FeatureStatistics(name, 0, 0, 0, 0, new long[LatencyHistogram.BUCKETS]);
+        }
+        final long[] counts = current.counts.sums();
+        return new FeatureStatistics(name, counts[ENABLED], counts[DISABLED], counts[FAILED], counts[TOTAL_TIME],
+                current.latency.counts());
+    }
+
+    /**
+     * Returns the most evaluated features. 
+     * 
+     * @param count the maximum number of features to return.
+     * @return the metrics of the features in the descending order of their 
+     *      evaluation counts.
+     */
+    public List<FeatureStatistics> getTopFeatures(final int count)
+    {
+        final List<FeatureStatistics> result = new ArrayList<FeatureStatistics>();
+        for (final String name : counters.keySet())
+        {
+            result.add(getStatistics(name));
+        }
+        Collections.sort(result, new Comparator<FeatureStatistics>()
+        {
+            @Override
+            public int compare(final FeatureStatistics o1, final FeatureStatistics o2)
+            {
+                final long count1 = o1.getEvaluationCount();
+                final long count2 = o2.getEvaluationCount();
+                return count1 > count2 ? -1 : (count1 < count2 ? 1 : o1.getName().compareTo(o2.getName()));
+            }
+        });
+        return result.size() > count ? new ArrayList<FeatureStatistics>(result.subList(0, Math.max(0, count))) : result;
+    }
+
+    /**
+     * Returns the names of the features which have metrics.
+     * 
+     * @return the sorted set of feature names.
+     */
+    public SortedSet<String> getFeatureNames()
+    {
+        return new TreeSet<String>(counters.keySet());
+    }
+
+    /**
+     * Returns the number of evaluations and failures of the features which 
+     * are not tracked because the maximum number of features was reached.
+     * 
+     * @return the number of untracked evaluations.
+     */
+    public long getUntrackedCount()
+    {
+        return untracked.get();
+    }
+
+    /**
+     * Forgets the metrics of all features.
+     */
+    public void clear()
+    {
+        counters.clear();
+        untracked.set(0);
+    }
+
+    private Counters getCounters(final String name)
+    {
+        Counters current = counters.get(name);
+        if (current == null)
+        {
+            if (counters.size() >= maxFeatures)
+            {
+                return null;
+            }
+            final Counters created = new Counters();
+            current = counters.putIfAbsent(name, created);
+            if (current == null)
+            {
+                current = created;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * The counters of one feature.
+     */
+    private static class Counters
+    {
+        private final StripedCounter counts = new StripedCounter(TOTAL_TIME + 1);
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
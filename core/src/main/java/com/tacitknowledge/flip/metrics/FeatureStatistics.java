@@ -0,0 +1,167 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.metrics;
+
+/**
+ * The immutable snapshot of the metrics of one feature collected by 
+ * {@link FeatureMetrics}. The latency histogram has the buckets of powers of 
+ * two nanoseconds, so the percentiles are the upper bounds of the buckets, 
+ * i.e. they are accurate to a factor of two. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public final class FeatureStatistics
+{
+    private final String name;
+
+    private final long enabledCount;
+
+    private final long disabledCount;
+
+    private final long failureCount;
+
+    private final long totalTime;
+
+    private final long[] histogram;
+
+    FeatureStatistics(final String name, final long enabledCount, final long disabledCount, final long failureCount,
+            final long totalTime, final long[] histogram)
+    {
+        this.name = name;
+        this.enabledCount = enabledCount;
+        this.disabledCount = disabledCount;
+        this.failureCount = failureCount;
+        this.totalTime = totalTime;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Returns the name of the feature.
+     * 
+     * @return the feature name.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the number of evaluations which have returned 
+     * {@link com.tacitknowledge.flip.model.FeatureState#ENABLED}.
+     * 
+     * @return the number of enabled evaluations.
+     */
+    public long getEnabledCount()
+    {
+        return enabledCount;
+    }
+
+    /**
+     * Returns the number of evaluations which have not returned 
+     * {@link com.tacitknowledge.flip.model.FeatureState#ENABLED}.
+     * 
+     * @return the number of disabled evaluations.
+     */
+    public long getDisabledCount()
+    {
+        return disabledCount;
+    }
+
+    /**
+     * Returns the number of evaluations of the feature.
+     * 
+     * @return the number of evaluations.
+     */
+    public long getEvaluationCount()
+    {
+        return enabledCount + disabledCount;
+    }
+
+    /**
+     * Returns the number of times the feature was missing or its evaluation has failed.
+     * 
+     * @return the number of failures.
+     */
+    public long getFailureCount()
+    {
+        return failureCount;
+    }
+
+    /**
+     * Returns the total duration of the evaluations.
+     * 
+     * @return the duration in nanoseconds.
+     */
+    public long getTotalTime()
+    {
+        return totalTime;
+    }
+
+    /**
+     * Returns the mean duration of the evaluations.
+     * 
+     * @return the duration in nanoseconds or 0 if there were no evaluations.
+     */
+    public long getMeanTime()
+    {
+        final long count = getEvaluationCount();
+        return count == 0 ? 0 : totalTime / count;
+    }
+
+    /**
+     * Returns the duration which the part of the evaluations passed did not exceed. 
+     * 
+     * @param fraction the part of evaluations from 0 to 1, e.g. 0.99.
+     * @return the upper bound of the duration in nanoseconds or 0 if there were no evaluations.
+     */
+    public long getPercentile(final double fraction)
+    {
+        long total = 0;
+        for (final long count : histogram)
+        {
+            total += count;
+        }
+        final long threshold = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++)
+        {
+            seen += histogram[i];
+            if (seen > 0 && seen >= threshold)
+            {
+                return i == 0 ? 0 : (i == histogram.length - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the counts of the latency histogram. The bucket <code>i</code> 
+     * counts the durations from <code>2^(i-1)</code> inclusive to 
+     * <code>2^i</code> exclusive nanoseconds. 
+     * 
+     * @return the copy of the histogram.
+     */
+    public long[] getHistogram()
+    {
+        return histogram.clone();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("FeatureStatistics[%s: enabled=%d, disabled=%d, failed=%d, mean=%dns, p99=%dns]", name,
+                enabledCount, disabledCount, failureCount, getMeanTime(), getPercentile(0.99));
+    }
+}
@@ -0,0 +1,65 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.metrics;
+
+/**
+ * The histogram of durations with the buckets of powers of two nanoseconds: 
+ * the bucket <code>i</code> counts the durations from <code>2^(i-1)</code> 
+ * inclusive to <code>2^i</code> exclusive, the bucket 0 counts the zero 
+ * durations. The buckets are the row of {@link StripedCounter}, so they are 
+ * striped only when the durations are recorded concurrently. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+class LatencyHistogram
+{
+    /**
+     * The number of buckets.
+     */
+    static final int BUCKETS = 64;
+
+    private final StripedCounter buckets = new StripedCounter(BUCKETS);
+
+    /**
+     * Records the duration.
+     * 
+     * @param durationNanos the duration in nanoseconds.
+     */
+    void record(final long durationNanos)
+    {
+        buckets.increment(bucket(durationNanos));
+    }
+
+    /**
+     * Returns the counts of the buckets.
+     * 
+     * @return the array of {@link #BUCKETS} counts.
+     */
+    long[] counts()
+    {
+        return buckets.sums();
+    }
+
+    /**
+     * Returns the bucket of the duration.
+     * 
+     * @param durationNanos the duration in nanoseconds.
+     * @return the bucket index.
+     */
+    static int bucket(final long durationNanos)
+    {
+        return durationNanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(durationNanos));
+    }
+}
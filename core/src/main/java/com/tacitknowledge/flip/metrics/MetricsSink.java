@@ -0,0 +1,45 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.metrics;
+
+import com.tacitknowledge.flip.model.FeatureState;
+
+/**
+ * The receiver of the feature evaluation metrics. The methods are invoked by 
+ * the threads evaluating the features, so they should be thread-safe and 
+ * should return quickly. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public interface MetricsSink
+{
+    /**
+     * Records the evaluation of the feature requested by the application. 
+     * 
+     * @param name the name of the feature.
+     * @param state the state of the feature, <code>null</code> if it has no state.
+     * @param durationNanos the duration of the evaluation in nanoseconds.
+     */
+    void evaluated(String name, FeatureState state, long durationNanos);
+
+    /**
+     * Records the feature which could not be evaluated because it is missing 
+     * or its evaluation has failed. The feature could be an ancestor of the 
+     * feature requested. 
+     * 
+     * @param name the name of the feature.
+     */
+    void failed(String name);
+}
@@ -0,0 +1,45 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.metrics;
+
+import com.tacitknowledge.flip.model.FeatureState;
+
+/**
+ * The metrics sink which ignores the metrics. It is used by default, and the 
+ * feature service does not time the evaluations when it is used. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public final class NoOpMetricsSink implements MetricsSink
+{
+    /**
+     * The shared instance.
+     */
+    public static final NoOpMetricsSink INSTANCE = new NoOpMetricsSink();
+
+    private NoOpMetricsSink()
+    {
+    }
+
+    @Override
+    public void evaluated(final String name, final FeatureState state, final long durationNanos)
+    {
+    }
+
+    @Override
+    public void failed(final String name)
+    {
+    }
+}
@@ -0,0 +1,180 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The row of counters spread over several cells only when the threads update 
+ * it concurrently. The counters are kept in a single base row until an update 
+ * of it fails because of contention, then the striped rows are allocated and 
+ * each thread updates the row chosen by its probe. The thread which fails to 
+ * update its row moves to another one, so the threads do not stay on the same 
+ * row. The rows are placed at least a cache line apart. The sums are not an 
+ * atomic snapshot when the counters are updated concurrently. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+class StripedCounter
+{
+    /**
+     * The number of longs on a cache line.
+     */
+    static final int PADDING = 8;
+
+    /**
+     * The number of striped rows, the power of two not less than the number of processors.
+     */
+    static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+    private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            final long id = Thread.currentThread().getId();
+            final int probe = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+            return new int[] {probe == 0 ? 1 : probe};
+        }
+    };
+
+    private final int width;
+
+    private final int stride;
+
+    private final AtomicLongArray base;
+
+    private volatile AtomicLongArray cells;
+
+    /**
+     * Constructs the row of counters.
+     * 
+     * @param width the number of counters.
+     */
+    StripedCounter(final int width)
+    {
+        this.width = width;
+        this.stride = (width + PADDING - 1) / PADDING * PADDING;
+        this.base = new AtomicLongArray(width);
+    }
+
+    /**
+     * Adds the value to the counter.
+     * 
+     * @param index the index of the counter.
+     * @param value the value to add.
+     */
+    void add(final int index, final long value)
+    {
+        AtomicLongArray current = cells;
+        if (current == null)
+        {
+            final long expected = base.get(index);
+            if (base.compareAndSet(index, expected, expected + value))
+            {
+                return;
+            }
+            current = inflate();
+        }
+        final int[] probe = PROBE.get();
+        final int offset = (probe[0] & (STRIPES - 1)) * stride + index;
+        final long expected = current.get(offset);
+        if (!current.compareAndSet(offset, expected, expected + value))
+        {
+            probe[0] = next(probe[0]);
+            current.addAndGet((probe[0] & (STRIPES - 1)) * stride + index, value);
+        }
+    }
+
+    /**
+     * Increments the counter.
+     * 
+     * @param index the index of the counter.
+     */
+    void increment(final int index)
+    {
+        add(index, 1);
+    }
+
+    /**
+     * Returns the value of the counter.
+     * 
+     * @param index the index of the counter.
+     * @return the sum of the base and the striped cells of the counter.
+     */
+    long sum(final int index)
+    {
+        long result = base.get(index);
+        final AtomicLongArray current = cells;
+        if (current != null)
+        {
+            for (int i = 0; i < STRIPES; i++)
+            {
+                result += current.get(i * stride + index);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values of all counters.
+     * 
+     * @return the array of the sums of the counters.
+     */
+    long[] sums()
+    {
+        final long[] result = new long[width];
+        for (int i = 0; i < width; i++)
+        {
+            result[i] = sum(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if the striped rows have been allocated.
+     */
+    boolean isStriped()
+    {
+        return cells != null;
+    }
+
+    private synchronized AtomicLongArray inflate()
+    {
+        if (cells == null)
+        {
+            cells = new AtomicLongArray(STRIPES * stride);
+        }
+        return cells;
+    }
+
+    private static int next(int probe)
+    {
+        probe ^= probe << 13;
+        probe ^= probe >>> 17;
+        probe ^= probe << 5;
+        return probe;
+    }
+
+    private static int stripes(final int processors)
+    {
+        int result = 1;
+        while (result < processors)
+        {
+            result <<= 1;
+        }
+        return result;
+    }
+}
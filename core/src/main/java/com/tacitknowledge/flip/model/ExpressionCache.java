@@ -0,0 +1,179 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.jexl2.Expression;
+import org.apache.commons.jexl2.JexlEngine;
+
+/**
+ * The bounded cache of compiled JeXL expressions. The cache holds one
+ * {@link JexlEngine} which is shared by all of the expressions compiled by it.
+ * The engine is thread-safe once configured, so the compiled expressions could
+ * be evaluated concurrently. When the cache is full the least recently used
+ * expression is evicted. The number of cache hits and misses is counted so the
+ * cache efficiency could be observed.
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class ExpressionCache
+{
+    /**
+     * The default maximum number of compiled expressions held by the cache.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private static final ExpressionCache instance = new ExpressionCache(DEFAULT_MAX_SIZE);
+
+    private final JexlEngine engine = new JexlEngine();
+
+    private final Map<String, Expression> expressions;
+
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Returns the cache shared by the feature conditions.
+     *
+     * @return the shared instance of {@link ExpressionCache}.
+     */
+    public static ExpressionCache getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Constructs the cache which holds at most <code>maxSize</code> compiled expressions.
+     *
+     * @param maxSize the maximum number of expressions to hold.
+     * @throws IllegalArgumentException if the <code>maxSize</code> is not positive.
+     */
+    public ExpressionCache(final int maxSize)
+    {
+        if (maxSize <= 0)
+        {
+            throw new IllegalArgumentException("The maximum size of expression cache should be positive.");
+        }
+        this.maxSize = maxSize;
+        this.expressions = new LinkedHashMap<String, Expression>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Expression> eldest)
+            {
+                return size() > ExpressionCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the compiled expression for the text passed. If the expression
+     * was compiled before it is taken from the cache, otherwise it is compiled
+     * and stored in the cache.
+     *
+     * @param text the JeXL expression text.
+     * @return the compiled expression.
+     * @throws org.apache.commons.jexl2.JexlException if the expression cannot be parsed.
+     */
+    public Expression getExpression(final String text)
+    {
+        synchronized (expressions)
+        {
+            final Expression expression = expressions.get(text);
+            if (expression != null)
+            {
+                hits.incrementAndGet();
+                return expression;
+            }
+        }
+
+        misses.incrementAndGet();
+        final Expression expression = engine.createExpression(text);
+        synchronized (expressions)
+        {
+            expressions.put(text, expression);
+        }
+        return expression;
+    }
+
+    /**
+     * Returns the engine used to compile the expressions.
+     *
+     * @return the {@link JexlEngine} instance.
+     */
+    public JexlEngine getEngine()
+    {
+        return engine;
+    }
+
+    /**
+     * Returns the number of requests served from the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests which have required the expression compilation.
+     *
+     * @return the number of cache misses.
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of expressions held by the cache.
+     *
+     * @return the current cache size.
+     */
+    public int size()
+    {
+        synchronized (expressions)
+        {
+            return expressions.size();
+        }
+    }
+
+    /**
+     * Returns the maximum number of expressions held by the cache.
+     *
+     * @return the maximum cache size.
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Removes all of the compiled expressions from the cache. The counters are not reset.
+     */
+    public void clear()
+    {
+        synchronized (expressions)
+        {
+            expressions.clear();
+        }
+    }
+}
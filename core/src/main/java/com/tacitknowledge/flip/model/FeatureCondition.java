@@ -23,7 +23,6 @@ import javax.xml.bind.annotation.XmlValue;
 
 import org.apache.commons.jexl2.Expression;
 import org.apache.commons.jexl2.JexlContext;
-import org.apache.commons.jexl2.JexlEngine;
 import org.apache.commons.jexl2.MapContext;
 
 import com.tacitknowledge.flip.context.ContextManager;
@@ -56,6 +55,8 @@ public class FeatureCondition implements FeatureProcessor
     @XmlValue
     private String expression;
 
+    private transient volatile Expression compiledExpression;
+
     /**
      * Returns the context used to process the condition. If the context is equal
      * to {@code "_all"} then the property {@link #getName() name} will be looked up in all context available. 
@@ -95,6 +96,7 @@ public class FeatureCondition implements FeatureProcessor
     @Deprecated
     public void setName(String name) {
         this.name = name;
+        this.compiledExpression = null;
     }
 
     /**
@@ -117,6 +119,7 @@ public class FeatureCondition implements FeatureProcessor
     @Deprecated
     public void setOperation(FeatureOperation operation) {
         this.operation = operation;
+        this.compiledExpression = null;
     }
 
     /**
@@ -138,6 +141,7 @@ public class FeatureCondition implements FeatureProcessor
     @Deprecated
     public void setValue(String value) {
         this.value = value;
+        this.compiledExpression = null;
     }
 
     /**
@@ -156,6 +160,28 @@ public class FeatureCondition implements FeatureProcessor
      */
     public void setExpression(String expression) {
         this.expression = expression;
+        this.compiledExpression = null;
+    }
+
+    /**
+     * Compiles the condition expression. The compiled expression is held by this
+     * condition so it is compiled only once. If the {@link #getExpression() expression}
+     * is not set then the expression is built from the {@link #getName() name}, 
+     * {@link #getOperation() operation} and {@link #getValue() value}. The expressions
+     * are compiled by the shared {@link ExpressionCache}.
+     * 
+     * @return the compiled expression.
+     * @throws org.apache.commons.jexl2.JexlException if the expression is invalid.
+     */
+    public Expression compile()
+    {
+        Expression result = compiledExpression;
+        if (result == null)
+        {
+            result = ExpressionCache.getInstance().getExpression(getExpressionText());
+            compiledExpression = result;
+        }
+        return result;
     }
 
     /**
@@ -171,13 +197,7 @@ public class FeatureCondition implements FeatureProcessor
     @Override
     public FeatureState process(final ContextManager contextManager)
     {
-        final JexlEngine jexlEngine = new JexlEngine();
-        Expression jexlExpression;
-        if (expression != null) {
-            jexlExpression = jexlEngine.createExpression(expression);
-        } else {
-            jexlExpression = getOldExpression(jexlEngine);
-        }
+        final Expression jexlExpression = compile();
         
         final Map<String, Object> contextMap = contextManager.getContext(context);
         final JexlContext jexlContext = new MapContext(contextMap);
@@ -185,7 +205,48 @@ public class FeatureCondition implements FeatureProcessor
         return Boolean.TRUE.equals(jexlExpression.evaluate(jexlContext)) ? FeatureState.ENABLED : FeatureState.DISABLED;
     }
     
-    private Expression getOldExpression(JexlEngine engine) {
-        return engine.createExpression(operation.buildCondition(name, value));
+    private String getExpressionText() {
+        if (expression != null) {
+            return expression;
+        }
+        return operation.buildCondition(name, value);
+    }
+
+    /**
+     * Compares the conditions structurally: the conditions are equal if all of 
+     * their properties are equal. The compiled expression is not compared.
+     * 
+     * @param obj the object to compare with.
+     * @return <code>true</code> if the object is an equal condition.
+     */
+    @Override
+    public boolean equals(final Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof FeatureCondition))
+        {
+            return false;
+        }
+        final FeatureCondition other = (FeatureCondition) obj;
+        return operation == other.operation && equal(context, other.context) && equal(name, other.name)
+                && equal(value, other.value) && equal(expression, other.expression);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = operation == null ? 0 : operation.hashCode();
+        result = 31 * result + (context == null ? 0 : context.hashCode());
+        result = 31 * result + (name == null ? 0 : name.hashCode());
+        result = 31 * result + (value == null ? 0 : value.hashCode());
+        return 31 * result + (expression == null ? 0 : expression.hashCode());
+    }
+
+    private static boolean equal(final Object first, final Object second)
+    {
+        return first == null ? second == null : first.equals(second);
     }
 }
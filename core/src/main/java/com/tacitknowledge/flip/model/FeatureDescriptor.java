@@ -14,8 +14,8 @@
 */
 package com.tacitknowledge.flip.model;
 
+import java.util.Arrays;
 import java.util.Date;
-import java.util.logging.Logger;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
@@ -111,12 +111,30 @@ public class FeatureDescriptor implements FeatureProcessor
         this.expirationDate = expirationDate;
     }
 
+    /**
+     * Compiles the condition expressions of all nested rules, so the feature 
+     * processing does not have to parse them. If the overriding state is set
+     * the rules are never processed and they are not compiled.
+     */
+    public void compile()
+    {
+        if (state == null && rules != null)
+        {
+            for (final FeatureRule rule : rules)
+            {
+                rule.compile();
+            }
+        }
+    }
+
     /**
      * Processes the state of the feature. If this feature descriptor has set 
      * the overriding state then no rules will be processed and this state will 
      * be returned. If there are rules then the rules will be processed and the 
      * result of the first rule that matches will be returned as a state of the 
      * feature. If all of the rules do not matches then null will be returned. 
+     * The expiration date is not checked here, the expiration is handled by 
+     * the property reader when the date comes. 
      * 
      * @param contextManager the context manager used to process the feature state. 
      * @return the state of the feature or null is it is impossible to calculate its state.
@@ -124,30 +142,68 @@ public class FeatureDescriptor implements FeatureProcessor
     @Override
     public FeatureState process(final ContextManager contextManager)
     {
-        if (expirationDate != null) {
-            Logger.getLogger(this.getClass().getName()).warning(String.format("The feature [%s] is expired. The expiration date is %t", name, expirationDate));
-        }
-        
         if (state != null)
         {
             return state;
         }
-        else
+        final int rule = findMatchedRule(contextManager);
+        return rule < 0 ? null : rules[rule].getState();
+    }
+
+    /**
+     * Finds the rule which determines the state of the feature when no 
+     * overriding state is set. The index is returned instead of the state, 
+     * so the caller which needs both gets them without a holder. 
+     * 
+     * @param contextManager the context manager used to process the rules. 
+     * @return the index of the first rule matched or -1 if no rule matches.
+     */
+    public int findMatchedRule(final ContextManager contextManager)
+    {
+        if (rules != null)
         {
-            if (rules != null)
+            for (int i = 0; i < rules.length; i++)
             {
-                for (final FeatureRule rule : rules)
+                if (rules[i].process(contextManager) != null)
                 {
-                    final FeatureState ruleResult = rule.process(contextManager);
-                    if (ruleResult != null)
-                    {
-                        return ruleResult;
-                    }
+                    return i;
                 }
             }
         }
+        return -1;
+    }
 
-        return null;
+    /**
+     * Compares the feature descriptors structurally: the descriptors are equal 
+     * if they have the same name, state and expiration date and equal rules in 
+     * the same order.
+     * 
+     * @param obj the object to compare with.
+     * @return <code>true</code> if the object is an equal feature descriptor.
+     */
+    @Override
+    public boolean equals(final Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof FeatureDescriptor))
+        {
+            return false;
+        }
+        final FeatureDescriptor other = (FeatureDescriptor) obj;
+        return state == other.state && (name == null ? other.name == null : name.equals(other.name))
+                && (expirationDate == null ? other.expirationDate == null : expirationDate.equals(other.expirationDate))
+                && Arrays.equals(rules, other.rules);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = name == null ? 0 : name.hashCode();
+        result = 31 * result + (state == null ? 0 : state.hashCode());
+        result = 31 * result + (expirationDate == null ? 0 : expirationDate.hashCode());
+        return 31 * result + Arrays.hashCode(rules);
     }
-    
 }
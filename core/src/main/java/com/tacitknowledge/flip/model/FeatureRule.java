@@ -14,6 +14,8 @@
 */
 package com.tacitknowledge.flip.model;
 
+import java.util.Arrays;
+
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
@@ -75,6 +77,21 @@ public class FeatureRule implements FeatureProcessor
         this.state = state;
     }
 
+    /**
+     * Compiles the expressions of all nested conditions. For more details see
+     * {@link FeatureCondition#compile()}.
+     */
+    public void compile()
+    {
+        if (conditions != null)
+        {
+            for (final FeatureCondition condition : conditions)
+            {
+                condition.compile();
+            }
+        }
+    }
+
     /**
      * Processes the rule accordingly to the context. If there are conditions 
      * nested then the conditions are processed and if all of conditions returns 
@@ -100,4 +117,31 @@ public class FeatureRule implements FeatureProcessor
         return state;
     }
 
+    /**
+     * Compares the rules structurally: the rules are equal if they have the 
+     * same state and equal conditions in the same order.
+     * 
+     * @param obj the object to compare with.
+     * @return <code>true</code> if the object is an equal rule.
+     */
+    @Override
+    public boolean equals(final Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof FeatureRule))
+        {
+            return false;
+        }
+        final FeatureRule other = (FeatureRule) obj;
+        return state == other.state && Arrays.equals(conditions, other.conditions);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * (state == null ? 0 : state.hashCode()) + Arrays.hashCode(conditions);
+    }
 }
@@ -0,0 +1,278 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.model;
+
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlEnumValue;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the feature descriptors in the {@value FeatureDescriptors#NAMESPACE} 
+ * format with StAX. Unlike JAXB unmarshalling of {@link FeatureDescriptors} 
+ * the descriptors are put into the target map as soon as they are read, so 
+ * the whole document model is never held in memory besides the map. 
+ * The descriptors read are the same as the ones unmarshalled by JAXB: 
+ * the unknown elements and attributes are skipped, the unknown values of 
+ * the enumerations and the dates which cannot be parsed are read as 
+ * <code>null</code> and the later feature overrides the earlier one with 
+ * the same name. The reader is thread-safe.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class StaxFeatureDescriptorsReader
+{
+    private static final QName FEATURES = new QName(FeatureDescriptors.NAMESPACE, "features");
+
+    private static final QName FEATURE = new QName(FeatureDescriptors.NAMESPACE, "feature");
+
+    private static final QName RULE = new QName(FeatureDescriptors.NAMESPACE, "rule");
+
+    private static final QName CONDITION = new QName(FeatureDescriptors.NAMESPACE, "condition");
+
+    private static final Map<String, FeatureState> STATES = getXmlValues(FeatureState.class);
+
+    private static final Map<String, FeatureOperation> OPERATIONS = getXmlValues(FeatureOperation.class);
+
+    private final XMLInputFactory inputFactory;
+
+    /**
+     * Constructs the reader. 
+     */
+    public StaxFeatureDescriptorsReader()
+    {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    /**
+     * Reads the feature descriptors from the stream into the map passed.  
+     * 
+     * @param in the stream with the XML document.
+     * @param target the map to put the feature descriptors to by their names.
+     * @throws XMLStreamException if the document is malformed or its root 
+     * element is not {@code features} of the {@value FeatureDescriptors#NAMESPACE} namespace.
+     */
+    public void read(final InputStream in, final Map<String, FeatureDescriptor> target) throws XMLStreamException
+    {
+        final XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+        try
+        {
+            reader.nextTag();
+            if (!FEATURES.equals(reader.getName()))
+            {
+                throw new XMLStreamException(String.format("Unexpected element %s. Expected element is %s.",
+                        reader.getName(), FEATURES), reader.getLocation());
+            }
+            while (nextChildElement(reader))
+            {
+                if (FEATURE.equals(reader.getName()))
+                {
+                    final FeatureDescriptor descriptor = readFeature(reader);
+                    target.put(descriptor.getName(), descriptor);
+                }
+                else
+                {
+                    skipElement(reader);
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private FeatureDescriptor readFeature(final XMLStreamReader reader) throws XMLStreamException
+    {
+        final FeatureDescriptor descriptor = new FeatureDescriptor();
+        descriptor.setName(reader.getAttributeValue(null, "name"));
+        descriptor.setState(getXmlValue(STATES, reader.getAttributeValue(null, "state")));
+        descriptor.setExpirationDate(parseDate(reader.getAttributeValue(null, "expiration-date")));
+
+        final List<FeatureRule> rules = new ArrayList<FeatureRule>();
+        while (nextChildElement(reader))
+        {
+            if (RULE.equals(reader.getName()))
+            {
+                rules.add(readRule(reader));
+            }
+            else
+            {
+                skipElement(reader);
+            }
+        }
+        if (!rules.isEmpty())
+        {
+            descriptor.setRules(rules.toArray(new FeatureRule[rules.size()]));
+        }
+        return descriptor;
+    }
+
+    private FeatureRule readRule(final XMLStreamReader reader) throws XMLStreamException
+    {
+        final FeatureRule rule = new FeatureRule();
+        rule.setState(getXmlValue(STATES, reader.getAttributeValue(null, "state")));
+
+        final List<FeatureCondition> conditions = new ArrayList<FeatureCondition>();
+        while (nextChildElement(reader))
+        {
+            if (CONDITION.equals(reader.getName()))
+            {
+                conditions.add(readCondition(reader));
+            }
+            else
+            {
+                skipElement(reader);
+            }
+        }
+        if (!conditions.isEmpty())
+        {
+            rule.setConditions(conditions.toArray(new FeatureCondition[conditions.size()]));
+        }
+        return rule;
+    }
+
+    private FeatureCondition readCondition(final XMLStreamReader reader) throws XMLStreamException
+    {
+        final FeatureCondition condition = new FeatureCondition();
+        final String context = reader.getAttributeValue(null, "context");
+        if (context != null)
+        {
+            condition.setContext(context);
+        }
+        condition.setName(reader.getAttributeValue(null, "name"));
+        final String operation = reader.getAttributeValue(null, "operation");
+        if (operation != null)
+        {
+            condition.setOperation(OPERATIONS.get(operation));
+        }
+        condition.setValue(reader.getAttributeValue(null, "value"));
+
+        final StringBuilder expression = new StringBuilder();
+        int depth = 0;
+        while (true)
+        {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                depth++;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT)
+            {
+                if (depth-- == 0)
+                {
+                    break;
+                }
+            }
+            else if (depth == 0 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE))
+            {
+                expression.append(reader.getText());
+            }
+        }
+        condition.setExpression(expression.toString());
+        return condition;
+    }
+
+    /**
+     * Moves the reader to the next child element of the current element. 
+     * 
+     * @return <code>true</code> if the reader is at the start of the child 
+     * element or <code>false</code> if it is at the end of the current element.
+     */
+    private static boolean nextChildElement(final XMLStreamReader reader) throws XMLStreamException
+    {
+        while (true)
+        {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT || event == XMLStreamConstants.END_DOCUMENT)
+            {
+                return false;
+            }
+        }
+    }
+
+    private static void skipElement(final XMLStreamReader reader) throws XMLStreamException
+    {
+        int depth = 1;
+        while (depth > 0)
+        {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                depth++;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT)
+            {
+                depth--;
+            }
+        }
+    }
+
+    private static Date parseDate(final String value)
+    {
+        try
+        {
+            return new DateAdapter().unmarshal(value);
+        }
+        catch (final Exception ex)
+        {
+            return null;
+        }
+    }
+
+    private static <E extends Enum<E>> E getXmlValue(final Map<String, E> values, final String value)
+    {
+        return value == null ? null : values.get(value);
+    }
+
+    /**
+     * Returns the constants of the enumeration by the values declared with {@link XmlEnumValue}.
+     */
+    private static <E extends Enum<E>> Map<String, E> getXmlValues(final Class<E> enumClass)
+    {
+        final Map<String, E> result = new HashMap<String, E>();
+        for (final E constant : enumClass.getEnumConstants())
+        {
+            try
+            {
+                final Field field = enumClass.getField(constant.name());
+                final XmlEnumValue xmlValue = field.getAnnotation(XmlEnumValue.class);
+                result.put(xmlValue != null ? xmlValue.value() : constant.name(), constant);
+            }
+            catch (final NoSuchFieldException ex)
+            {
+                result.put(constant.name(), constant);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,185 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Date;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.tacitknowledge.flip.model.FeatureDescriptor;
+
+/**
+ * The property reader of the binary feature snapshot compiled from the XML 
+ * configuration by {@link BinarySnapshotCompiler}. The snapshot file is 
+ * memory-mapped and the feature descriptors are built on the first access, 
+ * so the start time does not depend on the number of features. The file is 
+ * mapped again when it changes, see {@link RefreshablePropertyReader}. 
+ * The snapshot should be replaced by renaming the new file over it, as the 
+ * compiler does, and never rewritten in place while it is mapped. 
+ * <p>
+ * The path to the snapshot is taken from the property {@link #CONFIG_PROPERTY} 
+ * of the configuration or else of the system properties. Without it the 
+ * reader has no features and is neither reread nor watched. 
+ * </p>
+ * <p>
+ * The reader has the priority 99, just below {@link XmlPropertyReader}, so the 
+ * features defined in the XML configuration override the ones of the snapshot 
+ * without compiling it again. 
+ * </p>
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+@FlipProperty(priority = 99)
+public class BinaryPropertyReader extends RefreshablePropertyReader
+{
+    /**
+     * The name of property whose value points to the binary snapshot file.
+     */
+    public static final String CONFIG_PROPERTY = "flip.properties.binary.path";
+
+    private File lastFile;
+
+    private long lastFileLength = -1;
+
+    private long lastFileModified = -1;
+
+    /**
+     * Returns the snapshot file. The file is looked up in the properties passed 
+     * and then in the system properties. 
+     * 
+     * @param props the properties with configuration 
+     * @return the snapshot file or {@code null} if it is not configured or does not exist.
+     */
+    protected File getSnapshotFile(final Properties props)
+    {
+        final String path = getSnapshotPath(props);
+        if (path == null)
+        {
+            return null;
+        }
+        final File file = new File(path);
+        return file.isFile() ? file : null;
+    }
+
+    private String getSnapshotPath(final Properties props)
+    {
+        final String path = props == null ? null : props.getProperty(CONFIG_PROPERTY);
+        return path != null ? path : System.getProperty(CONFIG_PROPERTY);
+    }
+
+    /**
+     * Returns if the path to the snapshot is configured. 
+     */
+    @Override
+    protected boolean isConfigured()
+    {
+        return getSnapshotPath(getConfig()) != null;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    protected File getWatchedFile()
+    {
+        return getSnapshotFile(getConfig());
+    }
+
+    /**
+     * Reads the expiration dates from the snapshot file without building the 
+     * descriptors. 
+     */
+    @Override
+    protected Map<String, Date> getExpirationDates(final Map<String, FeatureDescriptor> descriptors)
+    {
+        if (descriptors instanceof MappedFeatureDescriptors)
+        {
+            return ((MappedFeatureDescriptors) descriptors).getExpirationDates();
+        }
+        return super.getExpirationDates(descriptors);
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    protected synchronized void readChangedDescriptors()
+    {
+        lastFile = null;
+        readDescriptors();
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    protected synchronized void readDescriptors()
+    {
+        final long start = System.nanoTime();
+        final File file = getSnapshotFile(getConfig());
+        if (file == null)
+        {
+            return;
+        }
+        final long fileLength = file.length();
+        final long fileModified = file.lastModified();
+        if (file.equals(lastFile) && fileLength == lastFileLength && fileModified == lastFileModified)
+        {
+            getReloadStatistics().skipped();
+            return;
+        }
+
+        try
+        {
+            final MappedFeatureDescriptors descriptors = new MappedFeatureDescriptors(map(file));
+            publishSnapshot(descriptors, false, false);
+            lastFile = file;
+            lastFileLength = fileLength;
+            lastFileModified = fileModified;
+
+            final long duration = System.nanoTime() - start;
+            reloaded(duration);
+            Logger.getLogger(BinaryPropertyReader.class.getName()).log(Level.FINE, 
+                    String.format("The feature snapshot of %d features written at %tc was mapped in %d ms.", 
+                    descriptors.size(), descriptors.getCreationTime(), duration / 1000000));
+        }
+        catch (final IOException ex)
+        {
+            getReloadStatistics().failed();
+            Logger.getLogger(BinaryPropertyReader.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
+
+    private static MappedByteBuffer map(final File file) throws IOException
+    {
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try
+        {
+            final FileChannel channel = in.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
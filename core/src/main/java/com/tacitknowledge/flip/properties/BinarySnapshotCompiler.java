@@ -0,0 +1,190 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.tacitknowledge.flip.model.FeatureCondition;
+import com.tacitknowledge.flip.model.FeatureDescriptor;
+import com.tacitknowledge.flip.model.FeatureRule;
+import com.tacitknowledge.flip.model.StaxFeatureDescriptorsReader;
+
+/**
+ * Compiles the XML configuration read by {@link XmlPropertyReader} into the 
+ * binary snapshot read by {@link BinaryPropertyReader}. All of the condition 
+ * expressions are compiled beforehand and the snapshot is not written if any 
+ * of them is invalid. The snapshot is written to a temporary file which then 
+ * replaces the target, so the readers never map a partially written snapshot. 
+ * <p>
+ * The compiler is run from the command line, e.g. in the build with the 
+ * {@code exec-maven-plugin}:
+ * </p>
+ * <pre>
+ * java -cp flip-core.jar:... com.tacitknowledge.flip.properties.BinarySnapshotCompiler flip.properties.xml flip.properties.bin
+ * </pre>
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class BinarySnapshotCompiler
+{
+    /**
+     * Compiles the XML configuration given by the first argument into the 
+     * snapshot given by the second one. Exits with the status 1 if the 
+     * configuration is invalid and 2 if the arguments are wrong. 
+     * 
+     * @param args the XML configuration file and the snapshot file.
+     */
+    public static void main(final String[] args)
+    {
+        if (args.length != 2)
+        {
+            System.err.println("Usage: BinarySnapshotCompiler <features.xml> <snapshot.bin>");
+            System.exit(2);
+        }
+        try
+        {
+            final int count = new BinarySnapshotCompiler().compile(new File(args[0]), new File(args[1]));
+            System.out.println(String.format("%d features are written to %s.", count, args[1]));
+        }
+        catch (final IllegalArgumentException ex)
+        {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
+        catch (final IOException ex)
+        {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compiles the XML configuration into the snapshot file. 
+     * 
+     * @param source the XML configuration file.
+     * @param target the snapshot file to write or replace.
+     * @return the number of features written.
+     * @throws IOException if the files could not be read or written or the XML is malformed.
+     * @throws IllegalArgumentException if some of the condition expressions are invalid.
+     */
+    public int compile(final File source, final File target) throws IOException
+    {
+        final Map<String, FeatureDescriptor> descriptors = read(source);
+        validate(descriptors);
+
+        final File parent = target.getAbsoluteFile().getParentFile();
+        final File temp = File.createTempFile(target.getName(), ".tmp", parent);
+        try
+        {
+            final OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+            try
+            {
+                new BinarySnapshotWriter().write(descriptors, out);
+            }
+            finally
+            {
+                out.close();
+            }
+            if (!temp.renameTo(target) && !(target.delete() && temp.renameTo(target)))
+            {
+                throw new IOException(String.format("Cannot replace the file %s.", target));
+            }
+        }
+        finally
+        {
+            temp.delete();
+        }
+        return descriptors.size();
+    }
+
+    private static Map<String, FeatureDescriptor> read(final File source) throws IOException
+    {
+        final InputStream in = new BufferedInputStream(new FileInputStream(source));
+        try
+        {
+            final FeatureDescriptorsMap result = new FeatureDescriptorsMap();
+            new StaxFeatureDescriptorsReader().read(in, result);
+            result.remove(null);
+            return result;
+        }
+        catch (final XMLStreamException ex)
+        {
+            final IOException exception = new IOException(String.format("Cannot read the file %s: %s", 
+                    source, ex.getMessage()));
+            exception.initCause(ex);
+            throw exception;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Compiles all of the conditions, including the ones of the features with 
+     * the overriding state, which are not compiled by the property readers.
+     */
+    private static void validate(final Map<String, FeatureDescriptor> descriptors)
+    {
+        final List<String> errors = new ArrayList<String>();
+        for (final FeatureDescriptor descriptor : descriptors.values())
+        {
+            if (descriptor.getRules() == null)
+            {
+                continue;
+            }
+            for (final FeatureRule rule : descriptor.getRules())
+            {
+                if (rule.getConditions() == null)
+                {
+                    continue;
+                }
+                for (final FeatureCondition condition : rule.getConditions())
+                {
+                    try
+                    {
+                        condition.compile();
+                    }
+                    catch (final RuntimeException ex)
+                    {
+                        errors.add(String.format("The feature [%s] has an invalid condition: %s", 
+                                descriptor.getName(), ex.getMessage()));
+                    }
+                }
+            }
+        }
+        if (!errors.isEmpty())
+        {
+            final StringBuilder message = new StringBuilder();
+            for (final String error : errors)
+            {
+                message.append(error).append(System.getProperty("line.separator"));
+            }
+            throw new IllegalArgumentException(message.toString().trim());
+        }
+    }
+}
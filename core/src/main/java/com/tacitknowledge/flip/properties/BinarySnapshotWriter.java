@@ -0,0 +1,202 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.tacitknowledge.flip.model.FeatureCondition;
+import com.tacitknowledge.flip.model.FeatureDescriptor;
+import com.tacitknowledge.flip.model.FeatureRule;
+
+/**
+ * Writes the feature descriptors in the binary snapshot format read by 
+ * {@link BinaryPropertyReader}. The format is designed to be memory-mapped 
+ * and read lazily, so it could be used without parsing the whole file. 
+ * All of the numbers are big-endian. The file consists of: 
+ * <ul>
+ * <li>the header: the magic number, the format version, the creation time in 
+ * milliseconds, the number of strings and the number of features;</li>
+ * <li>the table of string offsets;</li>
+ * <li>the feature index: the indexes of the feature names sorted by name 
+ * followed by the offsets of the feature records in the same order;</li>
+ * <li>the strings: the length in bytes followed by the UTF-8 bytes. Each 
+ * distinct string is written once and the records refer to it by its index;</li>
+ * <li>the feature records: the state, the expiration date and the rules 
+ * with their states and conditions.</li>
+ * </ul>
+ * The enumeration constants are written as their names, the absent values 
+ * as {@link #NULL}. The writer is not thread-safe. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class BinarySnapshotWriter
+{
+    /**
+     * The magic number the snapshot file starts with: {@code "FLIP"} in ASCII.
+     */
+    public static final int MAGIC = 0x464C4950;
+
+    /**
+     * The version of the format written. The readers reject other versions.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * The string index or the count which stands for the absent value.
+     */
+    static final int NULL = -1;
+
+    /**
+     * The expiration date which stands for the absent one.
+     */
+    static final long NO_DATE = Long.MIN_VALUE;
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 24;
+
+    private static final String UTF_8 = "UTF-8";
+
+    private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+
+    /**
+     * Writes the snapshot of the descriptors passed to the stream. 
+     * 
+     * @param descriptors the map of feature descriptors by feature name.
+     * @param out the stream to write to. It is not closed.
+     * @throws IOException if the stream could not be written.
+     */
+    public void write(final Map<String, FeatureDescriptor> descriptors, final OutputStream out) throws IOException
+    {
+        strings.clear();
+        final List<String> names = new ArrayList<String>();
+        for (final String name : descriptors.keySet())
+        {
+            if (name != null)
+            {
+                names.add(name);
+            }
+        }
+        Collections.sort(names);
+
+        final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        final DataOutputStream recordsOut = new DataOutputStream(records);
+        final int[] nameIndexes = new int[names.size()];
+        final int[] recordOffsets = new int[names.size()];
+        for (int i = 0; i < names.size(); i++)
+        {
+            nameIndexes[i] = intern(names.get(i));
+            recordOffsets[i] = recordsOut.size();
+            writeFeature(descriptors.get(names.get(i)), recordsOut);
+        }
+        recordsOut.flush();
+
+        final ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+        final DataOutputStream stringsOut = new DataOutputStream(stringData);
+        final int[] stringOffsets = new int[strings.size()];
+        int i = 0;
+        for (final String string : strings.keySet())
+        {
+            stringOffsets[i++] = stringsOut.size();
+            final byte[] bytes = string.getBytes(UTF_8);
+            stringsOut.writeInt(bytes.length);
+            stringsOut.write(bytes);
+        }
+        stringsOut.flush();
+
+        final int stringsStart = HEADER_SIZE + 4 * stringOffsets.length + 8 * names.size();
+        final int recordsStart = stringsStart + stringData.size();
+        final DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(FORMAT_VERSION);
+        dataOut.writeLong(System.currentTimeMillis());
+        dataOut.writeInt(stringOffsets.length);
+        dataOut.writeInt(names.size());
+        for (final int offset : stringOffsets)
+        {
+            dataOut.writeInt(stringsStart + offset);
+        }
+        for (final int index : nameIndexes)
+        {
+            dataOut.writeInt(index);
+        }
+        for (final int offset : recordOffsets)
+        {
+            dataOut.writeInt(recordsStart + offset);
+        }
+        stringData.writeTo(dataOut);
+        records.writeTo(dataOut);
+        dataOut.flush();
+    }
+
+    private void writeFeature(final FeatureDescriptor descriptor, final DataOutputStream out) throws IOException
+    {
+        out.writeInt(intern(descriptor.getState()));
+        out.writeLong(descriptor.getExpirationDate() == null ? NO_DATE : descriptor.getExpirationDate().getTime());
+        final FeatureRule[] rules = descriptor.getRules();
+        out.writeInt(rules == null ? NULL : rules.length);
+        if (rules == null)
+        {
+            return;
+        }
+        for (final FeatureRule rule : rules)
+        {
+            out.writeInt(intern(rule.getState()));
+            final FeatureCondition[] conditions = rule.getConditions();
+            out.writeInt(conditions == null ? NULL : conditions.length);
+            if (conditions == null)
+            {
+                continue;
+            }
+            for (final FeatureCondition condition : conditions)
+            {
+                out.writeInt(intern(condition.getContext()));
+                out.writeInt(intern(condition.getName()));
+                out.writeInt(intern(condition.getOperation()));
+                out.writeInt(intern(condition.getValue()));
+                out.writeInt(intern(condition.getExpression()));
+            }
+        }
+    }
+
+    private int intern(final Enum<?> value)
+    {
+        return value == null ? NULL : intern(value.name());
+    }
+
+    private int intern(final String value)
+    {
+        if (value == null)
+        {
+            return NULL;
+        }
+        Integer index = strings.get(value);
+        if (index == null)
+        {
+            index = strings.size();
+            strings.put(value, index);
+        }
+        return index;
+    }
+}
@@ -15,19 +15,83 @@
 package com.tacitknowledge.flip.properties;
 
 import com.tacitknowledge.flip.model.FeatureDescriptor;
+import com.tacitknowledge.flip.model.FeatureState;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.jexl2.JexlException;
 
 /**
- * Abstract Property Reader which holds feature descriptors in a cache. 
+ * Abstract Property Reader which holds feature descriptors in a cache. The cache
+ * is an immutable {@link FeatureSnapshot}. When the descriptors are read again
+ * the new snapshot is built aside and then published replacing the previous one
+ * at once, so the lookups never wait and never see a partially read cache. 
+ * The registered {@link FeatureChangeListener}s are notified after each publication. <br />
+ * The expiration dates of the features are indexed when the snapshot is 
+ * published, and a single task of {@link ReloadScheduler} handles each feature 
+ * when its date comes: the expiration is logged once, the registered 
+ * {@link FeatureExpirationListener}s are notified, and if the 
+ * {@link #CONFIG_EXPIRED_STATE} is configured the feature is switched to that 
+ * state. The feature stays in that state while the descriptors read again have 
+ * the same expiration date. The evaluation of the feature does not check its 
+ * expiration date. 
  * 
  * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
  */
 public abstract class CacheablePropertyReader extends AbstractPropertyReader {
+
+    /**
+     * The configuration property with the state the features are switched to 
+     * when they expire, <code>enabled</code> or <code>disabled</code>. The 
+     * expired features are left as is when it is not set. 
+     */
+    public static final String CONFIG_EXPIRED_STATE = "flip.properties.expired.state";
     
+    private final Object publishLock = new Object();
+
+    private final ExpirationSchedule expirations = new ExpirationSchedule(this);
+
+    /**
+     * The expiration dates of the features handled as expired already by 
+     * feature name. Guarded by the publish lock.
+     */
+    private final Map<String, Date> expired = new HashMap<String, Date>();
+
+    private final List<FeatureExpirationListener> expirationListeners = 
+            new CopyOnWriteArrayList<FeatureExpirationListener>();
+
     /**
-     * The cache with feature descriptors. 
+     * The current snapshot with feature descriptors. 
      */
-    protected final FeatureDescriptorsMap cache = new FeatureDescriptorsMap();
+    private volatile FeatureSnapshot snapshot = FeatureSnapshot.EMPTY;
+
+    /**
+     * The view of the current snapshot with feature descriptors. The view is 
+     * read through to the current snapshot. The changes made through it by 
+     * {@link #readDescriptors()} are published as one snapshot when the read 
+     * returns, a change made at any other time publishes a new snapshot at once. 
+     * 
+     * @deprecated the descriptors are held in the immutable {@link FeatureSnapshot}, 
+     * use {@link #getSnapshot()} to read them and {@link #publishSnapshot(java.util.Map)} 
+     * to replace all of them at once.
+     */
+    @Deprecated
+    protected final FeatureDescriptorsMap cache = new SnapshotView();
+
+    private final ThreadLocal<Staging> staging = new ThreadLocal<Staging>();
+
+    private final List<FeatureChangeListener> listeners = new CopyOnWriteArrayList<FeatureChangeListener>();
 
     /**
      * {@inheritDoc }
@@ -35,7 +99,30 @@ public abstract class CacheablePropertyReader extends AbstractPropertyReader {
     @Override
     public void initialize(Properties config) {
         super.initialize(config);
-        readDescriptors();
+        loadDescriptors();
+    }
+
+    /**
+     * Reads the descriptors with {@link #readDescriptors()}. The changes the 
+     * reader makes through the deprecated {@link #cache} are published as one 
+     * snapshot after the read returns. They are discarded if the read fails, 
+     * so the previous snapshot is kept. 
+     */
+    protected final void loadDescriptors() {
+        if (staging.get() != null) {
+            readDescriptors();
+            return;
+        }
+        final Staging current = new Staging();
+        staging.set(current);
+        try {
+            readDescriptors();
+        } finally {
+            staging.remove();
+        }
+        if (current.descriptors != null) {
+            publishSnapshot(current.descriptors, false);
+        }
     }
 
     /**
@@ -43,13 +130,462 @@ public abstract class CacheablePropertyReader extends AbstractPropertyReader {
      */
     @Override
     public FeatureDescriptor getFeatureDescriptor(String name) {
-        return cache.get(name);
+        return snapshot.get(name);
+    }
+
+    /**
+     * Returns the current snapshot of feature descriptors. 
+     * 
+     * @return the last published {@link FeatureSnapshot}.
+     */
+    public FeatureSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * Publishes the new snapshot built from the descriptors passed. The new
+     * snapshot replaces the current one and gets the next version number.
+     * 
+     * @param descriptors the complete map of feature descriptors by feature name.
+     * @return the published snapshot.
+     */
+    protected FeatureSnapshot publishSnapshot(final Map<String, FeatureDescriptor> descriptors) {
+        return publishSnapshot(descriptors, true);
+    }
+
+    /**
+     * Publishes the new snapshot built from the descriptors passed. If the 
+     * descriptors are not copied the snapshot takes over the map, so the 
+     * reader which builds a new map on every read saves the copy of it. 
+     * The descriptors are compared with the current ones, see 
+     * {@link #publishSnapshot(java.util.Map, boolean, boolean)}.
+     * 
+     * @param descriptors the complete map of feature descriptors by feature name.
+     * @param copy <code>false</code> if the map is not changed after this call 
+     * and could be taken over by the snapshot.
+     * @return the published snapshot.
+     */
+    protected FeatureSnapshot publishSnapshot(final Map<String, FeatureDescriptor> descriptors, final boolean copy) {
+        return publishSnapshot(descriptors, copy, true);
+    }
+
+    /**
+     * Publishes the new snapshot built from the descriptors passed. If the 
+     * descriptors are compared, each of them is compared structurally with the 
+     * descriptor of the same feature in the current snapshot. The equal ones 
+     * are replaced by the current instances, which are compiled already, and 
+     * only the added and modified descriptors are compiled. Otherwise the 
+     * descriptors are not accessed at all, so they could be built lazily, and 
+     * all of the features present in both snapshots are reported as modified. 
+     * 
+     * @param descriptors the complete map of feature descriptors by feature name.
+     * @param copy <code>false</code> if the map is not changed after this call 
+     * and could be taken over by the snapshot.
+     * @param compare <code>true</code> to compare the descriptors with the current ones.
+     * @return the published snapshot.
+     */
+    protected FeatureSnapshot publishSnapshot(final Map<String, FeatureDescriptor> descriptors, final boolean copy,
+            final boolean compare) {
+        final FeatureChangeEvent event;
+        synchronized (publishLock) {
+            final Map<String, Date> dates = new HashMap<String, Date>(getExpirationDates(descriptors));
+            final Map<String, FeatureDescriptor> published = applyExpiredStates(descriptors, copy, dates);
+            final FeatureSnapshot previous = snapshot;
+            final Map<String, FeatureDescriptor> previousDescriptors = previous.getDescriptors();
+            final Set<String> added = new HashSet<String>();
+            final Set<String> modified = new HashSet<String>();
+            if (compare) {
+                for (final Map.Entry<String, FeatureDescriptor> entry : published.entrySet()) {
+                    final FeatureDescriptor previousDescriptor = previousDescriptors.get(entry.getKey());
+                    if (previousDescriptor != null && previousDescriptor.equals(entry.getValue())) {
+                        entry.setValue(previousDescriptor);
+                        continue;
+                    }
+                    (previousDescriptors.containsKey(entry.getKey()) ? modified : added).add(entry.getKey());
+                    if (entry.getValue() != null) {
+                        compileDescriptor(entry.getValue());
+                    }
+                }
+            } else {
+                for (final String name : published.keySet()) {
+                    (previousDescriptors.containsKey(name) ? modified : added).add(name);
+                }
+            }
+            final Set<String> removed = new HashSet<String>();
+            for (final String name : previousDescriptors.keySet()) {
+                if (!published.containsKey(name)) {
+                    removed.add(name);
+                }
+            }
+
+            final FeatureSnapshot current = FeatureSnapshot.adopt(published, previous.getVersion() + 1,
+                    System.currentTimeMillis());
+            snapshot = current;
+            event = new FeatureChangeEvent(this, previous, current, added, removed, modified);
+            if (event.hasChanges()) {
+                expirations.reset(dates);
+            }
+        }
+        fireFeaturesChanged(event);
+        return event.getSnapshot();
+    }
+
+    /**
+     * Applies the expired state to the features which have been handled as 
+     * expired already, so the descriptors read again do not bring them back. 
+     * The handled features which are removed or have got another expiration 
+     * date are forgotten. The handled features are removed from the dates 
+     * passed, so they are not scheduled again. 
+     * 
+     * @param descriptors the complete map of feature descriptors by feature name.
+     * @param copy <code>false</code> if the map could be taken over.
+     * @param dates the expiration dates of the descriptors by feature name.
+     * @return the map of descriptors to publish.
+     */
+    private Map<String, FeatureDescriptor> applyExpiredStates(final Map<String, FeatureDescriptor> descriptors,
+            final boolean copy, final Map<String, Date> dates) {
+        expired.entrySet().retainAll(dates.entrySet());
+        dates.keySet().removeAll(expired.keySet());
+        final FeatureState expiredState = expired.isEmpty() ? null : getExpiredState();
+        if (expiredState == null) {
+            return copy ? new HashMap<String, FeatureDescriptor>(descriptors) : descriptors;
+        }
+        final Map<String, FeatureDescriptor> result = new HashMap<String, FeatureDescriptor>(descriptors);
+        for (final String name : expired.keySet()) {
+            final FeatureDescriptor descriptor = result.get(name);
+            if (descriptor.getState() != expiredState) {
+                final FeatureDescriptor replacement = new FeatureDescriptor();
+                replacement.setName(descriptor.getName());
+                replacement.setState(expiredState);
+                replacement.setRules(descriptor.getRules());
+                replacement.setExpirationDate(descriptor.getExpirationDate());
+                result.put(name, replacement);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the expiration dates of the features passed. Implementors could 
+     * override this method to find the dates without building the descriptors. 
+     * 
+     * @param descriptors the map of feature descriptors by feature name.
+     * @return the expiration dates by feature name of the features which have them.
+     */
+    protected Map<String, Date> getExpirationDates(final Map<String, FeatureDescriptor> descriptors) {
+        final Map<String, Date> result = new HashMap<String, Date>();
+        for (final Map.Entry<String, FeatureDescriptor> entry : descriptors.entrySet()) {
+            if (entry.getValue() != null && entry.getValue().getExpirationDate() != null) {
+                result.put(entry.getKey(), entry.getValue().getExpirationDate());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Handles the features whose expiration dates have passed. The features 
+     * which are no longer expired in the current snapshot are skipped. 
+     * 
+     * @param names the names of the expired features.
+     */
+    void featuresExpired(final Collection<String> names) {
+        final FeatureState expiredState = getExpiredState();
+        final long now = System.currentTimeMillis();
+        final Logger logger = Logger.getLogger(CacheablePropertyReader.class.getName());
+        final List<FeatureExpirationEvent> events = new ArrayList<FeatureExpirationEvent>();
+        synchronized (publishLock) {
+            for (final String name : names) {
+                final FeatureDescriptor descriptor = snapshot.get(name);
+                if (descriptor == null || descriptor.getExpirationDate() == null 
+                        || descriptor.getExpirationDate().getTime() > now || expired.containsKey(name)) {
+                    continue;
+                }
+                if (logger.isLoggable(Level.WARNING)) {
+                    logger.warning(String.format("The feature [%s] has expired on %tF %<tT.%s", name,
+                            descriptor.getExpirationDate(), 
+                            expiredState == null ? "" : String.format(" Using [%s] value.", expiredState)));
+                }
+                expired.put(name, descriptor.getExpirationDate());
+                events.add(new FeatureExpirationEvent(this, name, descriptor.getExpirationDate(), expiredState));
+            }
+            if (!events.isEmpty() && expiredState != null) {
+                publishSnapshot(snapshot.getDescriptors(), true, true);
+            }
+        }
+        // the listeners are notified after the expired states are published,
+        // so they already see them
+        for (final FeatureExpirationEvent event : events) {
+            fireFeatureExpired(event);
+        }
+    }
+
+    /**
+     * Returns the state the features are switched to when they expire. 
+     * 
+     * @return the state or <code>null</code> if the expired features are left as is.
+     */
+    protected FeatureState getExpiredState() {
+        final String state = getConfig() == null ? null : getConfig().getProperty(CONFIG_EXPIRED_STATE);
+        if (state == null) {
+            return null;
+        }
+        try {
+            return FeatureState.valueOf(state.trim().toUpperCase());
+        } catch (final IllegalArgumentException ex) {
+            Logger.getLogger(CacheablePropertyReader.class.getName()).log(Level.WARNING,
+                    String.format("Unknown expired feature state [%s].", state));
+            return null;
+        }
+    }
+
+    /**
+     * Stops handling the expiration of features. 
+     */
+    protected void cancelExpirations() {
+        expirations.cancel();
+    }
+
+    /**
+     * Registers the listener to be notified when a new snapshot is published. 
+     * 
+     * @param listener the listener to add.
+     */
+    public void addFeatureChangeListener(final FeatureChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters the listener. 
+     * 
+     * @param listener the listener to remove.
+     */
+    public void removeFeatureChangeListener(final FeatureChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registers the listener to be notified when a feature expires. 
+     * 
+     * @param listener the listener to add.
+     */
+    public void addFeatureExpirationListener(final FeatureExpirationListener listener) {
+        expirationListeners.add(listener);
+    }
+
+    /**
+     * Unregisters the listener. 
+     * 
+     * @param listener the listener to remove.
+     */
+    public void removeFeatureExpirationListener(final FeatureExpirationListener listener) {
+        expirationListeners.remove(listener);
+    }
+
+    private void fireFeatureExpired(final FeatureExpirationEvent event) {
+        for (final FeatureExpirationListener listener : expirationListeners) {
+            try {
+                listener.featureExpired(event);
+            } catch (final RuntimeException ex) {
+                Logger.getLogger(CacheablePropertyReader.class.getName()).log(Level.WARNING,
+                        "The feature expiration listener has failed.", ex);
+            }
+        }
+    }
+
+    private void fireFeaturesChanged(final FeatureChangeEvent event) {
+        for (final FeatureChangeListener listener : listeners) {
+            try {
+                listener.featuresChanged(event);
+            } catch (final RuntimeException ex) {
+                Logger.getLogger(CacheablePropertyReader.class.getName()).log(Level.WARNING,
+                        "The feature change listener has failed.", ex);
+            }
+        }
     }
     
     /**
      * Reads the descriptors and holds them in the cache. Implementors should 
-     * extend this method to build the cache. 
+     * extend this method to build the cache and publish it calling 
+     * {@link #publishSnapshot(java.util.Map)}. 
      */
     protected abstract void readDescriptors();
-    
+
+    /**
+     * Compiles the condition expressions of the feature descriptor, so they are
+     * not parsed when the feature is processed. If the descriptor has an invalid
+     * expression the warning is logged and the error will be raised again when 
+     * the feature is processed.
+     * 
+     * @param descriptor the feature descriptor to compile.
+     */
+    protected void compileDescriptor(final FeatureDescriptor descriptor)
+    {
+        try
+        {
+            descriptor.compile();
+        }
+        catch (final JexlException ex)
+        {
+            Logger.getLogger(CacheablePropertyReader.class.getName()).log(Level.WARNING,
+                    String.format("Cannot compile the conditions of the feature [%s].", descriptor.getName()), ex);
+        }
+    }
+
+    /**
+     * The map which reads the current snapshot. The changes made through it 
+     * while the descriptors are {@link #loadDescriptors() loaded} are staged 
+     * and published as one snapshot when the load ends, so the lookups never 
+     * see the cache cleared and filled again. The change made at any other 
+     * time is published at once. 
+     */
+    private class SnapshotView extends FeatureDescriptorsMap {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int size() {
+            return readable().size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return readable().isEmpty();
+        }
+
+        @Override
+        public FeatureDescriptor get(final Object key) {
+            return readable().get(key);
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return readable().containsKey(key);
+        }
+
+        @Override
+        public boolean containsValue(final Object value) {
+            return readable().containsValue(value);
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return readable().keySet();
+        }
+
+        @Override
+        public Collection<FeatureDescriptor> values() {
+            return readable().values();
+        }
+
+        @Override
+        public Set<Map.Entry<String, FeatureDescriptor>> entrySet() {
+            return readable().entrySet();
+        }
+
+        @Override
+        public FeatureDescriptor put(final String key, final FeatureDescriptor value) {
+            final Map<String, FeatureDescriptor> staged = staged();
+            if (staged != null) {
+                return staged.put(key, value);
+            }
+            synchronized (publishLock) {
+                final Map<String, FeatureDescriptor> descriptors = copyDescriptors();
+                final FeatureDescriptor previous = descriptors.put(key, value);
+                publishSnapshot(descriptors, false);
+                return previous;
+            }
+        }
+
+        @Override
+        public void putAll(final Map<? extends String, ? extends FeatureDescriptor> map) {
+            final Map<String, FeatureDescriptor> staged = staged();
+            if (staged != null) {
+                staged.putAll(map);
+                return;
+            }
+            synchronized (publishLock) {
+                final Map<String, FeatureDescriptor> descriptors = copyDescriptors();
+                descriptors.putAll(map);
+                publishSnapshot(descriptors, false);
+            }
+        }
+
+        @Override
+        public FeatureDescriptor remove(final Object key) {
+            final Map<String, FeatureDescriptor> staged = staged();
+            if (staged != null) {
+                return staged.remove(key);
+            }
+            synchronized (publishLock) {
+                if (!containsKey(key)) {
+                    return null;
+                }
+                final Map<String, FeatureDescriptor> descriptors = copyDescriptors();
+                final FeatureDescriptor previous = descriptors.remove(key);
+                publishSnapshot(descriptors, false);
+                return previous;
+            }
+        }
+
+        @Override
+        public void clear() {
+            final Map<String, FeatureDescriptor> staged = staged();
+            if (staged != null) {
+                staged.clear();
+                return;
+            }
+            synchronized (publishLock) {
+                if (!isEmpty()) {
+                    publishSnapshot(new HashMap<String, FeatureDescriptor>(), false);
+                }
+            }
+        }
+
+        @Override
+        public Object clone() {
+            final FeatureDescriptorsMap result = new FeatureDescriptorsMap();
+            result.putAll(readable());
+            return result;
+        }
+
+        /**
+         * Returns the descriptors staged by the load running in this thread, 
+         * or the descriptors of the current snapshot.
+         */
+        private Map<String, FeatureDescriptor> readable() {
+            final Staging current = staging.get();
+            return current == null || current.descriptors == null 
+                    ? snapshot.getDescriptors() : Collections.unmodifiableMap(current.descriptors);
+        }
+
+        /**
+         * Returns the descriptors to change staged by the load running in this 
+         * thread, starting them from the current snapshot on the first change, 
+         * or <code>null</code> if no load runs.
+         */
+        private Map<String, FeatureDescriptor> staged() {
+            final Staging current = staging.get();
+            if (current == null) {
+                return null;
+            }
+            if (current.descriptors == null) {
+                current.descriptors = copyDescriptors();
+            }
+            return current.descriptors;
+        }
+
+        private Map<String, FeatureDescriptor> copyDescriptors() {
+            return new HashMap<String, FeatureDescriptor>(snapshot.getDescriptors());
+        }
+    }
+
+    /**
+     * The descriptors changed through the deprecated cache view while the 
+     * descriptors are loaded.
+     */
+    private static class Staging {
+
+        private Map<String, FeatureDescriptor> descriptors;
+    }
+
 }
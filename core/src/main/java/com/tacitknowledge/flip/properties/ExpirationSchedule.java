@@ -0,0 +1,119 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * The expiration dates of the features of one {@link CacheablePropertyReader} 
+ * ordered by time. A single task of {@link ReloadScheduler} is scheduled for 
+ * the nearest date. When it runs, the features whose dates have passed are 
+ * handed to the reader and the task is scheduled for the next date. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+class ExpirationSchedule implements Runnable
+{
+    private final CacheablePropertyReader reader;
+
+    private final TreeMap<Long, List<String>> expirations = new TreeMap<Long, List<String>>();
+
+    private ScheduledFuture<?> future;
+
+    /**
+     * Constructs the schedule of the reader. 
+     * 
+     * @param reader the reader to hand the expired features to.
+     */
+    ExpirationSchedule(final CacheablePropertyReader reader)
+    {
+        this.reader = reader;
+    }
+
+    /**
+     * Replaces the expiration dates with the ones passed. The features which 
+     * have expired already are handed to the reader soon after this call.
+     * 
+     * @param dates the expiration dates by feature name.
+     */
+    synchronized void reset(final Map<String, Date> dates)
+    {
+        expirations.clear();
+        for (final Map.Entry<String, Date> entry : dates.entrySet())
+        {
+            final Long time = Long.valueOf(entry.getValue().getTime());
+            List<String> names = expirations.get(time);
+            if (names == null)
+            {
+                names = new ArrayList<String>(1);
+                expirations.put(time, names);
+            }
+            names.add(entry.getKey());
+        }
+        reschedule();
+    }
+
+    /**
+     * Cancels the scheduled task and forgets all of the dates.
+     */
+    synchronized void cancel()
+    {
+        expirations.clear();
+        reschedule();
+    }
+
+    /**
+     * Hands the features whose dates have passed to the reader.
+     */
+    @Override
+    public void run()
+    {
+        final List<String> expired = new ArrayList<String>();
+        synchronized (this)
+        {
+            final Map<Long, List<String>> due = expirations.headMap(Long.valueOf(System.currentTimeMillis()), true);
+            for (final List<String> names : due.values())
+            {
+                expired.addAll(names);
+            }
+            due.clear();
+            future = null;
+            reschedule();
+        }
+        if (!expired.isEmpty())
+        {
+            reader.featuresExpired(expired);
+        }
+    }
+
+    private void reschedule()
+    {
+        if (future != null)
+        {
+            future.cancel(false);
+            future = null;
+        }
+        if (!expirations.isEmpty())
+        {
+            final long delay = expirations.firstKey().longValue() - System.currentTimeMillis();
+            future = ReloadScheduler.getInstance().schedule(this, Math.max(0, delay));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import java.util.Collections;
+import java.util.EventObject;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.tacitknowledge.flip.model.FeatureDescriptor;
+
+/**
+ * The event fired when a {@link CacheablePropertyReader} publishes a new 
+ * snapshot of feature descriptors. The source of the event is the property reader. 
+ * The event holds the names of the features added, removed and modified by 
+ * the new snapshot, so the listeners could drop only what depends on them. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FeatureChangeEvent extends EventObject
+{
+    private static final long serialVersionUID = 1L;
+
+    private final transient FeatureSnapshot previousSnapshot;
+
+    private final transient FeatureSnapshot snapshot;
+
+    private final Set<String> addedFeatures;
+
+    private final Set<String> removedFeatures;
+
+    private final Set<String> modifiedFeatures;
+
+    /**
+     * Constructs the event. The changed features are found by comparing the 
+     * snapshots: the feature is modified if its descriptor is not the same 
+     * instance in both snapshots. 
+     * 
+     * @param source the property reader which has published the snapshot.
+     * @param previousSnapshot the snapshot replaced.
+     * @param snapshot the snapshot published.
+     */
+    public FeatureChangeEvent(final CacheablePropertyReader source, final FeatureSnapshot previousSnapshot,
+            final FeatureSnapshot snapshot)
+    {
+        super(source);
+        this.previousSnapshot = previousSnapshot;
+        this.snapshot = snapshot;
+        final Set<String> added = new HashSet<String>();
+        final Set<String> modified = new HashSet<String>();
+        for (final String name : snapshot.getFeatureNames())
+        {
+            final FeatureDescriptor previous = previousSnapshot.get(name);
+            if (previous == null && !previousSnapshot.getFeatureNames().contains(name))
+            {
+                added.add(name);
+            }
+            else if (previous != snapshot.get(name))
+            {
+                modified.add(name);
+            }
+        }
+        final Set<String> removed = new HashSet<String>(previousSnapshot.getFeatureNames());
+        removed.removeAll(snapshot.getFeatureNames());
+        this.addedFeatures = Collections.unmodifiableSet(added);
+        this.removedFeatures = Collections.unmodifiableSet(removed);
+        this.modifiedFeatures = Collections.unmodifiableSet(modified);
+    }
+
+    /**
+     * Constructs the event with the changes found by the property reader. 
+     * 
+     * @param source the property reader which has published the snapshot.
+     * @param previousSnapshot the snapshot replaced.
+     * @param snapshot the snapshot published.
+     * @param addedFeatures the names of the features which are only in the new snapshot.
+     * @param removedFeatures the names of the features which are only in the previous snapshot.
+     * @param modifiedFeatures the names of the features whose descriptors have changed.
+     */
+    public FeatureChangeEvent(final CacheablePropertyReader source, final FeatureSnapshot previousSnapshot,
+            final FeatureSnapshot snapshot, final Set<String> addedFeatures, final Set<String> removedFeatures,
+            final Set<String> modifiedFeatures)
+    {
+        super(source);
+        this.previousSnapshot = previousSnapshot;
+        this.snapshot = snapshot;
+        this.addedFeatures = Collections.unmodifiableSet(addedFeatures);
+        this.removedFeatures = Collections.unmodifiableSet(removedFeatures);
+        this.modifiedFeatures = Collections.unmodifiableSet(modifiedFeatures);
+    }
+
+    /**
+     * Returns the property reader which has published the snapshot. 
+     * 
+     * @return the property reader.
+     */
+    public CacheablePropertyReader getPropertyReader()
+    {
+        return (CacheablePropertyReader) getSource();
+    }
+
+    /**
+     * Returns the snapshot which was replaced. 
+     * 
+     * @return the previous snapshot.
+     */
+    public FeatureSnapshot getPreviousSnapshot()
+    {
+        return previousSnapshot;
+    }
+
+    /**
+     * Returns the snapshot which was published. 
+     * 
+     * @return the current snapshot.
+     */
+    public FeatureSnapshot getSnapshot()
+    {
+        return snapshot;
+    }
+
+    /**
+     * Returns the names of the features which were added by the new snapshot. 
+     * 
+     * @return the unmodifiable set of feature names.
+     */
+    public Set<String> getAddedFeatures()
+    {
+        return addedFeatures;
+    }
+
+    /**
+     * Returns the names of the features which were removed by the new snapshot. 
+     * 
+     * @return the unmodifiable set of feature names.
+     */
+    public Set<String> getRemovedFeatures()
+    {
+        return removedFeatures;
+    }
+
+    /**
+     * Returns the names of the features whose descriptors were changed by the 
+     * new snapshot. The unchanged descriptors are the same instances in both 
+     * snapshots. 
+     * 
+     * @return the unmodifiable set of feature names.
+     */
+    public Set<String> getModifiedFeatures()
+    {
+        return modifiedFeatures;
+    }
+
+    /**
+     * Returns if the feature was added, removed or modified by the new snapshot. 
+     * 
+     * @param name the name of the feature.
+     * @return <code>true</code> if the feature has changed.
+     */
+    public boolean isChanged(final String name)
+    {
+        return addedFeatures.contains(name) || removedFeatures.contains(name) || modifiedFeatures.contains(name);
+    }
+
+    /**
+     * Returns if any of the features has changed. 
+     * 
+     * @return <code>false</code> if the new snapshot has the same features as the previous one.
+     */
+    public boolean hasChanges()
+    {
+        return !addedFeatures.isEmpty() || !removedFeatures.isEmpty() || !modifiedFeatures.isEmpty();
+    }
+}
@@ -0,0 +1,35 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import java.util.EventListener;
+
+/**
+ * The listener notified when a {@link CacheablePropertyReader} publishes a 
+ * new snapshot of feature descriptors. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public interface FeatureChangeListener extends EventListener
+{
+    /**
+     * Invoked after the new snapshot was published by the property reader. 
+     * The listener is invoked in the thread which has read the descriptors, 
+     * so it should return quickly. 
+     * 
+     * @param event the event describing the published snapshot.
+     */
+    void featuresChanged(FeatureChangeEvent event);
+}
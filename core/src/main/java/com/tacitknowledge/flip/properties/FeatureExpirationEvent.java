@@ -0,0 +1,96 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import java.util.Date;
+import java.util.EventObject;
+
+import com.tacitknowledge.flip.model.FeatureState;
+
+/**
+ * The event fired when a feature of a {@link CacheablePropertyReader} reaches 
+ * its expiration date. The source of the event is the property reader. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FeatureExpirationEvent extends EventObject
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String featureName;
+
+    private final Date expirationDate;
+
+    private final FeatureState expiredState;
+
+    /**
+     * Constructs the event. 
+     * 
+     * @param source the property reader which has the feature.
+     * @param featureName the name of the expired feature.
+     * @param expirationDate the expiration date of the feature.
+     * @param expiredState the state the feature was switched to or 
+     * <code>null</code> if the feature was left as is.
+     */
+    public FeatureExpirationEvent(final CacheablePropertyReader source, final String featureName,
+            final Date expirationDate, final FeatureState expiredState)
+    {
+        super(source);
+        this.featureName = featureName;
+        this.expirationDate = expirationDate;
+        this.expiredState = expiredState;
+    }
+
+    /**
+     * Returns the property reader which has the feature. 
+     * 
+     * @return the property reader.
+     */
+    public CacheablePropertyReader getPropertyReader()
+    {
+        return (CacheablePropertyReader) getSource();
+    }
+
+    /**
+     * Returns the name of the expired feature. 
+     * 
+     * @return the feature name.
+     */
+    public String getFeatureName()
+    {
+        return featureName;
+    }
+
+    /**
+     * Returns the expiration date of the feature. 
+     * 
+     * @return the expiration date.
+     */
+    public Date getExpirationDate()
+    {
+        return expirationDate;
+    }
+
+    /**
+     * Returns the state the feature was switched to on expiration, see 
+     * {@link CacheablePropertyReader#CONFIG_EXPIRED_STATE}. 
+     * 
+     * @return the state or <code>null</code> if the feature was left as is.
+     */
+    public FeatureState getExpiredState()
+    {
+        return expiredState;
+    }
+}
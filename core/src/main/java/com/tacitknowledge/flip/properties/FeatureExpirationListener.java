@@ -0,0 +1,34 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import java.util.EventListener;
+
+/**
+ * The listener notified when a feature of a {@link CacheablePropertyReader} 
+ * reaches its expiration date. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public interface FeatureExpirationListener extends EventListener
+{
+    /**
+     * Invoked once when the feature expires. The listener is invoked by the 
+     * thread of {@link ReloadScheduler}, so it should return quickly. 
+     * 
+     * @param event the event describing the expired feature.
+     */
+    void featureExpired(FeatureExpirationEvent event);
+}
@@ -0,0 +1,155 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.tacitknowledge.flip.model.FeatureDescriptor;
+
+/**
+ * The immutable set of feature descriptors read by a {@link CacheablePropertyReader}
+ * at once. The property reader builds the whole snapshot before publishing it,
+ * so the readers of the snapshot never observe a partially loaded set of features.
+ * Each snapshot published by the property reader has a version greater than the
+ * previous one.
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public final class FeatureSnapshot
+{
+    /**
+     * The snapshot without features. It is used before the first snapshot is published.
+     */
+    public static final FeatureSnapshot EMPTY = new FeatureSnapshot(
+            Collections.<String, FeatureDescriptor> emptyMap(), 0, 0);
+
+    private final Map<String, FeatureDescriptor> descriptors;
+
+    private final long version;
+
+    private final long loadTime;
+
+    /**
+     * Constructs the snapshot. The descriptors are copied, so later changes of
+     * the map passed do not affect the snapshot.
+     *
+     * @param descriptors the map of feature descriptors by feature name.
+     * @param version the version of the snapshot.
+     * @param loadTime the time in milliseconds when the snapshot was loaded.
+     */
+    public FeatureSnapshot(final Map<String, FeatureDescriptor> descriptors, final long version, final long loadTime)
+    {
+        this(descriptors, version, loadTime, true);
+    }
+
+    private FeatureSnapshot(final Map<String, FeatureDescriptor> descriptors, final long version,
+            final long loadTime, final boolean copy)
+    {
+        this.descriptors = Collections.unmodifiableMap(copy
+                ? new HashMap<String, FeatureDescriptor>(descriptors) : descriptors);
+        this.version = version;
+        this.loadTime = loadTime;
+    }
+
+    /**
+     * Constructs the snapshot which takes over the map passed without copying it.
+     * The caller must not change the map after this call.
+     *
+     * @param descriptors the map of feature descriptors by feature name.
+     * @param version the version of the snapshot.
+     * @param loadTime the time in milliseconds when the snapshot was loaded.
+     * @return the snapshot backed by the map passed.
+     */
+    static FeatureSnapshot adopt(final Map<String, FeatureDescriptor> descriptors, final long version,
+            final long loadTime)
+    {
+        return new FeatureSnapshot(descriptors, version, loadTime, false);
+    }
+
+    /**
+     * Returns the feature descriptor by its name.
+     *
+     * @param name the name of the feature.
+     * @return the feature descriptor or <code>null</code> if there is no such feature.
+     */
+    public FeatureDescriptor get(final String name)
+    {
+        return descriptors.get(name);
+    }
+
+    /**
+     * Returns the unmodifiable map of all feature descriptors of this snapshot.
+     *
+     * @return the map of feature descriptors by feature name.
+     */
+    public Map<String, FeatureDescriptor> getDescriptors()
+    {
+        return descriptors;
+    }
+
+    /**
+     * Returns the names of all features of this snapshot.
+     *
+     * @return the unmodifiable set of feature names.
+     */
+    public Set<String> getFeatureNames()
+    {
+        return descriptors.keySet();
+    }
+
+    /**
+     * Returns the number of feature descriptors in this snapshot.
+     *
+     * @return the number of features.
+     */
+    public int size()
+    {
+        return descriptors.size();
+    }
+
+    /**
+     * Returns if there are no features in this snapshot.
+     *
+     * @return <code>true</code> if the snapshot is empty.
+     */
+    public boolean isEmpty()
+    {
+        return descriptors.isEmpty();
+    }
+
+    /**
+     * Returns the version of this snapshot. The versions of the snapshots published
+     * by the same property reader are increasing monotonically.
+     *
+     * @return the snapshot version.
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Returns the time when this snapshot was loaded.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getLoadTime()
+    {
+        return loadTime;
+    }
+}
@@ -34,7 +34,9 @@ public @interface FlipProperty
      * means that this property reader will be more important and in case if two 
      * property readers holds feature descriptor with the same name will be returned 
      * from that property reader which has priority bigger.
-     * By default priority is of 2012. All standard property readers are of priority 100. 
+     * By default priority is of 2012. The standard property readers are of priority 100, 
+     * except the binary snapshot reader, which is of priority 99, so the XML configuration 
+     * overrides the features of the snapshot. 
      */
     int priority() default 2012;
 }
@@ -0,0 +1,388 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.jexl2.JexlException;
+
+import com.tacitknowledge.flip.model.FeatureCondition;
+import com.tacitknowledge.flip.model.FeatureDescriptor;
+import com.tacitknowledge.flip.model.FeatureOperation;
+import com.tacitknowledge.flip.model.FeatureRule;
+import com.tacitknowledge.flip.model.FeatureState;
+
+/**
+ * The read-only map of feature descriptors backed by the buffer in the format 
+ * written by {@link BinarySnapshotWriter}. Nothing is decoded in advance: the 
+ * feature is found by the binary search in the feature index and its descriptor 
+ * is built and compiled on the first access. The descriptors and the strings 
+ * decoded are kept, so each of them is decoded once. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+class MappedFeatureDescriptors extends AbstractMap<String, FeatureDescriptor>
+{
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+
+    private final long creationTime;
+
+    private final int stringCount;
+
+    private final int featureCount;
+
+    private final int featureNamesStart;
+
+    private final int featureOffsetsStart;
+
+    private final AtomicReferenceArray<String> strings;
+
+    private final AtomicReferenceArray<FeatureDescriptor> descriptors;
+
+    private Set<Map.Entry<String, FeatureDescriptor>> entrySet;
+
+    private Set<String> keys;
+
+    /**
+     * Constructs the map over the buffer. Only the header is read.
+     * 
+     * @param buffer the buffer with the snapshot.
+     * @throws IOException if the buffer is not a snapshot of the supported format version.
+     */
+    MappedFeatureDescriptors(final ByteBuffer buffer) throws IOException
+    {
+        this.buffer = buffer;
+        if (buffer.capacity() < BinarySnapshotWriter.HEADER_SIZE || buffer.getInt(0) != BinarySnapshotWriter.MAGIC)
+        {
+            throw new IOException("The file is not a feature snapshot.");
+        }
+        final int version = buffer.getInt(4);
+        if (version != BinarySnapshotWriter.FORMAT_VERSION)
+        {
+            throw new IOException(String.format("The feature snapshot format version %d is not supported.", version));
+        }
+        creationTime = buffer.getLong(8);
+        stringCount = buffer.getInt(16);
+        featureCount = buffer.getInt(20);
+        featureNamesStart = BinarySnapshotWriter.HEADER_SIZE + 4 * stringCount;
+        featureOffsetsStart = featureNamesStart + 4 * featureCount;
+        if (stringCount < 0 || featureCount < 0 || featureOffsetsStart + 4 * featureCount > buffer.capacity())
+        {
+            throw new IOException("The feature snapshot is truncated.");
+        }
+        strings = new AtomicReferenceArray<String>(stringCount);
+        descriptors = new AtomicReferenceArray<FeatureDescriptor>(featureCount);
+    }
+
+    /**
+     * Returns the time when the snapshot was written.
+     * 
+     * @return the time in milliseconds.
+     */
+    long getCreationTime()
+    {
+        return creationTime;
+    }
+
+    /**
+     * Returns the expiration dates of the features. Only the dates are read, 
+     * the descriptors are not built. 
+     * 
+     * @return the expiration dates by feature name of the features which have them.
+     */
+    Map<String, Date> getExpirationDates()
+    {
+        final Map<String, Date> result = new HashMap<String, Date>();
+        for (int i = 0; i < featureCount; i++)
+        {
+            final long expirationDate = buffer.getLong(buffer.getInt(featureOffsetsStart + 4 * i) + 4);
+            if (expirationDate != BinarySnapshotWriter.NO_DATE)
+            {
+                result.put(getName(i), new Date(expirationDate));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public FeatureDescriptor get(final Object key)
+    {
+        final int index = indexOf(key);
+        return index < 0 ? null : getDescriptor(index);
+    }
+
+    @Override
+    public boolean containsKey(final Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return featureCount;
+    }
+
+    @Override
+    public Set<String> keySet()
+    {
+        if (keys == null)
+        {
+            keys = new KeySet();
+        }
+        return keys;
+    }
+
+    @Override
+    public Set<Map.Entry<String, FeatureDescriptor>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private int indexOf(final Object key)
+    {
+        if (!(key instanceof String))
+        {
+            return -1;
+        }
+        int low = 0;
+        int high = featureCount - 1;
+        while (low <= high)
+        {
+            final int middle = (low + high) >>> 1;
+            final int comparison = getName(middle).compareTo((String) key);
+            if (comparison < 0)
+            {
+                low = middle + 1;
+            }
+            else if (comparison > 0)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private String getName(final int index)
+    {
+        return getString(buffer.getInt(featureNamesStart + 4 * index));
+    }
+
+    private FeatureDescriptor getDescriptor(final int index)
+    {
+        FeatureDescriptor result = descriptors.get(index);
+        if (result == null)
+        {
+            result = readDescriptor(index);
+            if (!descriptors.compareAndSet(index, null, result))
+            {
+                result = descriptors.get(index);
+            }
+        }
+        return result;
+    }
+
+    private FeatureDescriptor readDescriptor(final int index)
+    {
+        final ByteBuffer in = buffer.duplicate();
+        in.position(buffer.getInt(featureOffsetsStart + 4 * index));
+
+        final FeatureDescriptor descriptor = new FeatureDescriptor();
+        descriptor.setName(getName(index));
+        descriptor.setState(getEnum(FeatureState.class, in.getInt()));
+        final long expirationDate = in.getLong();
+        descriptor.setExpirationDate(expirationDate == BinarySnapshotWriter.NO_DATE ? null : new Date(expirationDate));
+        final int ruleCount = in.getInt();
+        if (ruleCount != BinarySnapshotWriter.NULL)
+        {
+            final FeatureRule[] rules = new FeatureRule[ruleCount];
+            for (int i = 0; i < ruleCount; i++)
+            {
+                rules[i] = readRule(in);
+            }
+            descriptor.setRules(rules);
+        }
+
+        try
+        {
+            descriptor.compile();
+        }
+        catch (final JexlException ex)
+        {
+            Logger.getLogger(MappedFeatureDescriptors.class.getName()).log(Level.WARNING,
+                    String.format("Cannot compile the conditions of the feature [%s].", descriptor.getName()), ex);
+        }
+        return descriptor;
+    }
+
+    private FeatureRule readRule(final ByteBuffer in)
+    {
+        final FeatureRule rule = new FeatureRule();
+        rule.setState(getEnum(FeatureState.class, in.getInt()));
+        final int conditionCount = in.getInt();
+        if (conditionCount != BinarySnapshotWriter.NULL)
+        {
+            final FeatureCondition[] conditions = new FeatureCondition[conditionCount];
+            for (int i = 0; i < conditionCount; i++)
+            {
+                final FeatureCondition condition = new FeatureCondition();
+                condition.setContext(getString(in.getInt()));
+                condition.setName(getString(in.getInt()));
+                condition.setOperation(getEnum(FeatureOperation.class, in.getInt()));
+                condition.setValue(getString(in.getInt()));
+                condition.setExpression(getString(in.getInt()));
+                conditions[i] = condition;
+            }
+            rule.setConditions(conditions);
+        }
+        return rule;
+    }
+
+    private <E extends Enum<E>> E getEnum(final Class<E> enumClass, final int index)
+    {
+        final String name = getString(index);
+        return name == null ? null : Enum.valueOf(enumClass, name);
+    }
+
+    private String getString(final int index)
+    {
+        if (index == BinarySnapshotWriter.NULL)
+        {
+            return null;
+        }
+        String result = strings.get(index);
+        if (result == null)
+        {
+            final ByteBuffer in = buffer.duplicate();
+            in.position(buffer.getInt(BinarySnapshotWriter.HEADER_SIZE + 4 * index));
+            final int length = in.getInt();
+            in.limit(in.position() + length);
+            result = UTF_8.decode(in).toString();
+            strings.lazySet(index, result);
+        }
+        return result;
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<String, FeatureDescriptor>>
+    {
+        @Override
+        public Iterator<Map.Entry<String, FeatureDescriptor>> iterator()
+        {
+            return new Iterator<Map.Entry<String, FeatureDescriptor>>()
+            {
+                private int index;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return index < featureCount;
+                }
+
+                @Override
+                public Map.Entry<String, FeatureDescriptor> next()
+                {
+                    if (index >= featureCount)
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    final int current = index++;
+                    return new SimpleImmutableEntry<String, FeatureDescriptor>(getName(current),
+                            getDescriptor(current));
+                }
+
+                @Override
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size()
+        {
+            return featureCount;
+        }
+    }
+
+    private class KeySet extends AbstractSet<String>
+    {
+        @Override
+        public Iterator<String> iterator()
+        {
+            return new Iterator<String>()
+            {
+                private int index;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return index < featureCount;
+                }
+
+                @Override
+                public String next()
+                {
+                    if (index >= featureCount)
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    return getName(index++);
+                }
+
+                @Override
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(final Object key)
+        {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public int size()
+        {
+            return featureCount;
+        }
+    }
+}
@@ -14,7 +14,17 @@
 */
 package com.tacitknowledge.flip.properties;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.tacitknowledge.flip.Environment;
 import com.tacitknowledge.flip.exceptions.MissingFeatureDescriptorException;
@@ -25,15 +35,51 @@ import com.tacitknowledge.flip.model.FeatureDescriptor;
  * all property readers. If there are two ore more property readers which could 
  * return the feature descriptor with the same name the property manager returns 
  * only the first. The order to find the feature descriptor is the same as the 
- * property readers are declared in the environment. 
+ * property readers are declared in the environment. <br />
+ * The features of the adjacent {@link CacheablePropertyReader}s are merged 
+ * into one index in the order of the readers, so the reader which has the 
+ * feature is found by a single lookup. The index is updated with the features 
+ * added and removed each time one of these readers publishes a new snapshot. 
+ * Only the other property readers are asked for the descriptor on each call. 
+ * The features missing in all of the property readers are remembered with the 
+ * generation at which they were looked up, so until the generation changes 
+ * only the dynamic property readers are asked for them. <br />
+ * The property manager tracks the reloads of {@link CacheablePropertyReader}s 
+ * with a generation number which changes each time any of them publishes a new 
+ * snapshot which changes some features. The generation at which each feature 
+ * has changed last is kept, so the descriptors resolved before could be checked 
+ * for the features which have not changed since. The other property readers are 
+ * considered dynamic, i.e. they may return different descriptors on each call. 
+ * The manager listens to the cacheable readers until it is {@link #close() closed}, 
+ * so the manager which is not used anymore should be closed if the readers 
+ * outlive it. 
  * 
  * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
  * @author Petric Coroli <pcoroli@tacitknowledge.com>
  */
 public class PropertyManager
 {
+    /**
+     * The maximum number of the missing features remembered.
+     */
+    private static final int MAX_MISSING_FEATURES = 1024;
+
     private final List<PropertyReader> propertyReaders;
 
+    private final PropertyReader[] resolvers;
+
+    private final Map<PropertyReader, MergedIndex> indexes = new IdentityHashMap<PropertyReader, MergedIndex>();
+
+    private final ConcurrentMap<String, Long> missingFeatures = new ConcurrentHashMap<String, Long>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final ConcurrentMap<String, Long> featureGenerations = new ConcurrentHashMap<String, Long>();
+
+    private final boolean dynamic;
+
+    private final FeatureChangeListener listener = new GenerationListener();
+
     /**
      * Constructs the property manager. All property readers are obtained from environment. 
      * 
@@ -42,6 +88,160 @@ public class PropertyManager
     public PropertyManager(final Environment environment)
     {
         propertyReaders = environment.getPropertyReaders();
+
+        boolean hasDynamicReaders = false;
+        final List<PropertyReader> chain = new ArrayList<PropertyReader>();
+        List<CacheablePropertyReader> merged = null;
+        for (final PropertyReader reader : propertyReaders)
+        {
+            if (reader instanceof CacheablePropertyReader)
+            {
+                if (merged == null)
+                {
+                    merged = new ArrayList<CacheablePropertyReader>();
+                }
+                merged.add((CacheablePropertyReader) reader);
+            }
+            else
+            {
+                addIndex(chain, merged);
+                merged = null;
+                chain.add(reader);
+                hasDynamicReaders = true;
+            }
+        }
+        addIndex(chain, merged);
+        resolvers = chain.toArray(new PropertyReader[chain.size()]);
+        dynamic = hasDynamicReaders;
+
+        // the listener is added before the index is built, so no snapshot is missed
+        for (final PropertyReader reader : indexes.keySet())
+        {
+            ((CacheablePropertyReader) reader).addFeatureChangeListener(listener);
+        }
+        for (final PropertyReader resolver : resolvers)
+        {
+            if (resolver instanceof MergedIndex)
+            {
+                ((MergedIndex) resolver).rebuild();
+            }
+        }
+    }
+
+    private void addIndex(final List<PropertyReader> chain, final List<CacheablePropertyReader> readers)
+    {
+        if (readers == null)
+        {
+            return;
+        }
+        final MergedIndex index = new MergedIndex(readers);
+        for (final CacheablePropertyReader reader : readers)
+        {
+            indexes.put(reader, index);
+        }
+        chain.add(index);
+    }
+    /**
+     * Returns the generation of the feature descriptors. The generation changes 
+     * every time one of the cacheable property readers publishes a new snapshot 
+     * with changed features, so the descriptors resolved at the same generation 
+     * are still actual. 
+     * 
+     * @return the current generation.
+     */
+    public long getGeneration()
+    {
+        return generation.get();
+    }
+
+    /**
+     * Returns if the feature has been added, removed or modified by any of the 
+     * cacheable property readers after the generation passed. 
+     * 
+     * @param name the name of the feature.
+     * @param sinceGeneration the generation at which the feature was resolved.
+     * @return <code>true</code> if the descriptor resolved at that generation may be stale.
+     */
+    public boolean isChanged(final String name, final long sinceGeneration)
+    {
+        final Long changed = featureGenerations.get(name);
+        return changed != null && changed.longValue() > sinceGeneration;
+    }
+
+    /**
+     * Returns if there are property readers whose descriptors could change 
+     * without changing the generation. 
+     * 
+     * @return <code>true</code> if some of property readers are not cacheable.
+     */
+    public boolean isDynamic()
+    {
+        return dynamic;
+    }
+
+    /**
+     * Returns the names of the features known to the cacheable property readers. 
+     * The dynamic property readers could not list their features. 
+     * 
+     * @return the sorted set of feature names.
+     */
+    public SortedSet<String> getFeatureNames()
+    {
+        final SortedSet<String> result = new TreeSet<String>();
+        for (final PropertyReader reader : propertyReaders)
+        {
+            if (reader instanceof CacheablePropertyReader)
+            {
+                result.addAll(((CacheablePropertyReader) reader).getSnapshot().getFeatureNames());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the feature descriptor by its name. It returns the first found in 
+     * the list obtained from environment. 
+     * 
+     * @param name the name of feature. 
+     * @return {@link FeatureDescriptor} which has the name declared or 
+     * <code>null</code> if there is no such feature.
+     */
+    public FeatureDescriptor findFeatureDescriptor(final String name)
+    {
+        final long lookupGeneration = generation.get();
+        Boolean missingInIndexes = null;
+        for (final PropertyReader resolver : resolvers)
+        {
+            if (resolver instanceof MergedIndex)
+            {
+                if (missingInIndexes == null)
+                {
+                    final Long missing = missingFeatures.get(name);
+                    missingInIndexes = Boolean.valueOf(missing != null && missing.longValue() == lookupGeneration);
+                }
+                if (missingInIndexes.booleanValue())
+                {
+                    continue;
+                }
+            }
+            final FeatureDescriptor descriptor = resolver.getFeatureDescriptor(name);
+            if (descriptor != null)
+            {
+                return descriptor;
+            }
+        }
+
+        if (Boolean.FALSE.equals(missingInIndexes))
+        {
+            if (missingFeatures.size() >= MAX_MISSING_FEATURES)
+            {
+                missingFeatures.clear();
+            }
+            // the feature added while it was looked up changes the generation, 
+            // so the generation remembered does not match anymore
+            missingFeatures.put(name, Long.valueOf(lookupGeneration));
+        }
+        return null;
     }
 
     /**
@@ -51,21 +251,192 @@ public class PropertyManager
      * @param name the name of feature. 
      * @return {@link FeatureDescriptor} which has the name declared. 
      * @throws MissingFeatureDescriptorException throws when there is no a feature 
-     * descriptor with the name passed as a parameter.
+     * descriptor with the name passed as a parameter. The exception has no 
+     * stack trace, since the missing features are expected to be requested often.
      */
     public FeatureDescriptor getFeatureDescriptor(final String name)
     {
-        for (final PropertyReader reader : propertyReaders)
+        final FeatureDescriptor descriptor = findFeatureDescriptor(name);
+        if (descriptor == null)
         {
-            final FeatureDescriptor descriptor = reader.getFeatureDescriptor(name);
-            if (descriptor != null)
+            throw new MissingFeatureException(name);
+        }
+        return descriptor;
+    }
+
+    /**
+     * Forgets the missing features remembered, so they are looked up in all 
+     * of the property readers again.
+     */
+    public void clearMissingFeatures()
+    {
+        missingFeatures.clear();
+    }
+
+    /**
+     * Stops listening to the snapshots of the {@link CacheablePropertyReader}s, 
+     * so the readers do not hold this property manager anymore. The index of the 
+     * features is not updated after that. 
+     */
+    public void close()
+    {
+        for (final PropertyReader reader : indexes.keySet())
+        {
+            ((CacheablePropertyReader) reader).removeFeatureChangeListener(listener);
+        }
+    }
+
+    private class GenerationListener implements FeatureChangeListener
+    {
+        @Override
+        public synchronized void featuresChanged(final FeatureChangeEvent event)
+        {
+            if (!event.hasChanges())
             {
-                return descriptor;
+                return;
+            }
+            // the feature generations are written before the generation, so
+            // whoever sees the new generation sees the features changed by it
+            final MergedIndex index = indexes.get(event.getPropertyReader());
+            if (index != null)
+            {
+                index.update(event.getAddedFeatures());
+                index.update(event.getRemovedFeatures());
+            }
+
+            final Long next = Long.valueOf(generation.get() + 1);
+            for (final String name : event.getAddedFeatures())
+            {
+                featureGenerations.put(name, next);
+            }
+            for (final String name : event.getRemovedFeatures())
+            {
+                featureGenerations.put(name, next);
+            }
+            for (final String name : event.getModifiedFeatures())
+            {
+                featureGenerations.put(name, next);
             }
+            generation.set(next.longValue());
+            // the missing features remembered at the previous generations do not
+            // match anymore, so they are only cleared to free the memory
+            missingFeatures.clear();
         }
+    }
+
+    /**
+     * The exception thrown for the missing feature. It does not fill in the 
+     * stack trace, which is the most of the cost of the exception.
+     */
+    private static class MissingFeatureException extends MissingFeatureDescriptorException
+    {
+        private static final long serialVersionUID = 1L;
 
-        throw new MissingFeatureDescriptorException(String.format(
-                "Couldn't find a feature descriptor for feature named [%s].", name));
+        public MissingFeatureException(final String name)
+        {
+            super(String.format("Couldn't find a feature descriptor for feature named [%s].", name));
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace()
+        {
+            return this;
+        }
     }
 
+    /**
+     * The features of the adjacent cacheable property readers merged in the 
+     * order of the readers. The index holds the first reader which has each 
+     * feature, so the descriptor is not built before it is asked for. The 
+     * single reader does not need the index at all. 
+     */
+    private static class MergedIndex implements PropertyReader
+    {
+        private final CacheablePropertyReader[] readers;
+
+        private final ConcurrentMap<String, CacheablePropertyReader> owners = 
+                new ConcurrentHashMap<String, CacheablePropertyReader>();
+
+        public MergedIndex(final List<CacheablePropertyReader> readers)
+        {
+            this.readers = readers.toArray(new CacheablePropertyReader[readers.size()]);
+        }
+
+        @Override
+        public void initialize(final Properties config)
+        {
+        }
+
+        @Override
+        public FeatureDescriptor getFeatureDescriptor(final String name)
+        {
+            if (readers.length == 1)
+            {
+                return readers[0].getFeatureDescriptor(name);
+            }
+            final CacheablePropertyReader owner = owners.get(name);
+            if (owner == null)
+            {
+                return null;
+            }
+            final FeatureDescriptor descriptor = owner.getFeatureDescriptor(name);
+            return descriptor != null ? descriptor : resolve(name);
+        }
+
+        public synchronized void rebuild()
+        {
+            if (readers.length > 1)
+            {
+                for (final CacheablePropertyReader reader : readers)
+                {
+                    update(reader.getSnapshot().getFeatureNames());
+                }
+            }
+        }
+
+        public synchronized void update(final Collection<String> names)
+        {
+            if (readers.length == 1)
+            {
+                return;
+            }
+            for (final String name : names)
+            {
+                final CacheablePropertyReader owner = findOwner(name);
+                if (owner == null)
+                {
+                    owners.remove(name);
+                }
+                else
+                {
+                    owners.put(name, owner);
+                }
+            }
+        }
+
+        private CacheablePropertyReader findOwner(final String name)
+        {
+            for (final CacheablePropertyReader reader : readers)
+            {
+                if (reader.getSnapshot().getFeatureNames().contains(name))
+                {
+                    return reader;
+                }
+            }
+            return null;
+        }
+
+        private FeatureDescriptor resolve(final String name)
+        {
+            for (final CacheablePropertyReader reader : readers)
+            {
+                final FeatureDescriptor descriptor = reader.getFeatureDescriptor(name);
+                if (descriptor != null)
+                {
+                    return descriptor;
+                }
+            }
+            return null;
+        }
+    }
 }
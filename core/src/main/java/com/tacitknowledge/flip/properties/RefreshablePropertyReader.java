@@ -14,16 +14,24 @@
 */
 package com.tacitknowledge.flip.properties;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.util.Properties;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.tacitknowledge.flip.jfr.FlightRecorderEvents;
+
 /**
- * The abstract class which refreshes the cache periodically. If the property 
- * with the refresh period is not specified or has an invalid value it will 
- * never refresh. 
+ * The abstract class which refreshes the cache periodically or when its 
+ * configuration file changes. If the reader has a {@link #getWatchedFile() file} 
+ * it is watched with the {@link java.nio.file.WatchService}, so the changes are 
+ * read once the file has not changed for the debounce period. The periodic 
+ * rereads are made if the property with the refresh period is specified, and 
+ * as a fallback when the file could not be watched. The rereads and the watches of all readers are run by the 
+ * shared {@link ReloadScheduler}. 
  * 
  * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
  */
@@ -35,7 +43,58 @@ public abstract class RefreshablePropertyReader extends CacheablePropertyReader
      */
     public static final String CONFIG_REREAD_INTERVAL = "flip.properties.reread";
 
-    private final Timer timer = new Timer(true);
+    /**
+     * The name of property which turns the watching of the configuration file 
+     * on or off. The file is watched by default. 
+     */
+    public static final String CONFIG_WATCH = "flip.properties.watch";
+
+    /**
+     * The name of property which holds the debounce period of the file watching 
+     * in milliseconds. 
+     */
+    public static final String CONFIG_WATCH_DEBOUNCE = "flip.properties.watch.debounce";
+
+    /**
+     * The default debounce period of the file watching in milliseconds.
+     */
+    public static final long DEFAULT_WATCH_DEBOUNCE = 100;
+
+    /**
+     * The refresh period in seconds used when the file could not be watched 
+     * and the refresh period is not specified.
+     */
+    public static final int FALLBACK_REREAD_INTERVAL = 10;
+
+    private final ReloadStatistics reloadStatistics = new ReloadStatistics();
+
+    private ScheduledFuture<?> rereadTask;
+
+    private Closeable watch;
+
+    /**
+     * The number of features, added, removed and modified features of the 
+     * last snapshot published. The snapshots are not kept, so they could be 
+     * collected.
+     */
+    private volatile int[] lastChange;
+
+    /**
+     * Constructs the reader which remembers the changes of its last snapshot 
+     * to report them with the reload.
+     */
+    protected RefreshablePropertyReader()
+    {
+        addFeatureChangeListener(new FeatureChangeListener()
+        {
+            @Override
+            public void featuresChanged(final FeatureChangeEvent event)
+            {
+                lastChange = new int[] { event.getSnapshot().size(), event.getAddedFeatures().size(),
+                        event.getRemovedFeatures().size(), event.getModifiedFeatures().size() };
+            }
+        });
+    }
 
     /**
      * {@inheritDoc }
@@ -47,32 +106,194 @@ public abstract class RefreshablePropertyReader extends CacheablePropertyReader
         applyTimer();
     }
 
-    private void applyTimer()
+    /**
+     * Returns the statistics of configuration reloads made by this reader. 
+     * 
+     * @return the {@link ReloadStatistics} of this reader.
+     */
+    public ReloadStatistics getReloadStatistics()
     {
-        try
+        return reloadStatistics;
+    }
+
+    /**
+     * Records the reload which has parsed the configuration and published it. 
+     * The reload is counted in the {@link #getReloadStatistics() statistics} 
+     * and recorded as a flight recorder event with the changes of the snapshot. 
+     * 
+     * @param durationNanos the duration of the reload in nanoseconds.
+     */
+    protected void reloaded(final long durationNanos)
+    {
+        reloadStatistics.reloaded(durationNanos);
+        final int[] change = lastChange;
+        lastChange = null;
+        final FlightRecorderEvents events = FlightRecorderEvents.getInstance();
+        if (change != null && events.isReloadEnabled())
         {
-            final String intervalString = getConfig().getProperty(CONFIG_REREAD_INTERVAL);
-            final int interval = Integer.parseInt(intervalString) * 1000;
+            events.reloaded(this, durationNanos, change[0], change[1], change[2], change[3]);
+        }
+    }
+
+    /**
+     * Reads the configuration again right away, even if its size and 
+     * modification time are unchanged. The readers which compare the content 
+     * still skip the configuration whose content has not changed. 
+     */
+    public void reload()
+    {
+        readChangedDescriptors();
+    }
 
-            timer.scheduleAtFixedRate(new RereadPropertiesTimer(), interval, interval);
+    /**
+     * Stops the periodic rereads, the watching of the file and the handling of 
+     * the feature expirations. The descriptors read stay available. 
+     */
+    public synchronized void close()
+    {
+        stopReloads();
+        cancelExpirations();
+    }
+
+    private void stopReloads()
+    {
+        if (rereadTask != null)
+        {
+            rereadTask.cancel(false);
+            rereadTask = null;
+        }
+        if (watch != null)
+        {
+            try
+            {
+                watch.close();
+            }
+            catch (final IOException ex)
+            {
+                Logger.getLogger(RefreshablePropertyReader.class.getName()).log(Level.FINE, null, ex);
+            }
+            watch = null;
+        }
+    }
+
+    /**
+     * Returns the file whose changes should be read as soon as they happen. 
+     * 
+     * @return the configuration file or {@code null} if there is no file to watch.
+     */
+    protected File getWatchedFile()
+    {
+        return null;
+    }
+
+    /**
+     * Reads the descriptors after the {@link #getWatchedFile() watched file} 
+     * has changed. The readers which skip the unchanged files by their size and 
+     * modification time should not skip this read, as the file could be changed 
+     * twice within the resolution of the modification time. 
+     */
+    protected void readChangedDescriptors()
+    {
+        loadDescriptors();
+    }
+
+    /**
+     * Returns if the reader is configured to read anything. The reader which 
+     * is not configured is neither reread nor watched. 
+     * 
+     * @return {@code true} by default.
+     */
+    protected boolean isConfigured()
+    {
+        return true;
+    }
+
+    private synchronized void applyTimer()
+    {
+        stopReloads();
+        if (!isConfigured())
+        {
+            return;
+        }
+        final boolean watching = applyWatch();
+
+        final String intervalString = getConfig().getProperty(CONFIG_REREAD_INTERVAL);
+        int interval = -1;
+        try
+        {
+            interval = Integer.parseInt(intervalString);
         }
         catch (final NumberFormatException ex)
         {
-            Logger.getLogger(XmlPropertyReader.class.getName()).log(Level.WARNING, 
-                    String.format("The property [%s] in feature service properties is missing or has an invalid format.", CONFIG_REREAD_INTERVAL));
+            if (intervalString != null || !watching)
+            {
+                Logger.getLogger(XmlPropertyReader.class.getName()).log(Level.WARNING, 
+                        String.format("The property [%s] in feature service properties is missing or has an invalid format.", CONFIG_REREAD_INTERVAL));
+            }
+        }
+        if (interval <= 0 && !watching && getWatchedFile() != null)
+        {
+            interval = FALLBACK_REREAD_INTERVAL;
+        }
+        if (interval > 0)
+        {
+            rereadTask = ReloadScheduler.getInstance().scheduleAtFixedRate(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    loadDescriptors();
+                }
+            }, interval * 1000L);
         }
     }
 
-    private class RereadPropertiesTimer extends TimerTask
+    private boolean applyWatch()
     {
+        final File file = getWatchedFile();
+        if (file == null || "false".equalsIgnoreCase(getConfig().getProperty(CONFIG_WATCH)))
+        {
+            return false;
+        }
 
-        public RereadPropertiesTimer()
-        {}
+        long debounce = DEFAULT_WATCH_DEBOUNCE;
+        final String debounceString = getConfig().getProperty(CONFIG_WATCH_DEBOUNCE);
+        if (debounceString != null)
+        {
+            try
+            {
+                debounce = Long.parseLong(debounceString);
+            }
+            catch (final NumberFormatException ex)
+            {
+                Logger.getLogger(RefreshablePropertyReader.class.getName()).log(Level.WARNING, 
+                        String.format("The property [%s] in feature service properties has an invalid format.", CONFIG_WATCH_DEBOUNCE));
+            }
+        }
 
-        @Override
-        public void run()
+        try
+        {
+            watch = ReloadScheduler.getInstance().watch(file, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    readChangedDescriptors();
+                }
+            }, debounce);
+            return true;
+        }
+        catch (final IOException ex)
+        {
+            Logger.getLogger(RefreshablePropertyReader.class.getName()).log(Level.WARNING, 
+                    String.format("Cannot watch the file [%s], it will be reread periodically.", file), ex);
+            return false;
+        }
+        catch (final UnsupportedOperationException ex)
         {
-            readDescriptors();
+            Logger.getLogger(RefreshablePropertyReader.class.getName()).log(Level.WARNING, 
+                    String.format("Cannot watch the file [%s], it will be reread periodically.", file), ex);
+            return false;
         }
     }
 
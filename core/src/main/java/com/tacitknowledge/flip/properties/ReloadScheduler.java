@@ -0,0 +1,288 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The scheduler of the configuration reloads shared by all of the 
+ * {@link RefreshablePropertyReader}s. The periodic rereads of all readers are 
+ * run by one daemon thread, and the changes of the watched files are detected 
+ * by one {@link WatchService} whose daemon thread is started on the first watch. 
+ * The reload on a file change is delayed by the debounce period, and each change 
+ * which comes during that period delays it again, so a file written in several 
+ * steps is reloaded once after the last step. The thread also runs the tasks 
+ * handling the expiration of features. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public final class ReloadScheduler
+{
+    private static final ReloadScheduler instance = new ReloadScheduler();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new DaemonThreadFactory("flip-reload"));
+
+    private final List<Watch> watches = new CopyOnWriteArrayList<Watch>();
+
+    private WatchService watchService;
+
+    /**
+     * Returns the scheduler shared by the property readers.
+     * 
+     * @return the shared instance of {@link ReloadScheduler}.
+     */
+    public static ReloadScheduler getInstance()
+    {
+        return instance;
+    }
+
+    private ReloadScheduler()
+    {
+    }
+
+    /**
+     * Runs the task periodically. The task should not block, as the tasks of 
+     * all readers are run by the same thread. 
+     * 
+     * @param task the task to run.
+     * @param period the period in milliseconds.
+     * @return the future to cancel the task with.
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(final Runnable task, final long period)
+    {
+        return executor.scheduleAtFixedRate(new SafeTask(task), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the task once after the delay. The task should not block, as the 
+     * tasks of all readers are run by the same thread. 
+     * 
+     * @param task the task to run.
+     * @param delay the delay in milliseconds.
+     * @return the future to cancel the task with.
+     */
+    public ScheduledFuture<?> schedule(final Runnable task, final long delay)
+    {
+        return executor.schedule(new SafeTask(task), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the task when the file is created or modified. The task is run by the 
+     * scheduler thread when no change has come for the debounce period. 
+     * 
+     * @param file the file to watch.
+     * @param task the task to run on the file change.
+     * @param debounce the debounce period in milliseconds.
+     * @return the handle to stop watching the file with.
+     * @throws IOException if the file could not be watched, e.g. the file system 
+     * does not support watching.
+     */
+    public Closeable watch(final File file, final Runnable task, final long debounce) throws IOException
+    {
+        final File absoluteFile = file.getAbsoluteFile();
+        final Path directory = absoluteFile.getParentFile().toPath();
+        synchronized (this)
+        {
+            if (watchService == null)
+            {
+                watchService = FileSystems.getDefault().newWatchService();
+                final Thread thread = new DaemonThreadFactory("flip-file-watcher").newThread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        processEvents();
+                    }
+                });
+                thread.start();
+            }
+            final WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            final Watch watch = new Watch(key, absoluteFile.getName(), task, debounce);
+            watches.add(watch);
+            return watch;
+        }
+    }
+
+    private void processEvents()
+    {
+        while (true)
+        {
+            final WatchKey key;
+            try
+            {
+                key = watchService.take();
+            }
+            catch (final InterruptedException ex)
+            {
+                return;
+            }
+            catch (final ClosedWatchServiceException ex)
+            {
+                return;
+            }
+
+            for (final WatchEvent<?> event : key.pollEvents())
+            {
+                final Object context = event.context();
+                for (final Watch watch : watches)
+                {
+                    if (watch.key == key && (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || context != null && watch.fileName.equals(context.toString())))
+                    {
+                        watch.changed();
+                    }
+                }
+            }
+            key.reset();
+        }
+    }
+
+    private synchronized void unwatch(final Watch watch)
+    {
+        watches.remove(watch);
+        for (final Watch other : watches)
+        {
+            if (other.key == watch.key)
+            {
+                return;
+            }
+        }
+        watch.key.cancel();
+    }
+
+    /**
+     * The registration of a file to watch.
+     */
+    class Watch implements Closeable, Runnable
+    {
+        private final WatchKey key;
+
+        private final String fileName;
+
+        private final Runnable task;
+
+        private final long debounce;
+
+        private ScheduledFuture<?> future;
+
+        Watch(final WatchKey key, final String fileName, final Runnable task, final long debounce)
+        {
+            this.key = key;
+            this.fileName = fileName;
+            this.task = task;
+            this.debounce = debounce;
+        }
+
+        /**
+         * Schedules the task after the debounce period, cancelling the run 
+         * scheduled by the previous change if it has not started yet.
+         */
+        synchronized void changed()
+        {
+            if (future != null)
+            {
+                future.cancel(false);
+            }
+            future = executor.schedule(this, debounce, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run()
+        {
+            if (watches.contains(this))
+            {
+                new SafeTask(task).run();
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            unwatch(this);
+            synchronized (this)
+            {
+                if (future != null)
+                {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * The task which does not let the exceptions to cancel the periodic run.
+     */
+    private static class SafeTask implements Runnable
+    {
+        private final Runnable task;
+
+        SafeTask(final Runnable task)
+        {
+            this.task = task;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                task.run();
+            }
+            catch (final RuntimeException ex)
+            {
+                Logger.getLogger(ReloadScheduler.class.getName()).log(Level.WARNING, 
+                        "The scheduled task has failed.", ex);
+            }
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory
+    {
+        private final String name;
+
+        DaemonThreadFactory(final String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable)
+        {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The counters of configuration reloads made by a {@link RefreshablePropertyReader}.
+ * A reload is counted as skipped when the configuration source did not change
+ * since the last read, so it was not parsed again. The counters are thread-safe.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class ReloadStatistics
+{
+    private final AtomicLong reloads = new AtomicLong();
+
+    private final AtomicLong skippedReloads = new AtomicLong();
+
+    private final AtomicLong failedReloads = new AtomicLong();
+
+    private final AtomicLong totalReloadTime = new AtomicLong();
+
+    private volatile long lastReloadTime;
+
+    /**
+     * Records the reload which has parsed the configuration.
+     * 
+     * @param durationNanos the duration of reload in nanoseconds.
+     */
+    public void reloaded(final long durationNanos)
+    {
+        reloads.incrementAndGet();
+        totalReloadTime.addAndGet(durationNanos);
+        lastReloadTime = durationNanos;
+    }
+
+    /**
+     * Records the reload skipped because the configuration was not changed.
+     */
+    public void skipped()
+    {
+        skippedReloads.incrementAndGet();
+    }
+
+    /**
+     * Records the reload which could not read the configuration.
+     */
+    public void failed()
+    {
+        failedReloads.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of reloads which have parsed the configuration.
+     * 
+     * @return the number of reloads.
+     */
+    public long getReloadCount()
+    {
+        return reloads.get();
+    }
+
+    /**
+     * Returns the number of reloads skipped because the configuration was not changed.
+     * 
+     * @return the number of skipped reloads.
+     */
+    public long getSkippedReloadCount()
+    {
+        return skippedReloads.get();
+    }
+
+    /**
+     * Returns the number of reloads which could not read the configuration.
+     * 
+     * @return the number of failed reloads.
+     */
+    public long getFailedReloadCount()
+    {
+        return failedReloads.get();
+    }
+
+    /**
+     * Returns the duration of the last reload which has parsed the configuration.
+     * 
+     * @param unit the time unit of the result.
+     * @return the duration of the last reload.
+     */
+    public long getLastReloadTime(final TimeUnit unit)
+    {
+        return unit.convert(lastReloadTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the total duration of the reloads which have parsed the configuration.
+     * 
+     * @param unit the time unit of the result.
+     * @return the total duration of reloads.
+     */
+    public long getTotalReloadTime(final TimeUnit unit)
+    {
+        return unit.convert(totalReloadTime.get(), TimeUnit.NANOSECONDS);
+    }
+}
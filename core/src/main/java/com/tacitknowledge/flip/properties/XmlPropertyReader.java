@@ -17,8 +17,13 @@ package com.tacitknowledge.flip.properties;
 import com.tacitknowledge.flip.model.FeatureDescriptors;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -26,12 +31,17 @@ import java.util.logging.Logger;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamException;
 
 import com.tacitknowledge.flip.model.FeatureDescriptor;
+import com.tacitknowledge.flip.model.StaxFeatureDescriptorsReader;
 
 /**
  * The class which reads the feature descriptors from XML file. It caches them and 
- * periodically refreshes the cache. <br />
+ * refreshes the cache when the file changes or periodically, see 
+ * {@link RefreshablePropertyReader}. The file is read completely before the new 
+ * descriptors replace the cached ones. The file is not parsed again if its size 
+ * and modification time, or else its content, did not change since the last read. <br />
  * The XML file should be of the following structure:<br />
  * <pre>
  * &lt;features&gt;
@@ -87,6 +97,13 @@ import com.tacitknowledge.flip.model.FeatureDescriptor;
  * with JeXL expression inside. The attribute <code>context</code> allows you to restrict the
  * available context properties inside value expression.
  * </p>
+ * <p>
+ * The file is unmarshalled with JAXB by default. For very large files the 
+ * streaming StAX parser could be chosen by setting the property 
+ * {@link #PARSER_PROPERTY} to {@link #PARSER_STAX}. Both parsers read the same 
+ * descriptors. The file content is streamed to the parser and digested on the 
+ * way, so it is never held in memory as a whole.
+ * </p>
  * 
  * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
  */
@@ -104,8 +121,36 @@ public class XmlPropertyReader extends RefreshablePropertyReader
      */
     public static final String CONFIG_FILE_NAME = "flip.properties.xml";
 
+    /**
+     * The name of property whose value selects the parser of the XML file. 
+     * The property is looked up in the configuration and then in the system properties.
+     */
+    public static final String PARSER_PROPERTY = "flip.properties.xml.parser";
+
+    /**
+     * The value of {@link #PARSER_PROPERTY} which selects the JAXB unmarshaller. It is the default one.
+     */
+    public static final String PARSER_JAXB = "jaxb";
+
+    /**
+     * The value of {@link #PARSER_PROPERTY} which selects the streaming StAX parser.
+     */
+    public static final String PARSER_STAX = "stax";
+
+    private static volatile JAXBContext jaxbContext;
+
+    private static final StaxFeatureDescriptorsReader staxReader = new StaxFeatureDescriptorsReader();
+
     private ClassLoader resourceClassLoader;
 
+    private File lastFile;
+
+    private long lastFileLength = -1;
+
+    private long lastFileModified = -1;
+
+    private byte[] lastDigest;
+
     public XmlPropertyReader(ClassLoader resourceClassLoader) {
         this.resourceClassLoader = resourceClassLoader;
     }
@@ -185,36 +230,271 @@ public class XmlPropertyReader extends RefreshablePropertyReader
         }
     }
 
+    /**
+     * Returns the configuration file the descriptors are read from. The file is 
+     * looked up in the properties passed and then in the system properties 
+     * the same way as {@link #getConfigurationStream(java.util.Properties)} does. 
+     * 
+     * @param props the properties with configuration 
+     * @return the configuration file or {@code null} if the configuration is 
+     * not read from a file.
+     */
+    protected File getConfigurationFile(final Properties props)
+    {
+        File result = getConfigFileFromProperties(props);
+        if (result == null)
+        {
+            result = getConfigFileFromProperties(System.getProperties());
+        }
+        return result;
+    }
+
+    private File getConfigFileFromProperties(final Properties props)
+    {
+        if (props == null)
+        {
+            return null;
+        }
+
+        final String path = props.getProperty(CONFIG_PROPERTY);
+        if (path == null)
+        {
+            return null;
+        }
+
+        final File configFile = new File(path);
+        return configFile.exists() ? configFile : null;
+    }
+
     /**
      * {@inheritDoc }
      */
     @Override
-    protected void readDescriptors()
+    protected File getWatchedFile()
     {
-        try
+        return getConfigurationFile(getConfig());
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    protected synchronized void readChangedDescriptors()
+    {
+        rememberFile(null, -1, -1);
+        readDescriptors();
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    protected synchronized void readDescriptors()
+    {
+        final long start = System.nanoTime();
+        final File file = getConfigurationFile(getConfig());
+        final long fileLength = file == null ? -1 : file.length();
+        final long fileModified = file == null ? -1 : file.lastModified();
+        if (file != null && file.equals(lastFile) && fileLength == lastFileLength
+                && fileModified == lastFileModified)
         {
-            final InputStream in = getConfigurationStream(getConfig());
-            if (in == null) {
-                return;
-            }
-            final JAXBContext context = JAXBContext.newInstance(FeatureDescriptors.class);
-            final Unmarshaller unmarshaller = context.createUnmarshaller();
-            final FeatureDescriptors descriptors = (FeatureDescriptors) unmarshaller
-                    .unmarshal(in);
+            getReloadStatistics().skipped();
+            return;
+        }
 
-            cache.clear();
-            if (descriptors != null && descriptors.getFeatures() != null)
+        InputStream in = getConfigurationStream(getConfig());
+        if (in == null) {
+            return;
+        }
+        try
+        {
+            final MessageDigest messageDigest = createMessageDigest();
+            DigestInputStream digestStream = null;
+            if (messageDigest != null)
             {
-                for (final FeatureDescriptor descriptor : descriptors.getFeatures())
+                final byte[] digest = digestRest(new DigestInputStream(in, messageDigest), messageDigest);
+                rememberFile(file, fileLength, fileModified);
+                if (Arrays.equals(digest, lastDigest))
                 {
-                    cache.put(descriptor.getName(), descriptor);
+                    getReloadStatistics().skipped();
+                    return;
                 }
+
+                closeQuietly(in);
+                in = getConfigurationStream(getConfig());
+                if (in == null)
+                {
+                    return;
+                }
+                digestStream = new DigestInputStream(in, messageDigest);
+                in = digestStream;
             }
+
+            final FeatureDescriptorsMap descriptorsMap = readDescriptors(new UnclosableInputStream(in));
+            final byte[] digest = digestStream == null ? null : digestRest(digestStream, messageDigest);
+            publishSnapshot(descriptorsMap, false);
+            lastDigest = digest;
+
+            final long duration = System.nanoTime() - start;
+            reloaded(duration);
+            Logger.getLogger(XmlPropertyReader.class.getName()).log(Level.FINE, 
+                    String.format("The features configuration was read in %d ms.", duration / 1000000));
         }
         catch (final JAXBException ex)
         {
+            getReloadStatistics().failed();
+            Logger.getLogger(XmlPropertyReader.class.getName()).log(Level.WARNING, null, ex);
+        }
+        catch (final XMLStreamException ex)
+        {
+            getReloadStatistics().failed();
             Logger.getLogger(XmlPropertyReader.class.getName()).log(Level.WARNING, null, ex);
         }
+        catch (final IOException ex)
+        {
+            rememberFile(null, -1, -1);
+            getReloadStatistics().failed();
+            Logger.getLogger(XmlPropertyReader.class.getName()).log(Level.WARNING, null, ex);
+        }
+        finally
+        {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Reads the feature descriptors from the stream with the parser selected 
+     * by {@link #getParser(java.util.Properties)}. 
+     * 
+     * @param in the stream with the XML file content.
+     * @return the map of feature descriptors by feature name.
+     */
+    private FeatureDescriptorsMap readDescriptors(final InputStream in) throws JAXBException, XMLStreamException
+    {
+        final FeatureDescriptorsMap result = new FeatureDescriptorsMap();
+        if (PARSER_STAX.equals(getParser(getConfig())))
+        {
+            staxReader.read(in, result);
+            return result;
+        }
+
+        final Unmarshaller unmarshaller = getJaxbContext().createUnmarshaller();
+        final FeatureDescriptors descriptors = (FeatureDescriptors) unmarshaller.unmarshal(in);
+        if (descriptors != null && descriptors.getFeatures() != null)
+        {
+            for (final FeatureDescriptor descriptor : descriptors.getFeatures())
+            {
+                result.put(descriptor.getName(), descriptor);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the name of the parser to read the XML file with. The parser is 
+     * looked up in the properties passed and then in the system properties. 
+     * 
+     * @param props the properties with configuration 
+     * @return the value of {@link #PARSER_PROPERTY} or {@link #PARSER_JAXB} if it is not set.
+     */
+    protected String getParser(final Properties props)
+    {
+        String result = props == null ? null : props.getProperty(PARSER_PROPERTY);
+        if (result == null)
+        {
+            result = System.getProperty(PARSER_PROPERTY, PARSER_JAXB);
+        }
+        return result.trim().toLowerCase();
+    }
+
+    /**
+     * Returns the JAXB context used to read the configuration. The context is 
+     * expensive to create and is thread-safe, so it is created once and shared 
+     * by all of the readers. 
+     * 
+     * @return the JAXB context for {@link FeatureDescriptors}.
+     * @throws JAXBException if the context could not be created.
+     */
+    static JAXBContext getJaxbContext() throws JAXBException
+    {
+        JAXBContext result = jaxbContext;
+        if (result == null)
+        {
+            synchronized (XmlPropertyReader.class)
+            {
+                result = jaxbContext;
+                if (result == null)
+                {
+                    result = JAXBContext.newInstance(FeatureDescriptors.class);
+                    jaxbContext = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private void rememberFile(final File file, final long length, final long modified)
+    {
+        lastFile = file;
+        lastFileLength = length;
+        lastFileModified = modified;
+    }
+
+    /**
+     * Reads the rest of the digest stream and returns the digest of all of the bytes read from it.
+     */
+    private static byte[] digestRest(final DigestInputStream in, final MessageDigest messageDigest)
+            throws IOException
+    {
+        final byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1)
+        {
+            // the bytes read are digested by the stream
+        }
+        return messageDigest.digest();
+    }
+
+    private static MessageDigest createMessageDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch (final NoSuchAlgorithmException ex)
+        {
+            Logger.getLogger(XmlPropertyReader.class.getName()).log(Level.FINE, null, ex);
+            return null;
+        }
+    }
+
+    private void closeQuietly(final InputStream in)
+    {
+        try
+        {
+            in.close();
+        }
+        catch (final IOException ex)
+        {
+            Logger.getLogger(XmlPropertyReader.class.getName()).log(Level.FINE, null, ex);
+        }
+    }
+
+    /**
+     * The stream which is not closed by the parsers, so the rest of the 
+     * content could be digested after the parse.
+     */
+    private static class UnclosableInputStream extends FilterInputStream
+    {
+        UnclosableInputStream(final InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public void close()
+        {
+            // the stream is closed by the property reader
+        }
     }
 
 }
@@ -0,0 +1,175 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.spi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import com.tacitknowledge.flip.context.FlipContext;
+import com.tacitknowledge.flip.properties.FlipProperty;
+
+/**
+ * The annotation processor which writes the index of classes marked with 
+ * {@link FlipContext} and {@link FlipProperty} at compile time. The index 
+ * is read by {@link ServiceProvider}, so the classes in the indexed packages 
+ * are found without scanning the classpath. The processor is registered as a 
+ * service, so it runs when the flip core library is on the compile classpath. 
+ * The processor claims only the flip annotations, so the index is written only 
+ * for the sources which contain marked classes. The other class path roots have 
+ * no index and are scanned. If the sources are compiled incrementally the 
+ * entries of the index written before are kept while their classes are still 
+ * marked.
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+@SupportedAnnotationTypes({"com.tacitknowledge.flip.context.FlipContext",
+        "com.tacitknowledge.flip.properties.FlipProperty"})
+public class ProviderIndexProcessor extends AbstractProcessor
+{
+    private final Map<String, Integer> contexts = new TreeMap<String, Integer>();
+
+    private final Map<String, Integer> properties = new TreeMap<String, Integer>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv)
+    {
+        if (roundEnv.processingOver())
+        {
+            writeIndex(FlipContext.class, contexts);
+            writeIndex(FlipProperty.class, properties);
+            return false;
+        }
+
+        for (final Element element : roundEnv.getElementsAnnotatedWith(FlipContext.class))
+        {
+            if (element.getKind() == ElementKind.CLASS)
+            {
+                contexts.put(getBinaryName(element), element.getAnnotation(FlipContext.class).priority());
+            }
+        }
+        for (final Element element : roundEnv.getElementsAnnotatedWith(FlipProperty.class))
+        {
+            if (element.getKind() == ElementKind.CLASS)
+            {
+                properties.put(getBinaryName(element), element.getAnnotation(FlipProperty.class).priority());
+            }
+        }
+        return false;
+    }
+
+    private String getBinaryName(final Element element)
+    {
+        return processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString();
+    }
+
+    /**
+     * Writes the index of the classes marked with the annotation. The entries 
+     * of the existing index are merged if their classes are still marked.
+     * 
+     * @param annotationClass the annotation which marks the indexed classes.
+     * @param entries the priorities of the classes found by class name.
+     */
+    private void writeIndex(final Class<? extends Annotation> annotationClass, final Map<String, Integer> entries)
+    {
+        final String location = ServiceProvider.INDEX_LOCATION + annotationClass.getName();
+        mergeExistingIndex(location, annotationClass, entries);
+
+        try
+        {
+            final FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", location);
+            final Writer writer = new OutputStreamWriter(file.openOutputStream(), "UTF-8");
+            try
+            {
+                for (final Map.Entry<String, Integer> entry : entries.entrySet())
+                {
+                    writer.write(entry.getKey() + " " + entry.getValue() + "\n");
+                }
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+        catch (final IOException ex)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    String.format("Cannot write the index [%s]: %s", location, ex.getMessage()));
+        }
+    }
+
+    private void mergeExistingIndex(final String location, final Class<? extends Annotation> annotationClass,
+            final Map<String, Integer> entries)
+    {
+        final Map<String, Integer> existing;
+        try
+        {
+            final FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", location);
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(file.openInputStream(), "UTF-8"));
+            try
+            {
+                existing = ServiceProvider.readIndex(reader);
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch (final IOException ex)
+        {
+            return;
+        }
+        catch (final IllegalArgumentException ex)
+        {
+            return;
+        }
+
+        for (final Map.Entry<String, Integer> entry : existing.entrySet())
+        {
+            if (entries.containsKey(entry.getKey()))
+            {
+                continue;
+            }
+            final TypeElement element = processingEnv.getElementUtils().getTypeElement(entry.getKey().replace('$', '.'));
+            if (element != null && element.getAnnotation(annotationClass) != null)
+            {
+                entries.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
@@ -14,10 +14,31 @@
 */
 package com.tacitknowledge.flip.spi;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.reflections.Reflections;
+import org.reflections.scanners.SubTypesScanner;
+import org.reflections.scanners.TypeAnnotationsScanner;
+import org.reflections.util.ClasspathHelper;
+import org.reflections.util.ConfigurationBuilder;
+import org.reflections.util.FilterBuilder;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicates;
@@ -28,12 +49,35 @@ import com.google.common.collect.Collections2;
  * in specific packages available by current class loader which are marked by an 
  * annotation. Additionally this class is able to instantiate the classes found 
  * using default constructor. 
+ * <p>
+ * The classes are looked up in the index written at compile time by 
+ * {@link ProviderIndexProcessor} first. Only the class path roots (directories 
+ * and jars) which contain the packages but have no index are scanned. The index 
+ * could be ignored by setting the system property {@value #IGNORE_INDEX_PROPERTY} 
+ * to <code>true</code>.
  * 
  * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
  */
 public class ServiceProvider
 {
-    private final Reflections reflections;
+    /**
+     * The location of the index files in the class path. The index of classes 
+     * marked with an annotation is written to the file named as the annotation class.
+     */
+    public static final String INDEX_LOCATION = "META-INF/flip/";
+
+    /**
+     * The system property which disables reading of the index.
+     */
+    public static final String IGNORE_INDEX_PROPERTY = "flip.index.ignore";
+
+    private static final Logger LOG = Logger.getLogger(ServiceProvider.class.getName());
+
+    private final String[] pkgs;
+
+    private Reflections reflections;
+
+    private Set<String> scannedRoots;
 
     /**
      * Constructs new ServiceProvider which is able to find classes in declared 
@@ -51,18 +95,235 @@ public class ServiceProvider
             throw new IllegalArgumentException("The list of packages to find classes should contain at least one item.");
         }
 
-        reflections = new Reflections(pkgs);
+        this.pkgs = pkgs.clone();
     }
 
     /**
-     * Finds classes by the annotation. The annotation should 
+     * Finds classes by the annotation. The classes listed in the index are 
+     * ordered by priority and precede the classes found by scanning. 
      * 
      * @param annotationClass the annotation class which marks the classes to find. 
      * @return the collection of classes found. If no classes found returns an empty collection.
      */
     protected Collection<Class<?>> findClass(final Class<? extends Annotation> annotationClass)
     {
-        return reflections.getTypesAnnotatedWith(annotationClass);
+        final ClassLoader classLoader = getClassLoader();
+        final Set<String> indexedRoots = new HashSet<String>();
+        final List<Map.Entry<String, Integer>> index = Boolean.getBoolean(IGNORE_INDEX_PROPERTY)
+                ? Collections.<Map.Entry<String, Integer>> emptyList()
+                : loadIndex(classLoader, annotationClass, indexedRoots);
+
+        final Set<Class<?>> result = new LinkedHashSet<Class<?>>();
+        for (final Map.Entry<String, Integer> entry : index)
+        {
+            if (isInPackages(entry.getKey()))
+            {
+                final Class<?> type = loadClass(classLoader, entry.getKey());
+                if (type != null && type.isAnnotationPresent(annotationClass))
+                {
+                    result.add(type);
+                }
+            }
+        }
+
+        final Set<URL> roots = new HashSet<URL>();
+        for (final String pkg : pkgs)
+        {
+            for (final URL root : ClasspathHelper.forPackage(pkg, classLoader))
+            {
+                if (!indexedRoots.contains(getRootName(root)))
+                {
+                    roots.add(root);
+                }
+            }
+        }
+        if (!roots.isEmpty())
+        {
+            result.addAll(scan(annotationClass, roots));
+        }
+        return result;
+    }
+
+    /**
+     * Scans the class path roots for the classes of the packages marked by the annotation. 
+     * 
+     * @param annotationClass the annotation class which marks the classes to find. 
+     * @param roots the class path roots to scan.
+     * @return the collection of classes found.
+     */
+    protected Collection<Class<?>> scan(final Class<? extends Annotation> annotationClass, final Set<URL> roots)
+    {
+        final Set<String> rootNames = new HashSet<String>();
+        for (final URL root : roots)
+        {
+            rootNames.add(getRootName(root));
+        }
+
+        if (reflections == null || !rootNames.equals(scannedRoots))
+        {
+            final FilterBuilder filter = new FilterBuilder();
+            for (final String pkg : pkgs)
+            {
+                filter.include(FilterBuilder.prefix(pkg));
+            }
+            reflections = new Reflections(new ConfigurationBuilder()
+                    .setUrls(roots)
+                    .filterInputsBy(filter)
+                    .setScanners(new TypeAnnotationsScanner(), new SubTypesScanner()));
+            scannedRoots = rootNames;
+        }
+
+        final ClassLoader classLoader = getClassLoader();
+        final Set<Class<?>> result = new LinkedHashSet<Class<?>>();
+        for (final String name : reflections.getStore().getTypesAnnotatedWith(annotationClass.getName()))
+        {
+            final Class<?> type = loadClass(classLoader, name);
+            if (type != null)
+            {
+                result.add(type);
+            }
+        }
+        return result;
+    }
+
+    private boolean isInPackages(final String className)
+    {
+        for (final String pkg : pkgs)
+        {
+            if (className.startsWith(pkg + "."))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the entries of the index file. Each line of the file contains the 
+     * class name and its priority separated by a space. The empty lines and the 
+     * lines starting with <code>#</code> are skipped.
+     * 
+     * @param reader the reader of the index file.
+     * @return the priorities by class name.
+     * @throws IOException if the file could not be read.
+     */
+    static Map<String, Integer> readIndex(final BufferedReader reader) throws IOException
+    {
+        final Map<String, Integer> entries = new HashMap<String, Integer>();
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            line = line.trim();
+            if (line.length() == 0 || line.startsWith("#"))
+            {
+                continue;
+            }
+            final int separator = line.indexOf(' ');
+            if (separator < 0)
+            {
+                entries.put(line, 0);
+            }
+            else
+            {
+                try
+                {
+                    entries.put(line.substring(0, separator), Integer.valueOf(line.substring(separator + 1).trim()));
+                }
+                catch (final NumberFormatException ex)
+                {
+                    entries.put(line.substring(0, separator), 0);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private List<Map.Entry<String, Integer>> loadIndex(final ClassLoader classLoader,
+            final Class<? extends Annotation> annotationClass, final Set<String> indexedRoots)
+    {
+        final String location = INDEX_LOCATION + annotationClass.getName();
+        final Map<String, Integer> entries = new HashMap<String, Integer>();
+        try
+        {
+            final Enumeration<URL> urls = classLoader.getResources(location);
+            while (urls.hasMoreElements())
+            {
+                final URL url = urls.nextElement();
+                final String name = url.toExternalForm();
+                indexedRoots.add(getRootName(name.substring(0, name.length() - location.length())));
+                final BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
+                try
+                {
+                    entries.putAll(readIndex(reader));
+                }
+                finally
+                {
+                    reader.close();
+                }
+            }
+        }
+        catch (final IOException ex)
+        {
+            LOG.log(Level.WARNING, "Cannot read the index of classes marked with " + annotationClass.getName(), ex);
+        }
+
+        final List<Map.Entry<String, Integer>> result = new ArrayList<Map.Entry<String, Integer>>(entries.entrySet());
+        Collections.sort(result, new Comparator<Map.Entry<String, Integer>>()
+        {
+            @Override
+            public int compare(final Map.Entry<String, Integer> o1, final Map.Entry<String, Integer> o2)
+            {
+                final int priority = o2.getValue().compareTo(o1.getValue());
+                return priority != 0 ? priority : o1.getKey().compareTo(o2.getKey());
+            }
+        });
+        return result;
+    }
+
+    private Class<?> loadClass(final ClassLoader classLoader, final String name)
+    {
+        try
+        {
+            return Class.forName(name, true, classLoader);
+        }
+        catch (final ClassNotFoundException ex)
+        {
+            LOG.warning(String.format("The class %s is not found.", name));
+        }
+        catch (final LinkageError ex)
+        {
+            LOG.log(Level.WARNING, String.format("The class %s cannot be loaded.", name), ex);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of class path root used to compare the roots. The jar 
+     * roots are named as the jar files. 
+     */
+    private static String getRootName(final URL root)
+    {
+        return getRootName(root.toExternalForm());
+    }
+
+    private static String getRootName(String root)
+    {
+        if (root.startsWith("jar:"))
+        {
+            root = root.substring("jar:".length());
+            final int separator = root.indexOf("!/");
+            if (separator >= 0)
+            {
+                root = root.substring(0, separator);
+            }
+        }
+        return root.endsWith("/") ? root.substring(0, root.length() - 1) : root;
+    }
+
+    private ClassLoader getClassLoader()
+    {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : ServiceProvider.class.getClassLoader();
     }
 
     /**
@@ -0,0 +1,135 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FeatureDiagnosticsTest {
+    
+    private final List<LogRecord> records = new ArrayList<LogRecord>();
+    private final Handler handler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    
+    @Before
+    public void setUp() {
+        Logger.getLogger(FeatureServiceImpl.class.getName()).addHandler(handler);
+    }
+    
+    @After
+    public void tearDown() {
+        Logger.getLogger(FeatureServiceImpl.class.getName()).removeHandler(handler);
+    }
+    
+    @Test
+    public void testProblemsAreLoggedOncePerInterval() {
+        FeatureDiagnostics diagnostics = new FeatureDiagnostics(60000);
+        
+        diagnostics.missing("a");
+        diagnostics.missing("a");
+        diagnostics.failed("a", new IllegalStateException());
+        diagnostics.missing("b");
+        
+        assertEquals(2, records.size());
+        assertEquals(2, diagnostics.getMissingCount("a"));
+        assertEquals(1, diagnostics.getFailureCount("a"));
+        assertEquals(1, diagnostics.getMissingCount("b"));
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(diagnostics.getFeatureNames()));
+    }
+    
+    @Test
+    public void testSuppressedProblemsAreReported() throws InterruptedException {
+        FeatureDiagnostics diagnostics = new FeatureDiagnostics(50);
+        
+        diagnostics.missing("a");
+        diagnostics.missing("a");
+        diagnostics.missing("a");
+        Thread.sleep(100);
+        diagnostics.missing("a");
+        
+        assertEquals(2, records.size());
+        assertTrue(records.get(1).getMessage().contains(" 2 more times"));
+    }
+    
+    @Test
+    public void testNumberOfCountedFeaturesIsBounded() {
+        FeatureDiagnostics diagnostics = new FeatureDiagnostics(60000, 2);
+        
+        diagnostics.missing("a");
+        diagnostics.missing("b");
+        diagnostics.missing("c");
+        diagnostics.failed("d", new IllegalStateException());
+        
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(diagnostics.getFeatureNames()));
+        assertEquals(0, diagnostics.getMissingCount("c"));
+        assertEquals(2, diagnostics.getOverflowCount());
+        assertEquals(3, records.size());
+    }
+    
+    @Test
+    public void testUntrackedFeaturesAreNotNamed() {
+        FeatureDiagnostics diagnostics = new FeatureDiagnostics(60000, 1);
+        
+        diagnostics.missing("a");
+        diagnostics.missing("b");
+        diagnostics.failed("c", new IllegalStateException());
+        diagnostics.missing("d");
+        
+        assertEquals(2, records.size());
+        String message = records.get(1).getMessage();
+        assertTrue(message.contains("not tracked"));
+        assertFalse(message.contains("[b]"));
+        assertNull(records.get(1).getThrown());
+        assertEquals(3, diagnostics.getOverflowCount());
+    }
+    
+    @Test
+    public void testClear() {
+        FeatureDiagnostics diagnostics = new FeatureDiagnostics(0);
+        diagnostics.failed("a", new IllegalStateException());
+        
+        diagnostics.clear();
+        
+        assertEquals(0, diagnostics.getFailureCount("a"));
+        assertTrue(diagnostics.getFeatureNames().isEmpty());
+    }
+}
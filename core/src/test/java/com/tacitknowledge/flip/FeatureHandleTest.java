@@ -0,0 +1,108 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip;
+
+import com.tacitknowledge.flip.fixtures.SnapshotPropertyReader;
+import static com.tacitknowledge.flip.fixtures.SnapshotPropertyReader.feature;
+import com.tacitknowledge.flip.fixtures.TestContextProvider;
+import com.tacitknowledge.flip.model.FeatureState;
+import com.tacitknowledge.flip.properties.PropertyReader;
+import java.util.Collections;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FeatureHandleTest {
+    
+    private FeatureService featureService;
+    private SnapshotPropertyReader propertyReader;
+    
+    @Before
+    public void setUp() {
+        Environment environment = new Environment();
+        
+        propertyReader = new SnapshotPropertyReader();
+        environment.setPropertyReaders(Collections.<PropertyReader>singletonList(propertyReader));
+        environment.setContextProviders(Collections.<Object>singletonList(new TestContextProvider()));
+        
+        featureService = new FeatureServiceImpl(environment);
+    }
+    
+    @Test
+    public void testHandleIsBoundToDescriptors() {
+        propertyReader.publish(feature("a", FeatureState.ENABLED), feature("a.b", FeatureState.ENABLED));
+        FeatureHandle handle = featureService.handle("a.b");
+        
+        assertEquals("a.b", handle.getName());
+        assertTrue(handle.isEnabled());
+        assertTrue(handle.isEnabled());
+        assertTrue(handle.isEnabled());
+        assertEquals(2, propertyReader.getLookups());
+    }
+    
+    @Test
+    public void testHandleIsReboundOnReload() {
+        propertyReader.publish(feature("a", FeatureState.ENABLED), feature("a.b", FeatureState.ENABLED));
+        FeatureHandle handle = featureService.handle("a.b");
+        assertTrue(handle.isEnabled());
+        
+        propertyReader.publish(feature("a", FeatureState.DISABLED), feature("a.b", FeatureState.ENABLED));
+        
+        assertFalse(handle.isEnabled());
+        assertEquals(FeatureState.DISABLED, handle.getFeatureState());
+        assertEquals(4, propertyReader.getLookups());
+    }
+    
+    @Test
+    public void testHandleIsNotReboundWhenOtherFeaturesChange() {
+        propertyReader.publish(feature("a", FeatureState.ENABLED), feature("a.b", FeatureState.ENABLED),
+                feature("c", FeatureState.ENABLED));
+        FeatureHandle handle = featureService.handle("a.b");
+        assertTrue(handle.isEnabled());
+        
+        propertyReader.publish(feature("a", FeatureState.ENABLED), feature("a.b", FeatureState.ENABLED),
+                feature("c", FeatureState.DISABLED));
+        
+        assertTrue(handle.isEnabled());
+        assertEquals(2, propertyReader.getLookups());
+    }
+    
+    @Test
+    public void testHandleOfMissingFeature() {
+        propertyReader.publish(feature("a", FeatureState.ENABLED));
+        FeatureHandle handle = featureService.handle("a.b");
+        
+        assertEquals(FeatureState.DISABLED, handle.getFeatureState());
+        
+        propertyReader.publish(feature("a", FeatureState.ENABLED), feature("a.b", FeatureState.ENABLED));
+        
+        assertEquals(FeatureState.ENABLED, handle.getFeatureState());
+    }
+    
+    @Test
+    public void testHandleAgreesWithService() {
+        propertyReader.publish(feature("a", FeatureState.ENABLED), feature("a.b", FeatureState.DISABLED));
+        
+        assertEquals(featureService.getFeatureState("a"), featureService.handle("a").getFeatureState());
+        assertEquals(featureService.getFeatureState("a.b"), featureService.handle("a.b").getFeatureState());
+        assertEquals(featureService.getFeatureState("c"), featureService.handle("c").getFeatureState());
+    }
+}
@@ -0,0 +1,54 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FeatureHierarchyTest {
+    
+    @Test
+    public void testTopLevelFeature() {
+        assertArrayEquals(new String[] {"test"}, FeatureHierarchy.buildPath("test"));
+    }
+    
+    @Test
+    public void testNestedFeature() {
+        assertArrayEquals(new String[] {"checkout", "checkout.payment", "checkout.payment.wallet"}, 
+                FeatureHierarchy.buildPath("checkout.payment.wallet"));
+    }
+    
+    @Test
+    public void testPathIsReused() {
+        FeatureHierarchy hierarchy = new FeatureHierarchy();
+        
+        assertSame(hierarchy.getPath("a.b"), hierarchy.getPath("a.b"));
+    }
+    
+    @Test
+    public void testPathIsNotHeldWhenFull() {
+        FeatureHierarchy hierarchy = new FeatureHierarchy(1);
+        hierarchy.getPath("a");
+        
+        assertNotSame(hierarchy.getPath("a.b"), hierarchy.getPath("a.b"));
+        assertArrayEquals(new String[] {"a", "a.b"}, hierarchy.getPath("a.b"));
+    }
+}
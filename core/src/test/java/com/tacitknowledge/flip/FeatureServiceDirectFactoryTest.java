@@ -14,9 +14,11 @@
 */
 package com.tacitknowledge.flip;
 
+import com.tacitknowledge.flip.metrics.FeatureMetrics;
 import com.tacitknowledge.flip.properties.PropertyReader;
 import java.util.Properties;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 import static org.mockito.Mockito.*;
@@ -56,4 +58,15 @@ public class FeatureServiceDirectFactoryTest {
         
         verify(propertyReader).initialize(eq(properties));
     }
+    
+    @Test
+    public void testMetricsSinkIsCreatedFromProperty() {
+        Properties properties = new Properties();
+        properties.setProperty(AbstractFeatureServiceFactory.CONFIG_METRICS_SINK, FeatureMetrics.class.getName());
+        factory.setProperties(properties);
+        
+        FeatureServiceImpl featureService = (FeatureServiceImpl) factory.createFeatureService();
+        
+        assertTrue(featureService.getMetricsSink() instanceof FeatureMetrics);
+    }
 }
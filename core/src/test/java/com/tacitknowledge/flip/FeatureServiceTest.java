@@ -16,10 +16,13 @@ package com.tacitknowledge.flip;
 
 import com.tacitknowledge.flip.exceptions.UnknownContextPropertyException;
 import com.tacitknowledge.flip.fixtures.TestContextProvider;
+import com.tacitknowledge.flip.metrics.FeatureMetrics;
+import com.tacitknowledge.flip.metrics.FeatureStatistics;
 import com.tacitknowledge.flip.model.FeatureDescriptor;
 import com.tacitknowledge.flip.model.FeatureState;
 import com.tacitknowledge.flip.properties.PropertyReader;
 import com.tacitknowledge.flip.context.ContextManager;
+import java.util.Arrays;
 import java.util.Collections;
 import static org.junit.Assert.assertEquals;
 import org.junit.Before;
@@ -130,4 +133,90 @@ public class FeatureServiceTest {
         assertEquals(FeatureState.DISABLED, featureService.getFeatureState("test.item"));
     }
 
+    @Test
+    public void testChildIsNotEvaluatedWhenParentIsDisabled() {
+        FeatureDescriptor item = mock(FeatureDescriptor.class);
+        when(item.process(any(ContextManager.class))).thenReturn(FeatureState.ENABLED);
+        when(propertyReader.getFeatureDescriptor(eq("test.item"))).thenReturn(item);
+
+        FeatureDescriptor parent = mock(FeatureDescriptor.class);
+        when(parent.process(any(ContextManager.class))).thenReturn(FeatureState.DISABLED);
+        when(propertyReader.getFeatureDescriptor(eq("test"))).thenReturn(parent);
+        
+        assertEquals(FeatureState.DISABLED, featureService.getFeatureState("test.item"));
+        
+        verify(propertyReader, never()).getFeatureDescriptor(eq("test.item"));
+        verify(item, never()).process(any(ContextManager.class));
+    }
+    
+    @Test
+    public void testDeepHierarchyEvaluatesEachAncestorOnce() {
+        FeatureDescriptor enabled = mock(FeatureDescriptor.class);
+        when(enabled.process(any(ContextManager.class))).thenReturn(FeatureState.ENABLED);
+        when(propertyReader.getFeatureDescriptor(anyString())).thenReturn(enabled);
+        
+        assertEquals(FeatureState.ENABLED, featureService.getFeatureState("a.b.c.d"));
+        
+        verify(propertyReader).getFeatureDescriptor(eq("a"));
+        verify(propertyReader).getFeatureDescriptor(eq("a.b"));
+        verify(propertyReader).getFeatureDescriptor(eq("a.b.c"));
+        verify(propertyReader).getFeatureDescriptor(eq("a.b.c.d"));
+        verify(enabled, times(4)).process(any(ContextManager.class));
+    }
+    
+    @Test
+    public void testHandleOfDynamicReaderLooksUpEachTime() {
+        FeatureDescriptor featureDescriptor = mock(FeatureDescriptor.class);
+        when(featureDescriptor.process(any(ContextManager.class))).thenReturn(FeatureState.ENABLED);
+        when(propertyReader.getFeatureDescriptor(eq("test"))).thenReturn(featureDescriptor);
+        
+        FeatureHandle handle = featureService.handle("test");
+        assertEquals(FeatureState.ENABLED, handle.getFeatureState());
+        
+        when(featureDescriptor.process(any(ContextManager.class))).thenReturn(FeatureState.DISABLED);
+        assertEquals(FeatureState.DISABLED, handle.getFeatureState());
+        
+        verify(propertyReader, times(2)).getFeatureDescriptor(eq("test"));
+    }
+    
+    @Test
+    public void testMissingAndFailedFeaturesAreCounted() {
+        FeatureDescriptor featureDescriptor = mock(FeatureDescriptor.class);
+        when(featureDescriptor.process(any(ContextManager.class))).thenThrow(new UnknownContextPropertyException());
+        when(propertyReader.getFeatureDescriptor(eq("test"))).thenReturn(featureDescriptor);
+        
+        assertEquals(FeatureState.DISABLED, featureService.getFeatureState("missing"));
+        assertEquals(FeatureState.DISABLED, featureService.getFeatureState("missing"));
+        assertEquals(FeatureState.DISABLED, featureService.getFeatureState("test"));
+        
+        FeatureDiagnostics diagnostics = ((FeatureServiceImpl) featureService).getDiagnostics();
+        assertEquals(2, diagnostics.getMissingCount("missing"));
+        assertEquals(0, diagnostics.getFailureCount("missing"));
+        assertEquals(1, diagnostics.getFailureCount("test"));
+        assertEquals(0, diagnostics.getMissingCount("test"));
+    }
+
+    @Test
+    public void testEvaluationsAreReportedToMetricsSink() {
+        FeatureMetrics metrics = new FeatureMetrics();
+        Environment environment = new Environment();
+        environment.setPropertyReaders(Collections.singletonList(propertyReader));
+        environment.setMetricsSink(metrics);
+        featureService = new FeatureServiceImpl(environment);
+        FeatureDescriptor featureDescriptor = mock(FeatureDescriptor.class);
+        when(featureDescriptor.process(any(ContextManager.class))).thenReturn(FeatureState.ENABLED);
+        when(propertyReader.getFeatureDescriptor(eq("test"))).thenReturn(featureDescriptor);
+        
+        featureService.getFeatureState("test");
+        featureService.handle("test").isEnabled();
+        featureService.getFeatureStates(Arrays.asList("test", "missing"));
+        
+        FeatureStatistics test = metrics.getStatistics("test");
+        assertEquals(3, test.getEnabledCount());
+        assertEquals(0, test.getFailureCount());
+        FeatureStatistics missing = metrics.getStatistics("missing");
+        assertEquals(1, missing.getDisabledCount());
+        assertEquals(1, missing.getFailureCount());
+    }
+
 }
@@ -0,0 +1,144 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip;
+
+import com.tacitknowledge.flip.fixtures.SnapshotPropertyReader;
+import static com.tacitknowledge.flip.fixtures.SnapshotPropertyReader.feature;
+import com.tacitknowledge.flip.fixtures.TestContextProvider;
+import com.tacitknowledge.flip.model.FeatureState;
+import com.tacitknowledge.flip.properties.PropertyReader;
+import java.util.Arrays;
+import java.util.Collections;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FeatureStatesTest {
+    
+    private FeatureService featureService;
+    private SnapshotPropertyReader propertyReader;
+    
+    @Before
+    public void setUp() {
+        Environment environment = new Environment();
+        
+        propertyReader = new SnapshotPropertyReader();
+        environment.setPropertyReaders(Collections.<PropertyReader>singletonList(propertyReader));
+        environment.setContextProviders(Collections.<Object>singletonList(new TestContextProvider()));
+        
+        featureService = new FeatureServiceImpl(environment);
+        
+        propertyReader.publish(
+                feature("a", FeatureState.ENABLED), 
+                feature("a.b", FeatureState.ENABLED), 
+                feature("a.c", FeatureState.DISABLED), 
+                feature("d", FeatureState.DISABLED), 
+                feature("d.e", FeatureState.ENABLED));
+    }
+    
+    @Test
+    public void testGetFeatureStates() {
+        FeatureStates states = featureService.getFeatureStates(Arrays.asList("a.b", "a.c", "d.e", "missing"));
+        
+        assertEquals(4, states.size());
+        assertEquals(Arrays.asList("a.b", "a.c", "d.e", "missing"), states.getNames());
+        assertEquals(FeatureState.ENABLED, states.getFeatureState("a.b"));
+        assertEquals(FeatureState.DISABLED, states.getFeatureState("a.c"));
+        assertEquals(FeatureState.DISABLED, states.getFeatureState("d.e"));
+        assertEquals(FeatureState.DISABLED, states.getFeatureState("missing"));
+        assertTrue(states.isEnabled(0));
+        assertFalse(states.isEnabled(1));
+        assertEquals(Arrays.asList("a.b"), states.getEnabledNames());
+    }
+    
+    @Test
+    public void testAncestorsAreEvaluatedOnce() {
+        featureService.getFeatureStates(Arrays.asList("a", "a.b", "a.c", "d.e"));
+        
+        assertEquals(4, propertyReader.getLookups());
+    }
+    
+    @Test
+    public void testAgreesWithSingleEvaluation() {
+        FeatureStates states = featureService.getAllFeatureStates();
+        
+        for (String name : states.getNames()) {
+            assertEquals(featureService.getFeatureState(name), states.getFeatureState(name));
+        }
+    }
+    
+    @Test
+    public void testGetAllFeatureStates() {
+        FeatureStates states = featureService.getAllFeatureStates();
+        
+        assertEquals(Arrays.asList("a", "a.b", "a.c", "d", "d.e"), states.getNames());
+        assertEquals(Arrays.asList("a", "a.b"), states.getEnabledNames());
+    }
+    
+    @Test
+    public void testGetFeatureStatesByPrefix() {
+        FeatureStates states = featureService.getFeatureStatesByPrefix("a.");
+        
+        assertEquals(Arrays.asList("a.b", "a.c"), states.getNames());
+        assertEquals(-1, states.indexOf("a"));
+        assertNull(states.getFeatureState("a"));
+        assertFalse(states.isEnabled("a"));
+    }
+    
+    @Test
+    public void testDuplicateNamesAreEvaluatedOnce() {
+        FeatureStates states = featureService.getFeatureStates(Arrays.asList("a", "a"));
+        
+        assertEquals(1, states.size());
+    }
+    
+    @Test
+    public void testIndexOfManyCollidingNames() {
+        String[] names = new String[1000];
+        FeatureState[] states = new FeatureState[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = (i % 2 == 0 ? "Aa" : "BB") + i / 2;
+            states[i] = i % 3 == 0 ? FeatureState.ENABLED : FeatureState.DISABLED;
+        }
+        FeatureStates result = new FeatureStates(names, states);
+        
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(i, result.indexOf(names[i]));
+            assertEquals(states[i], result.getFeatureState(names[i]));
+        }
+        assertEquals(-1, result.indexOf("Aa1000"));
+        assertEquals(-1, result.indexOf(null));
+    }
+    
+    @Test
+    public void testIndexOfInEmptyResult() {
+        assertEquals(-1, new FeatureStates(new String[0], new FeatureState[0]).indexOf("a"));
+    }
+    
+    @Test
+    public void testEnabledBitsAreCopied() {
+        FeatureStates states = featureService.getFeatureStates(Arrays.asList("a"));
+        states.getEnabledBits().clear();
+        
+        assertTrue(states.isEnabled(0));
+    }
+}
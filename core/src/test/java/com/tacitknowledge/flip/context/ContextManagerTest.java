@@ -21,7 +21,12 @@ import com.tacitknowledge.flip.exceptions.UnknownContextException;
 import com.tacitknowledge.flip.exceptions.UnknownContextPropertyException;
 import com.tacitknowledge.flip.fixtures.TestContextProvider;
 import com.tacitknowledge.flip.otherfixtures.Test1ContextProvider;
+import java.util.Collections;
+import java.util.Map;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -100,4 +105,42 @@ public class ContextManagerTest {
         contextManager.getContext(ContextMap.GLOBAL).get("secondValue1");
     }
     
+    @Test
+    public void testContainsKey() {
+        environment.getContextProviders().add(new Test1ContextProvider());
+        contextManager = new ContextManager(environment);
+        Map<String, Object> context = contextManager.getContext(ContextMap.GLOBAL);
+        
+        assertTrue(context.containsKey("hello"));
+        assertTrue(context.containsKey("secondValue"));
+        assertTrue(context.containsKey("key"));
+        assertFalse(context.containsKey("secondValue1"));
+    }
+    
+    @Test
+    public void testContextViewIsReused() {
+        assertSame(contextManager.getContext(ContextMap.GLOBAL), contextManager.getContext(ContextMap.GLOBAL));
+        assertSame(contextManager.getContext("test"), contextManager.getContext("test"));
+    }
+    
+    @Test
+    public void testAnonymousPropertyOfPrecedingContextHasPriority() {
+        environment.getContextProviders().clear();
+        environment.getContextProviders().add(new AnonymousContextProvider());
+        environment.getContextProviders().add(new Test1ContextProvider());
+        contextManager = new ContextManager(environment);
+        
+        assertEquals("anonymous-value", contextManager.getContext(ContextMap.GLOBAL).get("secondValue"));
+        assertEquals("anotherValue", contextManager.getContext(ContextMap.GLOBAL).get("value"));
+    }
+    
+    @FlipContext(name = "anonymous")
+    public static class AnonymousContextProvider {
+        
+        @FlipContextProperty
+        public Map<String, Object> getValues() {
+            return Collections.singletonMap("secondValue", (Object) "anonymous-value");
+        }
+    }
+    
 }
@@ -0,0 +1,93 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.context;
+
+import com.tacitknowledge.flip.fixtures.TestContextProvider;
+import java.util.Collections;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class ContextPropertyAccessorsTest {
+    
+    @Test
+    public void testGeneratedAccessor() throws Exception {
+        ContextPropertyAccessor accessor = ContextPropertyAccessors.create(TestContextProvider.class.getMethod("hello"));
+        
+        assertEquals("world", accessor.getValue(new TestContextProvider()));
+        assertFalse(accessor.getClass().getName().contains("Reflective"));
+    }
+    
+    @Test
+    public void testGeneratedAccessorBoxesPrimitives() throws Exception {
+        ContextPropertyAccessor accessor = ContextPropertyAccessors.create(TestContextProvider.class.getMethod("isBooleanValue"));
+        
+        assertEquals(Boolean.FALSE, accessor.getValue(new TestContextProvider()));
+    }
+    
+    @Test
+    public void testAccessorOfNonPublicClass() throws Exception {
+        ContextPropertyAccessor accessor = ContextPropertyAccessors.create(HiddenContextProvider.class.getMethod("getValue"));
+        
+        assertEquals("hidden", accessor.getValue(new HiddenContextProvider()));
+    }
+    
+    @Test
+    public void testAccessorOfAnonymousClass() throws Exception {
+        Object provider = new Object() {
+            public Map<String, Object> getValues() {
+                return Collections.singletonMap("key", (Object) "value");
+            }
+        };
+        ContextPropertyAccessor accessor = ContextPropertyAccessors.create(provider.getClass().getMethod("getValues"));
+        
+        assertEquals(Collections.singletonMap("key", "value"), accessor.getValue(provider));
+    }
+    
+    @Test
+    public void testReflectiveAccessor() throws Exception {
+        ContextPropertyAccessor accessor = ContextPropertyAccessors.reflective(TestContextProvider.class.getMethod("isObjectValueNonBoolean"));
+        
+        assertNull(accessor.getValue(new TestContextProvider()));
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void testGeneratedAccessorPropagatesException() throws Exception {
+        ContextPropertyAccessors.create(FailingContextProvider.class.getMethod("getValue")).getValue(new FailingContextProvider());
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void testReflectiveAccessorUnwrapsException() throws Exception {
+        ContextPropertyAccessors.reflective(FailingContextProvider.class.getMethod("getValue")).getValue(new FailingContextProvider());
+    }
+    
+    static class HiddenContextProvider {
+        public String getValue() {
+            return "hidden";
+        }
+    }
+    
+    public static class FailingContextProvider {
+        public String getValue() {
+            throw new IllegalStateException();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.context;
+
+import com.tacitknowledge.flip.Environment;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class EvaluationScopeTest {
+    
+    private CountingContextProvider contextProvider;
+    private Map<String, Object> context;
+    
+    @Before
+    public void setUp() {
+        contextProvider = new CountingContextProvider();
+        Environment environment = new Environment();
+        environment.getContextProviders().add(contextProvider);
+        context = new ContextManager(environment).getContext(ContextMap.GLOBAL);
+    }
+    
+    @After
+    public void tearDown() {
+        while (EvaluationScope.current() != null) {
+            EvaluationScope.current().close();
+        }
+    }
+    
+    @Test
+    public void testValueIsReadOnceInScope() {
+        EvaluationScope scope = EvaluationScope.open();
+        try {
+            assertEquals("gold", context.get("segment"));
+            assertEquals("gold", context.get("segment"));
+            assertEquals(1, contextProvider.calls);
+            assertEquals(1, scope.size());
+        } finally {
+            scope.close();
+        }
+    }
+    
+    @Test
+    public void testValueIsReadEachTimeWithoutScope() {
+        context.get("segment");
+        context.get("segment");
+        
+        assertEquals(2, contextProvider.calls);
+    }
+    
+    @Test
+    public void testValuesAreDiscardedOnClose() {
+        EvaluationScope scope = EvaluationScope.open();
+        context.get("segment");
+        scope.close();
+        
+        assertNull(EvaluationScope.current());
+        
+        scope = EvaluationScope.open();
+        context.get("segment");
+        scope.close();
+        
+        assertEquals(2, contextProvider.calls);
+    }
+    
+    @Test
+    public void testNestedScopeSharesValues() {
+        EvaluationScope outer = EvaluationScope.open();
+        EvaluationScope inner = EvaluationScope.open();
+        
+        assertSame(outer, inner);
+        context.get("segment");
+        inner.close();
+        
+        assertSame(outer, EvaluationScope.current());
+        context.get("segment");
+        outer.close();
+        
+        assertEquals(1, contextProvider.calls);
+        assertNull(EvaluationScope.current());
+    }
+    
+    @FlipContext(name = "counting")
+    public static class CountingContextProvider {
+        
+        private int calls;
+        
+        public String getSegment() {
+            calls++;
+            return "gold";
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.fixtures;
+
+import com.tacitknowledge.flip.model.FeatureDescriptor;
+import com.tacitknowledge.flip.model.FeatureState;
+import com.tacitknowledge.flip.properties.CacheablePropertyReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The cacheable property reader whose snapshots are published by the tests. 
+ * It counts the descriptor lookups.
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class SnapshotPropertyReader extends CacheablePropertyReader {
+    
+    private int lookups;
+    
+    @Override
+    public FeatureDescriptor getFeatureDescriptor(String name) {
+        lookups++;
+        return super.getFeatureDescriptor(name);
+    }
+    
+    @Override
+    protected void readDescriptors() {
+    }
+    
+    public int getLookups() {
+        return lookups;
+    }
+    
+    public void publish(FeatureDescriptor... descriptors) {
+        Map<String, FeatureDescriptor> map = new HashMap<String, FeatureDescriptor>();
+        for (FeatureDescriptor descriptor : descriptors) {
+            map.put(descriptor.getName(), descriptor);
+        }
+        publishSnapshot(map);
+    }
+    
+    public static FeatureDescriptor feature(String name, FeatureState state) {
+        FeatureDescriptor descriptor = new FeatureDescriptor();
+        descriptor.setName(name);
+        descriptor.setState(state);
+        return descriptor;
+    }
+}
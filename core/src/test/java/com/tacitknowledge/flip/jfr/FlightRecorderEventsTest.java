@@ -0,0 +1,153 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.jfr;
+
+import com.tacitknowledge.flip.Environment;
+import com.tacitknowledge.flip.FeatureServiceImpl;
+import com.tacitknowledge.flip.fixtures.TestContextProvider;
+import com.tacitknowledge.flip.model.FeatureState;
+import com.tacitknowledge.flip.properties.PropertyReader;
+import com.tacitknowledge.flip.properties.XmlPropertyReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FlightRecorderEventsTest {
+    
+    private File config;
+    private File dump;
+    private XmlPropertyReader propertyReader;
+    
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(!FlightRecorderEvents.getInstance().getClass().getName().endsWith("Disabled"));
+        config = File.createTempFile("flip-jfr-", ".xml");
+        dump = File.createTempFile("flip-jfr-", ".jfr");
+        Writer out = new OutputStreamWriter(new FileOutputStream(config), "UTF-8");
+        try {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<features xmlns=\"http://www.tacitknowledge.com/flip\">\n"
+                    + "    <feature name=\"rules\">\n"
+                    + "        <rule state=\"disabled\"><condition>intKey == 11</condition></rule>\n"
+                    + "        <rule state=\"enabled\"><condition>intKey == 10</condition></rule>\n"
+                    + "    </feature>\n"
+                    + "</features>\n");
+        } finally {
+            out.close();
+        }
+    }
+    
+    @After
+    public void tearDown() {
+        if (propertyReader != null) {
+            propertyReader.close();
+        }
+        if (config != null) {
+            config.delete();
+            dump.delete();
+        }
+    }
+    
+    @Test
+    public void testEventsAreRecorded() throws IOException {
+        Recording recording = new Recording();
+        recording.enable("com.tacitknowledge.flip.FeatureEvaluation").withoutThreshold();
+        recording.enable("com.tacitknowledge.flip.ContextProviderInvocation").withoutThreshold();
+        recording.enable("com.tacitknowledge.flip.FeatureReload");
+        recording.start();
+        try {
+            assertTrue(FlightRecorderEvents.getInstance().isEvaluationEnabled());
+            assertTrue(FlightRecorderEvents.getInstance().isContextInvocationEnabled());
+            assertTrue(FlightRecorderEvents.getInstance().isReloadEnabled());
+            Properties props = new Properties();
+            props.setProperty(XmlPropertyReader.CONFIG_PROPERTY, config.getAbsolutePath());
+            props.setProperty(XmlPropertyReader.CONFIG_WATCH, "false");
+            propertyReader = new XmlPropertyReader();
+            propertyReader.initialize(props);
+            Environment environment = new Environment();
+            environment.setPropertyReaders(Collections.<PropertyReader>singletonList(propertyReader));
+            environment.setContextProviders(Collections.<Object>singletonList(new TestContextProvider()));
+            
+            assertEquals(FeatureState.ENABLED, new FeatureServiceImpl(environment).getFeatureState("rules"));
+        } finally {
+            recording.stop();
+        }
+        assertFalse(FlightRecorderEvents.getInstance().isEvaluationEnabled());
+        recording.dump(dump.toPath());
+        recording.close();
+        
+        List<RecordedEvent> evaluations = new ArrayList<RecordedEvent>();
+        List<RecordedEvent> invocations = new ArrayList<RecordedEvent>();
+        List<RecordedEvent> reloads = new ArrayList<RecordedEvent>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump.toPath())) {
+            String name = event.getEventType().getName();
+            if (name.equals("com.tacitknowledge.flip.FeatureEvaluation")) {
+                evaluations.add(event);
+            } else if (name.equals("com.tacitknowledge.flip.ContextProviderInvocation")) {
+                invocations.add(event);
+            } else if (name.equals("com.tacitknowledge.flip.FeatureReload")) {
+                reloads.add(event);
+            }
+        }
+        
+        assertEquals(1, evaluations.size());
+        assertEquals("rules", evaluations.get(0).getString("featureName"));
+        assertEquals("ENABLED", evaluations.get(0).getString("state"));
+        assertEquals(1, evaluations.get(0).getInt("ruleIndex"));
+        assertFalse(invocations.isEmpty());
+        assertEquals(TestContextProvider.class.getName(), invocations.get(0).getString("provider"));
+        assertEquals(1, reloads.size());
+        assertEquals(1, reloads.get(0).getInt("featureCount"));
+        assertEquals(1, reloads.get(0).getInt("addedCount"));
+    }
+    
+    @Test
+    public void testDisabledEventTypesAreNotEmitted() {
+        Recording recording = new Recording();
+        recording.enable("com.tacitknowledge.flip.FeatureReload");
+        recording.disable("com.tacitknowledge.flip.FeatureEvaluation");
+        recording.disable("com.tacitknowledge.flip.ContextProviderInvocation");
+        recording.start();
+        try {
+            assertTrue(FlightRecorderEvents.getInstance().isReloadEnabled());
+            assertFalse(FlightRecorderEvents.getInstance().isEvaluationEnabled());
+            assertFalse(FlightRecorderEvents.getInstance().isContextInvocationEnabled());
+        } finally {
+            recording.stop();
+            recording.close();
+        }
+        assertFalse(FlightRecorderEvents.getInstance().isReloadEnabled());
+    }
+}
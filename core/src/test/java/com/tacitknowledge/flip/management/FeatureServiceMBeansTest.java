@@ -0,0 +1,171 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.management;
+
+import com.tacitknowledge.flip.Environment;
+import com.tacitknowledge.flip.FeatureServiceDirectFactory;
+import com.tacitknowledge.flip.FeatureServiceImpl;
+import com.tacitknowledge.flip.metrics.FeatureMetrics;
+import com.tacitknowledge.flip.properties.PropertyReader;
+import com.tacitknowledge.flip.properties.XmlPropertyReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FeatureServiceMBeansTest {
+    
+    private static final String CONFIG_FILE = "src/test/resources/flip-1.properties.xml";
+    
+    private MBeanServer server;
+    private XmlPropertyReader propertyReader;
+    private Properties props;
+    
+    @Before
+    public void setUp() {
+        server = MBeanServerFactory.newMBeanServer();
+        props = new Properties();
+        props.setProperty(XmlPropertyReader.CONFIG_PROPERTY, CONFIG_FILE);
+        props.setProperty(XmlPropertyReader.CONFIG_WATCH, "false");
+        propertyReader = new XmlPropertyReader();
+        propertyReader.initialize(props);
+    }
+    
+    @After
+    public void tearDown() {
+        propertyReader.close();
+    }
+    
+    @Test
+    public void testAttributesAndOperations() throws Exception {
+        FeatureMetrics metrics = new FeatureMetrics();
+        Environment environment = new Environment();
+        environment.setProperties(props);
+        environment.setPropertyReaders(new ArrayList<PropertyReader>(Collections.singletonList(propertyReader)));
+        environment.setMetricsSink(metrics);
+        FeatureServiceImpl featureService = new FeatureServiceImpl(environment);
+        featureService.getFeatureState("test");
+        featureService.getFeatureState("test");
+        featureService.getFeatureState("missing");
+        
+        FeatureServiceMBeans mbeans = FeatureServiceMBeans.register(server, "test service", featureService, 
+                environment.getPropertyReaders());
+        
+        List<ObjectName> names = mbeans.getObjectNames();
+        assertEquals(2, names.size());
+        ObjectName serviceName = new ObjectName("com.tacitknowledge.flip:type=FeatureService,name=test_service");
+        ObjectName readerName = new ObjectName(
+                "com.tacitknowledge.flip:type=PropertyReader,service=test_service,name=0-XmlPropertyReader");
+        assertEquals(serviceName, names.get(0));
+        assertEquals(readerName, names.get(1));
+        
+        assertEquals(1, server.getAttribute(serviceName, "FeatureCount"));
+        assertEquals(FeatureMetrics.class.getName(), server.getAttribute(serviceName, "MetricsSink"));
+        assertArrayEquals(new String[] { "missing" }, (String[]) server.getAttribute(serviceName, "ProblemFeatures"));
+        String[] top = (String[]) server.invoke(serviceName, "topFeatures", new Object[] { 1 }, new String[] { "int" });
+        assertEquals(1, top.length);
+        assertTrue(top[0].startsWith("test: 2 "));
+        
+        assertEquals(1, server.getAttribute(readerName, "FeatureCount"));
+        assertEquals(1L, server.getAttribute(readerName, "ReloadCount"));
+        assertEquals(1, server.invoke(serviceName, "reload", new Object[0], new String[0]));
+        assertEquals(1L, server.getAttribute(readerName, "SkippedReloadCount"));
+        server.invoke(serviceName, "clearCaches", new Object[0], new String[0]);
+        
+        mbeans.unregister();
+        assertFalse(server.isRegistered(serviceName));
+        assertFalse(server.isRegistered(readerName));
+    }
+    
+    @Test
+    public void testRegistrationUnderSameNameFails() throws Exception {
+        Environment environment = new Environment();
+        environment.setPropertyReaders(Collections.<PropertyReader>singletonList(propertyReader));
+        FeatureServiceImpl featureService = new FeatureServiceImpl(environment);
+        
+        FeatureServiceMBeans mbeans = FeatureServiceMBeans.register(server, "flip", featureService, 
+                environment.getPropertyReaders());
+        try {
+            FeatureServiceMBeans.register(server, "flip", new FeatureServiceImpl(environment), 
+                    environment.getPropertyReaders());
+            fail();
+        } catch (InstanceAlreadyExistsException ex) {
+            // the beans of the first service are kept
+        }
+        
+        assertEquals(2, server.queryNames(new ObjectName("com.tacitknowledge.flip:*"), null).size());
+        assertEquals(0, ((String[]) server.getAttribute(mbeans.getObjectNames().get(0), "TopFeatures")).length);
+        FeatureServiceMBeans.unregister(server, "flip");
+        assertTrue(server.queryNames(new ObjectName("com.tacitknowledge.flip:*"), null).isEmpty());
+    }
+    
+    @Test
+    public void testFactoryRegistersBeansWhenEnabled() throws Exception {
+        props.setProperty(FeatureServiceMBeans.CONFIG_JMX_ENABLED, "true");
+        props.setProperty(FeatureServiceMBeans.CONFIG_JMX_NAME, "factory-test");
+        FeatureServiceDirectFactory factory = new FeatureServiceDirectFactory();
+        factory.setProperties(props);
+        factory.setPropertyReaders(Collections.<PropertyReader>singletonList(propertyReader));
+        
+        FeatureServiceImpl featureService = (FeatureServiceImpl) factory.createFeatureService();
+        
+        MBeanServer platform = ManagementFactory.getPlatformMBeanServer();
+        ObjectName serviceName = new ObjectName("com.tacitknowledge.flip:type=FeatureService,name=factory-test");
+        try {
+            assertTrue(platform.isRegistered(serviceName));
+            assertEquals(serviceName, featureService.getMBeans().getObjectNames().get(0));
+            featureService.close();
+            assertFalse(platform.isRegistered(serviceName));
+            assertNull(featureService.getMBeans());
+        } finally {
+            FeatureServiceMBeans.unregister(platform, "factory-test");
+        }
+    }
+    
+    @Test
+    public void testDefaultNamesAreUnique() throws Exception {
+        props.setProperty(FeatureServiceMBeans.CONFIG_JMX_ENABLED, "true");
+        FeatureServiceDirectFactory factory = new FeatureServiceDirectFactory();
+        factory.setProperties(props);
+        factory.setPropertyReaders(Collections.<PropertyReader>singletonList(propertyReader));
+        
+        FeatureServiceImpl first = (FeatureServiceImpl) factory.createFeatureService();
+        FeatureServiceImpl second = (FeatureServiceImpl) factory.createFeatureService();
+        try {
+            assertFalse(first.getMBeans().getObjectNames().get(0).equals(second.getMBeans().getObjectNames().get(0)));
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+}
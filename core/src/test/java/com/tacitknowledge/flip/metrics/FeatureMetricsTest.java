@@ -0,0 +1,125 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.metrics;
+
+import com.tacitknowledge.flip.model.FeatureState;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FeatureMetricsTest {
+    
+    @Test
+    public void testEvaluationsAreCounted() {
+        FeatureMetrics metrics = new FeatureMetrics();
+        
+        metrics.evaluated("a", FeatureState.ENABLED, 100);
+        metrics.evaluated("a", FeatureState.ENABLED, 100);
+        metrics.evaluated("a", FeatureState.DISABLED, 400);
+        metrics.evaluated("b", null, 10);
+        metrics.failed("b");
+        
+        FeatureStatistics a = metrics.getStatistics("a");
+        assertEquals(2, a.getEnabledCount());
+        assertEquals(1, a.getDisabledCount());
+        assertEquals(3, a.getEvaluationCount());
+        assertEquals(0, a.getFailureCount());
+        assertEquals(600, a.getTotalTime());
+        assertEquals(200, a.getMeanTime());
+        
+        FeatureStatistics b = metrics.getStatistics("b");
+        assertEquals(0, b.getEnabledCount());
+        assertEquals(1, b.getDisabledCount());
+        assertEquals(1, b.getFailureCount());
+        
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(metrics.getFeatureNames()));
+        assertEquals(0, metrics.getStatistics("c").getEvaluationCount());
+    }
+    
+    @Test
+    public void testNumberOfTrackedFeaturesIsBounded() {
+        FeatureMetrics metrics = new FeatureMetrics(2);
+        
+        metrics.evaluated("a", FeatureState.ENABLED, 100);
+        metrics.evaluated("b", FeatureState.ENABLED, 100);
+        metrics.evaluated("c", FeatureState.ENABLED, 100);
+        metrics.failed("d");
+        metrics.evaluated("a", FeatureState.DISABLED, 100);
+        
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(metrics.getFeatureNames()));
+        assertEquals(2, metrics.getStatistics("a").getEvaluationCount());
+        assertEquals(0, metrics.getStatistics("c").getEvaluationCount());
+        assertEquals(2, metrics.getUntrackedCount());
+        
+        metrics.clear();
+        assertEquals(0, metrics.getUntrackedCount());
+        assertTrue(metrics.getFeatureNames().isEmpty());
+    }
+    
+    @Test
+    public void testPercentilesAreBucketUpperBounds() {
+        FeatureMetrics metrics = new FeatureMetrics();
+        for (int i = 0; i < 99; i++) {
+            metrics.evaluated("a", FeatureState.ENABLED, 100);
+        }
+        metrics.evaluated("a", FeatureState.ENABLED, 5000);
+        
+        FeatureStatistics statistics = metrics.getStatistics("a");
+        assertEquals(127, statistics.getPercentile(0.5));
+        assertEquals(127, statistics.getPercentile(0.99));
+        assertEquals(8191, statistics.getPercentile(1));
+        assertEquals(99, statistics.getHistogram()[7]);
+        assertEquals(1, statistics.getHistogram()[13]);
+        assertEquals(0, metrics.getStatistics("b").getPercentile(0.99));
+    }
+    
+    @Test
+    public void testConcurrentEvaluationsAreNotLost() throws InterruptedException {
+        final FeatureMetrics metrics = new FeatureMetrics();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        metrics.evaluated("a", FeatureState.ENABLED, j);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        FeatureStatistics statistics = metrics.getStatistics("a");
+        assertEquals(40000, statistics.getEnabledCount());
+        long histogramTotal = 0;
+        for (long count : statistics.getHistogram()) {
+            histogramTotal += count;
+        }
+        assertEquals(40000, histogramTotal);
+        assertTrue(statistics.toString().contains("enabled=40000"));
+    }
+}
@@ -0,0 +1,62 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.metrics;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class StripedCounterTest {
+    
+    @Test
+    public void testUncontendedCounterIsNotStriped() {
+        StripedCounter counter = new StripedCounter(2);
+        
+        counter.increment(0);
+        counter.add(1, 5);
+        counter.add(1, 7);
+        
+        assertFalse(counter.isStriped());
+        assertEquals(1, counter.sum(0));
+        assertArrayEquals(new long[] {1, 12}, counter.sums());
+    }
+    
+    @Test
+    public void testContendedCounterKeepsAllUpdates() throws InterruptedException {
+        final StripedCounter counter = new StripedCounter(1);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100000; j++) {
+                        counter.increment(0);
+                    }
+                }
+            };
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertEquals(400000, counter.sum(0));
+    }
+}
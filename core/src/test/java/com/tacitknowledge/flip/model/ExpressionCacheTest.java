@@ -0,0 +1,81 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.model;
+
+import org.apache.commons.jexl2.Expression;
+import org.apache.commons.jexl2.JexlException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class ExpressionCacheTest {
+    
+    private ExpressionCache cache;
+    
+    @Before
+    public void setUp() {
+        cache = new ExpressionCache(2);
+    }
+    
+    @Test
+    public void testCompiledOnce() {
+        Expression expression = cache.getExpression("a == 1");
+        
+        assertSame(expression, cache.getExpression("a == 1"));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+    }
+    
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        Expression first = cache.getExpression("a == 1");
+        cache.getExpression("a == 2");
+        cache.getExpression("a == 1");
+        cache.getExpression("a == 3");
+        
+        assertEquals(2, cache.size());
+        assertSame(first, cache.getExpression("a == 1"));
+        assertEquals(3, cache.getMissCount());
+        cache.getExpression("a == 2");
+        assertEquals(4, cache.getMissCount());
+    }
+    
+    @Test
+    public void testClear() {
+        Expression expression = cache.getExpression("a == 1");
+        cache.clear();
+        
+        assertEquals(0, cache.size());
+        assertNotSame(expression, cache.getExpression("a == 1"));
+    }
+    
+    @Test(expected=JexlException.class)
+    public void testInvalidExpression() {
+        cache.getExpression("a == ");
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new ExpressionCache(0);
+    }
+    
+}
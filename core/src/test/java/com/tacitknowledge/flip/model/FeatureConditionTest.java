@@ -17,6 +17,7 @@ package com.tacitknowledge.flip.model;
 import com.tacitknowledge.flip.context.ContextMap;
 import com.tacitknowledge.flip.exceptions.UnknownContextPropertyException;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import org.junit.Before;
 import org.junit.Test;
 import static org.mockito.Matchers.eq;
@@ -135,6 +136,22 @@ public class FeatureConditionTest extends AbstractFeatureProcessorTest {
         assertEquals(FeatureState.DISABLED, condition.process(contextManager));
     }
     
+    @Test
+    public void testCompiledOnce() {
+        condition.setExpression("count == 10");
+        
+        assertSame(condition.compile(), condition.compile());
+    }
+    
+    @Test
+    public void testRecompiledWhenExpressionChanges() {
+        condition.setExpression("count == 10");
+        condition.process(contextManager);
+        condition.setExpression("count == 11");
+        
+        assertEquals(FeatureState.DISABLED, condition.process(contextManager));
+    }
+    
     public static class SomeObject {
         
         public String getNestedValue() {
@@ -16,6 +16,7 @@ package com.tacitknowledge.flip.model;
 
 import com.tacitknowledge.flip.context.ContextMap;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import org.junit.Before;
 import org.junit.Test;
@@ -112,6 +113,41 @@ public class FeatureDescriptorTest extends AbstractFeatureProcessorTest {
         FeatureState state = descriptor.process(contextManager);
         
         assertEquals(FeatureState.ENABLED, state);
+        assertEquals(1, descriptor.findMatchedRule(contextManager));
+    }
+    
+    @Test
+    public void testNoRuleMatched() {
+        descriptor.setRules(new FeatureRule[]{rule("AAA")});
+        
+        assertEquals(-1, descriptor.findMatchedRule(contextManager));
+        assertNull(descriptor.process(contextManager));
+    }
+    
+    @Test
+    public void testStructuralEquality() {
+        FeatureDescriptor other = new FeatureDescriptor();
+        other.setName("test");
+        descriptor.setRules(new FeatureRule[]{rule("AAA")});
+        other.setRules(new FeatureRule[]{rule("AAA")});
+        
+        assertEquals(descriptor, other);
+        assertEquals(descriptor.hashCode(), other.hashCode());
+        
+        other.setRules(new FeatureRule[]{rule("BBB")});
+        assertFalse(descriptor.equals(other));
+    }
+    
+    private FeatureRule rule(String value) {
+        FeatureRule rule = new FeatureRule();
+        rule.setState(FeatureState.ENABLED);
+        FeatureCondition condition = new FeatureCondition();
+        condition.setContext(ContextMap.GLOBAL);
+        condition.setName("param");
+        condition.setOperation(FeatureOperation.EQUALS);
+        condition.setValue(value);
+        rule.setConditions(new FeatureCondition[]{condition});
+        return rule;
     }
     
 }
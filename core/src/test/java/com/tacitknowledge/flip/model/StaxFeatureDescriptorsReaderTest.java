@@ -0,0 +1,135 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.model;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.xml.bind.JAXBContext;
+import javax.xml.stream.XMLStreamException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class StaxFeatureDescriptorsReaderTest {
+    
+    private static final String DOCUMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<features xmlns=\"http://www.tacitknowledge.com/flip\" xmlns:x=\"urn:other\">"
+            + "<feature name=\"a\" state=\"enabled\" expiration-date=\"2012-12-21 12:21 +0200\">"
+            + "<rule state=\"enabled\">"
+            + "<condition context=\"user\" name=\"level\" operation=\"ge\" value=\"10\" />"
+            + "<condition> user.level &gt; 1 </condition>"
+            + "<condition><![CDATA[a < 2]]></condition>"
+            + "<condition/>"
+            + "<x:condition>ignored</x:condition>"
+            + "</rule>"
+            + "<unknown><rule state=\"disabled\"/></unknown>"
+            + "<rule state=\"disabled\"/>"
+            + "</feature>"
+            + "<feature name=\"b\" state=\"bogus\" expiration-date=\"tomorrow\">"
+            + "<rule><condition operation=\"zzz\" /></rule>"
+            + "</feature>"
+            + "<x:feature name=\"c\" />"
+            + "<feature name=\"a\" state=\"disabled\" />"
+            + "<feature />"
+            + "</features>";
+    
+    private StaxFeatureDescriptorsReader reader;
+    
+    @Before
+    public void setUp() {
+        reader = new StaxFeatureDescriptorsReader();
+    }
+    
+    @Test
+    public void testReadsSameAsJaxb() throws Exception {
+        Map<String, FeatureDescriptor> expected = new LinkedHashMap<String, FeatureDescriptor>();
+        FeatureDescriptors descriptors = (FeatureDescriptors) JAXBContext.newInstance(FeatureDescriptors.class)
+                .createUnmarshaller().unmarshal(new ByteArrayInputStream(DOCUMENT.getBytes("UTF-8")));
+        for (FeatureDescriptor descriptor : descriptors.getFeatures()) {
+            expected.put(descriptor.getName(), descriptor);
+        }
+        
+        Map<String, FeatureDescriptor> actual = new LinkedHashMap<String, FeatureDescriptor>();
+        reader.read(new ByteArrayInputStream(DOCUMENT.getBytes("UTF-8")), actual);
+        
+        assertEquals(toString(expected), toString(actual));
+        assertEquals(3, actual.size());
+        assertEquals(FeatureState.DISABLED, actual.get("a").getState());
+        assertNull(actual.get("b").getState());
+        assertNull(actual.get("b").getExpirationDate());
+    }
+    
+    @Test
+    public void testReadsConditions() throws Exception {
+        Map<String, FeatureDescriptor> actual = new LinkedHashMap<String, FeatureDescriptor>();
+        reader.read(new ByteArrayInputStream(DOCUMENT.replace("name=\"a\" state=\"disabled\"", "name=\"d\"")
+                .getBytes("UTF-8")), actual);
+        
+        FeatureRule[] rules = actual.get("a").getRules();
+        assertEquals(2, rules.length);
+        FeatureCondition[] conditions = rules[0].getConditions();
+        assertEquals(4, conditions.length);
+        assertEquals("user", conditions[0].getContext());
+        assertEquals(FeatureOperation.GREATER_EQUALS, conditions[0].getOperation());
+        assertEquals(" user.level > 1 ", conditions[1].getExpression());
+        assertEquals("a < 2", conditions[2].getExpression());
+        assertEquals("", conditions[3].getExpression());
+        assertEquals("_all", conditions[3].getContext());
+        assertEquals(FeatureOperation.EQUALS, conditions[3].getOperation());
+        assertNull(rules[1].getConditions());
+    }
+    
+    @Test(expected=XMLStreamException.class)
+    public void testRejectsUnknownRoot() throws Exception {
+        reader.read(new ByteArrayInputStream("<features/>".getBytes("UTF-8")),
+                new LinkedHashMap<String, FeatureDescriptor>());
+    }
+    
+    @Test(expected=XMLStreamException.class)
+    public void testRejectsMalformedDocument() throws Exception {
+        reader.read(new ByteArrayInputStream(DOCUMENT.substring(0, 200).getBytes("UTF-8")),
+                new LinkedHashMap<String, FeatureDescriptor>());
+    }
+    
+    private static String toString(Map<String, FeatureDescriptor> descriptors) {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, FeatureDescriptor> entry : descriptors.entrySet()) {
+            FeatureDescriptor descriptor = entry.getValue();
+            result.append(entry.getKey()).append(':').append(descriptor.getName()).append(',')
+                    .append(descriptor.getState()).append(',').append(descriptor.getExpirationDate()).append('[');
+            if (descriptor.getRules() != null) {
+                for (FeatureRule rule : descriptor.getRules()) {
+                    result.append(rule.getState()).append('(');
+                    if (rule.getConditions() != null) {
+                        for (FeatureCondition condition : rule.getConditions()) {
+                            result.append(Arrays.asList(condition.getContext(), condition.getName(),
+                                    condition.getOperation(), condition.getValue(), condition.getExpression()));
+                        }
+                    }
+                    result.append(')');
+                }
+            }
+            result.append("];");
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,230 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import com.tacitknowledge.flip.model.FeatureCondition;
+import com.tacitknowledge.flip.model.FeatureDescriptor;
+import com.tacitknowledge.flip.model.FeatureOperation;
+import com.tacitknowledge.flip.model.FeatureState;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class BinaryPropertyReaderTest {
+    private static final String CONFIG_FILE1 = "src/test/resources/flip-1.properties.xml";
+    private static final String CONFIG_FILE = "src/test/resources/flip.properties.xml";
+    
+    private BinaryPropertyReader propertyReader;
+    private Properties props;
+    private File snapshotFile;
+    
+    @Before
+    public void setUp() throws IOException {
+        propertyReader = new BinaryPropertyReader();
+        props = new Properties();
+        snapshotFile = File.createTempFile("flip_", ".bin");
+        props.setProperty(BinaryPropertyReader.CONFIG_PROPERTY, snapshotFile.getAbsolutePath());
+    }
+    
+    @After
+    public void tearDown() {
+        propertyReader.close();
+        snapshotFile.delete();
+    }
+    
+    @Test
+    public void testReadsSameAsXml() throws IOException {
+        assertEquals(1, new BinarySnapshotCompiler().compile(new File(CONFIG_FILE1), snapshotFile));
+        propertyReader.initialize(props);
+        
+        XmlPropertyReader xmlReader = new XmlPropertyReader();
+        Properties xmlProps = new Properties();
+        xmlProps.setProperty(XmlPropertyReader.CONFIG_PROPERTY, CONFIG_FILE1);
+        xmlReader.initialize(xmlProps);
+        FeatureDescriptor expected = xmlReader.getFeatureDescriptor("test");
+        FeatureDescriptor featureDescriptor = propertyReader.getFeatureDescriptor("test");
+        
+        assertNotNull(featureDescriptor);
+        assertEquals("test", featureDescriptor.getName());
+        assertEquals(FeatureState.ENABLED, featureDescriptor.getState());
+        assertEquals(expected.getExpirationDate(), featureDescriptor.getExpirationDate());
+        assertEquals(2, featureDescriptor.getRules().length);
+        assertEquals(FeatureState.ENABLED, featureDescriptor.getRules()[0].getState());
+        FeatureCondition[] conditions = featureDescriptor.getRules()[0].getConditions();
+        assertEquals(2, conditions.length);
+        assertEquals("a", conditions[0].getContext());
+        assertEquals("prop", conditions[0].getName());
+        assertEquals(FeatureOperation.EQUALS, conditions[0].getOperation());
+        assertEquals("1", conditions[0].getValue());
+        assertEquals(expected.getRules()[0].getConditions()[0].getExpression(), conditions[0].getExpression());
+        assertEquals("a = 1", conditions[1].getExpression());
+        assertEquals(expected.getRules()[0].getConditions()[1].getContext(), conditions[1].getContext());
+        assertEquals(FeatureState.DISABLED, featureDescriptor.getRules()[1].getState());
+        assertNull(featureDescriptor.getRules()[1].getConditions());
+        
+        assertSame(featureDescriptor, propertyReader.getFeatureDescriptor("test"));
+        assertNull(propertyReader.getFeatureDescriptor("test1"));
+        assertNull(propertyReader.getFeatureDescriptor(null));
+        assertEquals(1, propertyReader.getSnapshot().size());
+        assertTrue(propertyReader.getSnapshot().getFeatureNames().contains("test"));
+    }
+    
+    @Test
+    public void testExpiredFeatureIsSwitchedToConfiguredState() throws IOException, InterruptedException {
+        new BinarySnapshotCompiler().compile(new File(CONFIG_FILE1), snapshotFile);
+        props.setProperty(CacheablePropertyReader.CONFIG_EXPIRED_STATE, "disabled");
+        final BlockingQueue<FeatureExpirationEvent> events = new LinkedBlockingQueue<FeatureExpirationEvent>();
+        propertyReader.addFeatureExpirationListener(new FeatureExpirationListener() {
+            @Override
+            public void featureExpired(FeatureExpirationEvent event) {
+                events.add(event);
+            }
+        });
+        propertyReader.initialize(props);
+        
+        FeatureExpirationEvent event = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals("test", event.getFeatureName());
+        assertEquals(FeatureState.DISABLED, propertyReader.getFeatureDescriptor("test").getState());
+    }
+    
+    @Test
+    public void testFindsFeaturesInIndex() throws IOException {
+        File source = File.createTempFile("flip_", ".xml");
+        try {
+            StringBuilder xml = new StringBuilder("<features xmlns=\"http://www.tacitknowledge.com/flip\">");
+            for (int i = 0; i < 100; i++) {
+                xml.append("<feature name=\"feature-").append(i).append("\" state=\"")
+                        .append(i % 2 == 0 ? "enabled" : "disabled").append("\" />");
+            }
+            write(source, xml.append("</features>").toString());
+            new BinarySnapshotCompiler().compile(source, snapshotFile);
+        } finally {
+            source.delete();
+        }
+        propertyReader.initialize(props);
+        
+        for (int i = 0; i < 100; i++) {
+            FeatureDescriptor descriptor = propertyReader.getFeatureDescriptor("feature-" + i);
+            assertEquals("feature-" + i, descriptor.getName());
+            assertEquals(i % 2 == 0 ? FeatureState.ENABLED : FeatureState.DISABLED, descriptor.getState());
+        }
+        assertNull(propertyReader.getFeatureDescriptor("feature-100"));
+        assertEquals(100, propertyReader.getSnapshot().getDescriptors().values().size());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidExpressionIsNotCompiled() throws IOException {
+        File source = File.createTempFile("flip_", ".xml");
+        try {
+            write(source, "<features xmlns=\"http://www.tacitknowledge.com/flip\"><feature name=\"a\" state=\"enabled\">"
+                    + "<rule state=\"enabled\"><condition>a == </condition></rule></feature></features>");
+            new BinarySnapshotCompiler().compile(source, snapshotFile);
+        } finally {
+            source.delete();
+        }
+    }
+    
+    @Test
+    public void testReplacedSnapshotIsReread() throws IOException {
+        new BinarySnapshotCompiler().compile(new File(CONFIG_FILE), snapshotFile);
+        propertyReader.initialize(props);
+        FeatureSnapshot snapshot = propertyReader.getSnapshot();
+        assertNull(propertyReader.getFeatureDescriptor("test"));
+        
+        propertyReader.readDescriptors();
+        assertSame(snapshot, propertyReader.getSnapshot());
+        
+        new BinarySnapshotCompiler().compile(new File(CONFIG_FILE1), snapshotFile);
+        assertTrue(snapshotFile.setLastModified(snapshotFile.lastModified() + 10000));
+        propertyReader.readDescriptors();
+        
+        assertEquals(2, propertyReader.getSnapshot().getVersion());
+        assertNotNull(propertyReader.getFeatureDescriptor("test"));
+        assertNull(snapshot.get("test"));
+    }
+    
+    @Test
+    public void testInvalidSnapshotIsNotRead() throws IOException {
+        write(snapshotFile, "<features/>");
+        propertyReader.initialize(props);
+        
+        assertTrue(propertyReader.getSnapshot().isEmpty());
+        assertEquals(1, propertyReader.getReloadStatistics().getFailedReloadCount());
+    }
+    
+    @Test
+    public void testNoSnapshotConfigured() {
+        propertyReader.initialize(new Properties());
+        
+        assertNull(propertyReader.getFeatureDescriptor("test"));
+        assertEquals(0, propertyReader.getSnapshot().getVersion());
+    }
+    
+    @Test
+    public void testNoSnapshotConfiguredIsNotReread() {
+        final List<LogRecord> records = new ArrayList<LogRecord>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger(XmlPropertyReader.class.getName());
+        logger.addHandler(handler);
+        try {
+            propertyReader.initialize(new Properties());
+        } finally {
+            logger.removeHandler(handler);
+        }
+        
+        assertTrue(records.isEmpty());
+    }
+    
+    private void write(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
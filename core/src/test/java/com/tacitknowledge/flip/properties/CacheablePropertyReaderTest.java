@@ -0,0 +1,196 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import com.tacitknowledge.flip.fixtures.SnapshotPropertyReader;
+import static com.tacitknowledge.flip.fixtures.SnapshotPropertyReader.feature;
+import com.tacitknowledge.flip.model.FeatureDescriptor;
+import com.tacitknowledge.flip.model.FeatureState;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class CacheablePropertyReaderTest {
+    
+    private SnapshotPropertyReader propertyReader;
+    private Properties props;
+    private final BlockingQueue<FeatureExpirationEvent> events = new LinkedBlockingQueue<FeatureExpirationEvent>();
+    
+    @Before
+    public void setUp() {
+        propertyReader = new SnapshotPropertyReader();
+        props = new Properties();
+        propertyReader.addFeatureExpirationListener(new FeatureExpirationListener() {
+            @Override
+            public void featureExpired(FeatureExpirationEvent event) {
+                events.add(event);
+            }
+        });
+    }
+    
+    @After
+    public void tearDown() {
+        propertyReader.cancelExpirations();
+    }
+    
+    @Test
+    public void testFeatureExpiresWhenDateComes() throws InterruptedException {
+        propertyReader.initialize(props);
+        Date expirationDate = new Date(System.currentTimeMillis() + 200);
+        propertyReader.publish(expiring("a", FeatureState.ENABLED, expirationDate), feature("b", FeatureState.ENABLED));
+        
+        assertNull(events.poll(50, TimeUnit.MILLISECONDS));
+        FeatureExpirationEvent event = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals("a", event.getFeatureName());
+        assertEquals(expirationDate, event.getExpirationDate());
+        assertNull(event.getExpiredState());
+        assertSame(propertyReader, event.getPropertyReader());
+        assertEquals(FeatureState.ENABLED, propertyReader.getFeatureDescriptor("a").getState());
+        assertNull(events.poll(300, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void testExpiredFeatureIsSwitchedToConfiguredState() throws InterruptedException {
+        props.setProperty(CacheablePropertyReader.CONFIG_EXPIRED_STATE, "disabled");
+        propertyReader.initialize(props);
+        Date expirationDate = new Date(System.currentTimeMillis() - 1000);
+        propertyReader.publish(expiring("a", FeatureState.ENABLED, expirationDate));
+        
+        FeatureExpirationEvent event = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(FeatureState.DISABLED, event.getExpiredState());
+        FeatureDescriptor descriptor = propertyReader.getFeatureDescriptor("a");
+        assertEquals(FeatureState.DISABLED, descriptor.getState());
+        assertEquals(expirationDate, descriptor.getExpirationDate());
+        assertNull(events.poll(300, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void testExpiredFeatureStaysExpiredWhenReadAgain() throws InterruptedException {
+        props.setProperty(CacheablePropertyReader.CONFIG_EXPIRED_STATE, "disabled");
+        propertyReader.initialize(props);
+        Date expirationDate = new Date(System.currentTimeMillis() - 1000);
+        propertyReader.publish(expiring("a", FeatureState.ENABLED, expirationDate));
+        assertNotNull(events.poll(5, TimeUnit.SECONDS));
+        
+        final List<FeatureChangeEvent> changes = new CopyOnWriteArrayList<FeatureChangeEvent>();
+        propertyReader.addFeatureChangeListener(new FeatureChangeListener() {
+            @Override
+            public void featuresChanged(FeatureChangeEvent event) {
+                changes.add(event);
+            }
+        });
+        propertyReader.publish(expiring("a", FeatureState.ENABLED, expirationDate));
+        
+        assertEquals(FeatureState.DISABLED, propertyReader.getFeatureDescriptor("a").getState());
+        assertFalse(changes.get(0).hasChanges());
+        assertNull(events.poll(300, TimeUnit.MILLISECONDS));
+        assertEquals(1, changes.size());
+        
+        propertyReader.publish(expiring("a", FeatureState.ENABLED, new Date(System.currentTimeMillis() + 3600000)));
+        assertEquals(FeatureState.ENABLED, propertyReader.getFeatureDescriptor("a").getState());
+    }
+    
+    @Test
+    public void testReplacedFeatureDoesNotExpire() throws InterruptedException {
+        propertyReader.initialize(props);
+        propertyReader.publish(expiring("a", FeatureState.ENABLED, new Date(System.currentTimeMillis() + 200)));
+        propertyReader.publish(expiring("a", FeatureState.ENABLED, new Date(System.currentTimeMillis() + 3600000)));
+        
+        assertNull(events.poll(500, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedCacheViewsSnapshot() {
+        LegacyPropertyReader legacyReader = new LegacyPropertyReader();
+        legacyReader.initialize(props);
+        
+        assertEquals(FeatureState.ENABLED, legacyReader.getFeatureDescriptor("a").getState());
+        assertEquals(1, legacyReader.getSnapshot().getVersion());
+        
+        legacyReader.publishSnapshot(Collections.singletonMap("b", feature("b", FeatureState.DISABLED)));
+        assertEquals(1, legacyReader.cache.size());
+        assertNull(legacyReader.cache.get("a"));
+        assertEquals(FeatureState.DISABLED, legacyReader.cache.get("b").getState());
+        
+        legacyReader.cache.remove("b");
+        assertNull(legacyReader.getFeatureDescriptor("b"));
+        assertTrue(legacyReader.getSnapshot().getDescriptors().isEmpty());
+    }
+    
+    @Test
+    public void testDeprecatedCacheChangesArePublishedOnceAfterRead() {
+        LegacyPropertyReader legacyReader = new LegacyPropertyReader();
+        legacyReader.initialize(props);
+        final List<FeatureChangeEvent> changes = new CopyOnWriteArrayList<FeatureChangeEvent>();
+        legacyReader.addFeatureChangeListener(new FeatureChangeListener() {
+            @Override
+            public void featuresChanged(FeatureChangeEvent event) {
+                changes.add(event);
+            }
+        });
+        
+        legacyReader.state = FeatureState.DISABLED;
+        legacyReader.loadDescriptors();
+        
+        assertEquals(FeatureState.ENABLED, legacyReader.seenDuringRead.getState());
+        assertEquals(1, changes.size());
+        assertEquals(2, legacyReader.getSnapshot().getVersion());
+        assertEquals(FeatureState.DISABLED, legacyReader.getFeatureDescriptor("a").getState());
+        assertNull(legacyReader.getFeatureDescriptor("x"));
+    }
+    
+    private static FeatureDescriptor expiring(String name, FeatureState state, Date expirationDate) {
+        FeatureDescriptor descriptor = feature(name, state);
+        descriptor.setExpirationDate(expirationDate);
+        return descriptor;
+    }
+    
+    /**
+     * The reader which fills the cache the way the readers did before the snapshots.
+     */
+    private static class LegacyPropertyReader extends CacheablePropertyReader {
+        
+        private FeatureState state = FeatureState.ENABLED;
+        
+        private FeatureDescriptor seenDuringRead;
+        
+        @Override
+        @SuppressWarnings("deprecation")
+        protected void readDescriptors() {
+            cache.clear();
+            seenDuringRead = getFeatureDescriptor("a");
+            cache.put("x", feature("x", FeatureState.DISABLED));
+            cache.put("a", feature("a", state));
+            assertEquals(2, cache.size());
+            cache.remove("x");
+        }
+    }
+}
@@ -15,10 +15,21 @@
 package com.tacitknowledge.flip.properties;
 
 import com.tacitknowledge.flip.Environment;
+import com.tacitknowledge.flip.exceptions.MissingFeatureDescriptorException;
+import com.tacitknowledge.flip.fixtures.SnapshotPropertyReader;
+import static com.tacitknowledge.flip.fixtures.SnapshotPropertyReader.feature;
 import com.tacitknowledge.flip.fixtures.TestPropertyReader;
 import com.tacitknowledge.flip.model.FeatureDescriptor;
+import com.tacitknowledge.flip.model.FeatureState;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -45,4 +56,134 @@ public class PropertyManagerTest {
         assertEquals("feature-1", result.getName());
     }
     
+    @Test
+    public void testGenerationChangesOnlyWithFeatures() {
+        SnapshotPropertyReader reader = new SnapshotPropertyReader();
+        Environment environment = new Environment();
+        environment.getPropertyReaders().add(reader);
+        propertyManager = new PropertyManager(environment);
+        
+        reader.publish(feature("a", FeatureState.ENABLED), feature("b", FeatureState.ENABLED));
+        long generation = propertyManager.getGeneration();
+        reader.publish(feature("a", FeatureState.ENABLED), feature("b", FeatureState.ENABLED));
+        assertEquals(generation, propertyManager.getGeneration());
+        
+        reader.publish(feature("a", FeatureState.ENABLED), feature("b", FeatureState.DISABLED));
+        assertEquals(generation + 1, propertyManager.getGeneration());
+        assertTrue(propertyManager.isChanged("b", generation));
+        assertFalse(propertyManager.isChanged("a", generation));
+        assertFalse(propertyManager.isChanged("b", generation + 1));
+    }
+    
+    @Test
+    public void testClosedManagerStopsListening() {
+        SnapshotPropertyReader reader = new SnapshotPropertyReader();
+        Environment environment = new Environment();
+        environment.getPropertyReaders().add(reader);
+        propertyManager = new PropertyManager(environment);
+        reader.publish(feature("a", FeatureState.ENABLED));
+        long generation = propertyManager.getGeneration();
+        
+        propertyManager.close();
+        reader.publish(feature("a", FeatureState.DISABLED), feature("b", FeatureState.ENABLED));
+        
+        assertEquals(generation, propertyManager.getGeneration());
+        assertFalse(propertyManager.isChanged("a", generation));
+    }
+    
+    @Test
+    public void testMergedReadersKeepOrder() {
+        SnapshotPropertyReader first = new SnapshotPropertyReader();
+        SnapshotPropertyReader second = new SnapshotPropertyReader();
+        Environment environment = new Environment();
+        environment.getPropertyReaders().add(first);
+        environment.getPropertyReaders().add(second);
+        first.publish(feature("a", FeatureState.ENABLED));
+        second.publish(feature("a", FeatureState.DISABLED), feature("b", FeatureState.DISABLED));
+        propertyManager = new PropertyManager(environment);
+        
+        assertEquals(FeatureState.ENABLED, propertyManager.getFeatureDescriptor("a").getState());
+        assertEquals(FeatureState.DISABLED, propertyManager.getFeatureDescriptor("b").getState());
+        
+        first.publish(feature("b", FeatureState.ENABLED));
+        assertEquals(FeatureState.DISABLED, propertyManager.getFeatureDescriptor("a").getState());
+        assertEquals(FeatureState.ENABLED, propertyManager.getFeatureDescriptor("b").getState());
+        
+        second.publish(feature("c", FeatureState.ENABLED));
+        assertEquals(FeatureState.ENABLED, propertyManager.getFeatureDescriptor("c").getState());
+    }
+    
+    @Test
+    public void testMissingFeatureIsRemembered() {
+        SnapshotPropertyReader reader = new SnapshotPropertyReader();
+        Environment environment = new Environment();
+        environment.getPropertyReaders().add(reader);
+        propertyManager = new PropertyManager(environment);
+        reader.publish(feature("a", FeatureState.ENABLED));
+        
+        MissingFeatureDescriptorException missing = lookupMissing("b");
+        MissingFeatureDescriptorException again = lookupMissing("b");
+        assertNotSame(missing, again);
+        assertEquals(0, again.getStackTrace().length);
+        assertTrue(again.getMessage().contains("[b]"));
+        
+        reader.publish(feature("a", FeatureState.ENABLED), feature("b", FeatureState.ENABLED));
+        assertEquals(FeatureState.ENABLED, propertyManager.getFeatureDescriptor("b").getState());
+    }
+    
+    @Test
+    public void testMissingFeatureIsLookedUpInDynamicReaders() {
+        final Map<String, FeatureDescriptor> features = new HashMap<String, FeatureDescriptor>();
+        Environment environment = new Environment();
+        environment.getPropertyReaders().add(new SnapshotPropertyReader());
+        environment.getPropertyReaders().add(new PropertyReader() {
+            public void initialize(Properties config) {
+            }
+            public FeatureDescriptor getFeatureDescriptor(String name) {
+                return features.get(name);
+            }
+        });
+        propertyManager = new PropertyManager(environment);
+        
+        lookupMissing("b");
+        features.put("b", feature("b", FeatureState.ENABLED));
+        assertEquals(FeatureState.ENABLED, propertyManager.getFeatureDescriptor("b").getState());
+    }
+    
+    @Test
+    public void testMissingFeatureSkipsCacheableReadersUntilGenerationChanges() {
+        final int[] dynamicLookups = new int[1];
+        SnapshotPropertyReader reader = new SnapshotPropertyReader();
+        Environment environment = new Environment();
+        environment.getPropertyReaders().add(new PropertyReader() {
+            public void initialize(Properties config) {
+            }
+            public FeatureDescriptor getFeatureDescriptor(String name) {
+                dynamicLookups[0]++;
+                return null;
+            }
+        });
+        environment.getPropertyReaders().add(reader);
+        propertyManager = new PropertyManager(environment);
+        reader.publish(feature("a", FeatureState.ENABLED));
+        
+        assertNull(propertyManager.findFeatureDescriptor("b"));
+        assertNull(propertyManager.findFeatureDescriptor("b"));
+        assertEquals(1, reader.getLookups());
+        assertEquals(2, dynamicLookups[0]);
+        
+        reader.publish(feature("a", FeatureState.ENABLED), feature("b", FeatureState.ENABLED));
+        assertEquals(FeatureState.ENABLED, propertyManager.findFeatureDescriptor("b").getState());
+        assertEquals(2, reader.getLookups());
+    }
+    
+    private MissingFeatureDescriptorException lookupMissing(String name) {
+        try {
+            propertyManager.getFeatureDescriptor(name);
+        } catch (MissingFeatureDescriptorException ex) {
+            return ex;
+        }
+        throw new AssertionError("The feature " + name + " is found.");
+    }
+    
 }
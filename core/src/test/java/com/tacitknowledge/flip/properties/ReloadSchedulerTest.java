@@ -0,0 +1,197 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.properties;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class ReloadSchedulerTest {
+    
+    /**
+     * The time to wait for a run in seconds. The polling watch services of some 
+     * platforms report the changes seconds after they are made.
+     */
+    private static final long TIMEOUT = 60;
+    
+    private File directory;
+    private File file;
+    private File marker;
+    private CountingTask task;
+    private CountingTask markerTask;
+    
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("flip_", "");
+        directory.delete();
+        directory.mkdir();
+        file = new File(directory, "flip.properties.xml");
+        write(file, "");
+        marker = new File(directory, "marker.xml");
+        task = new CountingTask();
+        markerTask = new CountingTask();
+    }
+    
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                child.delete();
+            }
+        }
+        directory.delete();
+    }
+    
+    @Test
+    public void testChangeIsReloaded() throws IOException, InterruptedException {
+        Closeable watch = ReloadScheduler.getInstance().watch(file, task, 10);
+        try {
+            write(file, "change");
+            task.await(1);
+            
+            write(file, "another change");
+            task.await(2);
+        } finally {
+            watch.close();
+        }
+    }
+    
+    @Test
+    public void testEachChangeDelaysTheRun() throws IOException, InterruptedException {
+        final long debounce = 1000;
+        final long[] lastChange = new long[1];
+        final List<Long> delays = new CopyOnWriteArrayList<Long>();
+        ReloadScheduler.Watch watch = (ReloadScheduler.Watch) ReloadScheduler.getInstance().watch(file, new Runnable() {
+            public void run() {
+                synchronized (lastChange) {
+                    delays.add(System.nanoTime() - lastChange[0]);
+                }
+                task.run();
+            }
+        }, debounce);
+        try {
+            for (int i = 0; i < 5; i++) {
+                synchronized (lastChange) {
+                    lastChange[0] = System.nanoTime();
+                    watch.changed();
+                }
+                Thread.sleep(debounce / 10);
+            }
+            task.await(1);
+            
+            for (Long delay : delays) {
+                assertTrue("The run came " + delay + " ns after the change.", 
+                        delay >= TimeUnit.MILLISECONDS.toNanos(debounce));
+            }
+        } finally {
+            watch.close();
+        }
+    }
+    
+    @Test
+    public void testOtherFilesAreIgnored() throws IOException, InterruptedException {
+        Closeable watch = ReloadScheduler.getInstance().watch(file, task, 10);
+        Closeable markerWatch = ReloadScheduler.getInstance().watch(marker, markerTask, 10);
+        try {
+            write(new File(directory, "other.xml"), "change");
+            write(marker, "change");
+            markerTask.await(1);
+            
+            assertEquals(0, task.getRuns());
+        } finally {
+            watch.close();
+            markerWatch.close();
+        }
+    }
+    
+    @Test
+    public void testClosedWatchIsNotRun() throws IOException, InterruptedException {
+        Closeable markerWatch = ReloadScheduler.getInstance().watch(marker, markerTask, 10);
+        try {
+            ReloadScheduler.getInstance().watch(file, task, 10).close();
+            write(file, "change");
+            write(marker, "change");
+            markerTask.await(1);
+            
+            assertEquals(0, task.getRuns());
+        } finally {
+            markerWatch.close();
+        }
+    }
+    
+    @Test
+    public void testPeriodicTaskSurvivesFailures() throws InterruptedException {
+        ScheduledFuture<?> future = ReloadScheduler.getInstance().scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                task.run();
+                throw new IllegalStateException();
+            }
+        }, 10);
+        try {
+            task.await(3);
+        } finally {
+            future.cancel(false);
+        }
+    }
+    
+    private void write(File target, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(target);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+    
+    /**
+     * The task counting its runs. The runs are awaited instead of sleeping 
+     * for a fixed time, as the watch service may be slow to report a change.
+     */
+    private static class CountingTask implements Runnable {
+        
+        private final Semaphore runs = new Semaphore(0);
+        
+        private int awaited;
+        
+        public void run() {
+            runs.release();
+        }
+        
+        void await(int count) throws InterruptedException {
+            assertTrue("The task has not been run " + count + " times.", 
+                    runs.tryAcquire(count - awaited, TIMEOUT, TimeUnit.SECONDS));
+            awaited = count;
+        }
+        
+        int getRuns() {
+            return awaited + runs.availablePermits();
+        }
+    }
+}
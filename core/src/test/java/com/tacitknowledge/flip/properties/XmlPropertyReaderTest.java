@@ -19,7 +19,9 @@ import com.tacitknowledge.flip.model.FeatureOperation;
 import com.tacitknowledge.flip.model.FeatureState;
 import java.io.*;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.Properties;
 import java.util.TimeZone;
 import java.util.logging.Level;
@@ -27,6 +29,7 @@ import java.util.logging.Logger;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.*;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 /**
@@ -47,6 +50,11 @@ public class XmlPropertyReaderTest {
         System.getProperties().remove(XmlPropertyReader.CONFIG_PROPERTY);
     }
     
+    @After
+    public void tearDown() {
+        propertyReader.close();
+    }
+    
     @Test
     public void testFromProperties() throws IOException {
         props.setProperty(XmlPropertyReader.CONFIG_PROPERTY, CONFIG_FILE1);
@@ -71,13 +79,13 @@ public class XmlPropertyReaderTest {
         System.getProperties().setProperty(XmlPropertyReader.CONFIG_PROPERTY, "/abracadabra");
         
         propertyReader.readDescriptors();
-        assertTrue(propertyReader.cache.isEmpty());
+        assertTrue(propertyReader.getSnapshot().isEmpty());
     }
     
     @Test
     public void testReadWhenNoConfigFileProperty() throws IOException {
         propertyReader.readDescriptors();
-        assertTrue(propertyReader.cache.isEmpty());
+        assertTrue(propertyReader.getSnapshot().isEmpty());
     }
     
     @Test
@@ -188,6 +196,26 @@ public class XmlPropertyReaderTest {
         assertNull(featureDescriptor.getRules()[1].getConditions());
     }
 
+    @Test
+    public void testFindFeatureDescriptorWithStaxParser() {
+        props.setProperty(XmlPropertyReader.CONFIG_PROPERTY, CONFIG_FILE1);
+        props.setProperty(XmlPropertyReader.PARSER_PROPERTY, XmlPropertyReader.PARSER_STAX);
+        propertyReader.initialize(props);
+        FeatureDescriptor featureDescriptor = propertyReader.getFeatureDescriptor("test");
+        
+        assertNotNull(featureDescriptor);
+        assertEquals(FeatureState.ENABLED, featureDescriptor.getState());
+        assertNotNull(featureDescriptor.getExpirationDate());
+        assertEquals(2, featureDescriptor.getRules().length);
+        assertEquals(2, featureDescriptor.getRules()[0].getConditions().length);
+        assertEquals("prop", featureDescriptor.getRules()[0].getConditions()[0].getName());
+        assertEquals(FeatureOperation.EQUALS, featureDescriptor.getRules()[0].getConditions()[0].getOperation());
+        assertEquals("a = 1", featureDescriptor.getRules()[0].getConditions()[1].getExpression());
+        assertEquals(FeatureState.DISABLED, featureDescriptor.getRules()[1].getState());
+        assertNull(featureDescriptor.getRules()[1].getConditions());
+        assertEquals(1, propertyReader.getSnapshot().size());
+    }
+
     @Test
     public void testFindInvalidFeatureDescriptor() {
         props.setProperty(XmlPropertyReader.CONFIG_PROPERTY, CONFIG_FILE1);
@@ -216,6 +244,135 @@ public class XmlPropertyReaderTest {
         assertNotNull(propertyReader.getFeatureDescriptor("test"));
     }
     
+    @Test
+    public void testWatchedFileIsReread() throws IOException, InterruptedException {
+        File out = File.createTempFile("flip_", ".xml");
+        copyFile(new File(CONFIG_FILE), out);
+        props.setProperty(XmlPropertyReader.CONFIG_PROPERTY, out.getAbsolutePath());
+        props.setProperty(XmlPropertyReader.CONFIG_WATCH_DEBOUNCE, "10");
+        propertyReader.initialize(props);
+        
+        assertNull(propertyReader.getFeatureDescriptor("test"));
+        copyFile(new File(CONFIG_FILE1), out);
+        for (int i = 0; i < 100 && propertyReader.getFeatureDescriptor("test") == null; i++) {
+            Thread.sleep(100);
+        }
+        propertyReader.close();
+        out.delete();
+        assertNotNull(propertyReader.getFeatureDescriptor("test"));
+    }
+    
+    @Test
+    public void testClosedReaderIsNotReread() throws IOException, InterruptedException {
+        File out = File.createTempFile("flip_", ".xml");
+        copyFile(new File(CONFIG_FILE), out);
+        props.setProperty(XmlPropertyReader.CONFIG_PROPERTY, out.getAbsolutePath());
+        props.setProperty(XmlPropertyReader.CONFIG_WATCH_DEBOUNCE, "10");
+        propertyReader.initialize(props);
+        propertyReader.close();
+        
+        copyFile(new File(CONFIG_FILE1), out);
+        Thread.sleep(500);
+        out.delete();
+        assertNull(propertyReader.getFeatureDescriptor("test"));
+        assertEquals(1, propertyReader.getReloadStatistics().getReloadCount());
+    }
+    
+    @Test
+    public void testSnapshotVersionIncreasesOnRead() throws IOException {
+        File out = File.createTempFile("flip_", ".xml");
+        copyFile(new File(CONFIG_FILE), out);
+        props.setProperty(XmlPropertyReader.CONFIG_PROPERTY, out.getAbsolutePath());
+        propertyReader.initialize(props);
+        FeatureSnapshot snapshot = propertyReader.getSnapshot();
+        
+        assertEquals(1, snapshot.getVersion());
+        assertNull(snapshot.get("test"));
+        
+        copyFile(new File(CONFIG_FILE1), out);
+        propertyReader.readDescriptors();
+        
+        assertEquals(2, propertyReader.getSnapshot().getVersion());
+        assertNotSame(snapshot, propertyReader.getSnapshot());
+        assertNull(snapshot.get("test"));
+        assertNotNull(propertyReader.getSnapshot().get("test"));
+        assertEquals(2, propertyReader.getReloadStatistics().getReloadCount());
+    }
+    
+    @Test
+    public void testUnchangedFileIsNotReread() {
+        props.setProperty(XmlPropertyReader.CONFIG_PROPERTY, CONFIG_FILE1);
+        propertyReader.initialize(props);
+        FeatureSnapshot snapshot = propertyReader.getSnapshot();
+        
+        propertyReader.readDescriptors();
+        
+        assertSame(snapshot, propertyReader.getSnapshot());
+        assertEquals(1, propertyReader.getReloadStatistics().getReloadCount());
+        assertEquals(1, propertyReader.getReloadStatistics().getSkippedReloadCount());
+    }
+    
+    @Test
+    public void testTouchedFileWithSameContentIsNotReread() throws IOException {
+        File out = File.createTempFile("flip_", ".xml");
+        copyFile(new File(CONFIG_FILE1), out);
+        props.setProperty(XmlPropertyReader.CONFIG_PROPERTY, out.getAbsolutePath());
+        propertyReader.initialize(props);
+        FeatureSnapshot snapshot = propertyReader.getSnapshot();
+        
+        assertTrue(out.setLastModified(out.lastModified() - 10000));
+        propertyReader.readDescriptors();
+        
+        assertSame(snapshot, propertyReader.getSnapshot());
+        assertEquals(1, propertyReader.getReloadStatistics().getSkippedReloadCount());
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSnapshotIsImmutable() {
+        props.setProperty(XmlPropertyReader.CONFIG_PROPERTY, CONFIG_FILE1);
+        propertyReader.initialize(props);
+        
+        propertyReader.getSnapshot().getDescriptors().remove("test");
+    }
+    
+    @Test
+    public void testOnlyChangedFeaturesAreReplaced() throws IOException {
+        File out = File.createTempFile("flip_", ".xml");
+        writeFile(out, "<feature name=\"a\" state=\"enabled\"><rule state=\"enabled\"><condition>1 == 1</condition></rule></feature>"
+                + "<feature name=\"b\" state=\"enabled\"/><feature name=\"c\" state=\"disabled\"/>");
+        props.setProperty(XmlPropertyReader.CONFIG_PROPERTY, out.getAbsolutePath());
+        propertyReader.initialize(props);
+        FeatureSnapshot snapshot = propertyReader.getSnapshot();
+        final AtomicReference<FeatureChangeEvent> event = new AtomicReference<FeatureChangeEvent>();
+        propertyReader.addFeatureChangeListener(new FeatureChangeListener() {
+            @Override
+            public void featuresChanged(FeatureChangeEvent e) {
+                event.set(e);
+            }
+        });
+        
+        writeFile(out, "<feature name=\"a\" state=\"enabled\"><rule state=\"enabled\"><condition>1 == 1</condition></rule></feature>"
+                + "<feature name=\"b\" state=\"disabled\"/><feature name=\"d\" state=\"enabled\"/>");
+        propertyReader.readDescriptors();
+        out.delete();
+        
+        assertSame(snapshot.get("a"), propertyReader.getFeatureDescriptor("a"));
+        assertNotSame(snapshot.get("b"), propertyReader.getFeatureDescriptor("b"));
+        assertEquals(Collections.singleton("d"), event.get().getAddedFeatures());
+        assertEquals(Collections.singleton("c"), event.get().getRemovedFeatures());
+        assertEquals(Collections.singleton("b"), event.get().getModifiedFeatures());
+        assertTrue(event.get().isChanged("b"));
+        assertFalse(event.get().isChanged("a"));
+    }
+    
+    private void writeFile(File dst, String features) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(dst), "UTF-8");
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?><features xmlns=\"http://www.tacitknowledge.com/flip\">");
+        out.write(features);
+        out.write("</features>");
+        out.close();
+    }
+    
     private void copyFile(File src, File dst) {
         try {
             dst.delete();
@@ -0,0 +1,168 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.spi;
+
+import com.tacitknowledge.flip.context.FlipContext;
+import com.tacitknowledge.flip.properties.FlipProperty;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class ProviderIndexProcessorTest {
+
+    private File directory;
+    private File output;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = createDirectory();
+        output = new File(directory, "classes");
+        output.mkdir();
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    @Test
+    public void testIndexIsWrittenForMarkedClasses() throws IOException {
+        compile(directory, output, true,
+                "test.index.Context", "package test.index; @com.tacitknowledge.flip.context.FlipContext(name = \"c7\", priority = 7) public class Context { }",
+                "test.index.Readers", "package test.index; public class Readers { "
+                        + "@com.tacitknowledge.flip.properties.FlipProperty(priority = 3) public static class Reader { } }",
+                "test.index.Plain", "package test.index; public class Plain { }");
+
+        Map<String, Integer> contexts = readIndex(output, FlipContext.class);
+        assertEquals(Collections.singletonMap("test.index.Context", 7), contexts);
+
+        Map<String, Integer> properties = readIndex(output, FlipProperty.class);
+        assertEquals(Collections.singletonMap("test.index.Readers$Reader", 3), properties);
+    }
+
+    @Test
+    public void testIndexIsNotWrittenWithoutMarkedClasses() throws IOException {
+        compile(directory, output, true,
+                "test.index.Plain", "package test.index; @Deprecated public class Plain { }");
+
+        assertFalse(new File(output, "META-INF/flip").exists());
+    }
+
+    @Test
+    public void testExistingIndexIsMergedWhileClassesAreMarked() throws IOException {
+        compile(directory, output, true,
+                "test.index.First", "package test.index; @com.tacitknowledge.flip.context.FlipContext(name = \"c1\", priority = 1) public class First { }",
+                "test.index.Second", "package test.index; @com.tacitknowledge.flip.context.FlipContext(name = \"c2\", priority = 2) public class Second { }",
+                "test.index.Third", "package test.index; @com.tacitknowledge.flip.context.FlipContext(name = \"c3\", priority = 3) public class Third { }");
+
+        compile(directory, output, true,
+                "test.index.First", "package test.index; @com.tacitknowledge.flip.context.FlipContext(name = \"c5\", priority = 5) public class First { }",
+                "test.index.Third", "package test.index; public class Third { }");
+
+        Map<String, Integer> contexts = readIndex(output, FlipContext.class);
+        assertEquals(2, contexts.size());
+        assertEquals(Integer.valueOf(5), contexts.get("test.index.First"));
+        assertEquals(Integer.valueOf(2), contexts.get("test.index.Second"));
+        assertFalse(contexts.containsKey("test.index.Third"));
+    }
+
+    private Map<String, Integer> readIndex(File root, Class<?> annotationClass) throws IOException {
+        File file = new File(root, ServiceProvider.INDEX_LOCATION + annotationClass.getName());
+        assertTrue(file.exists());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            return ServiceProvider.readIndex(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Compiles the sources passed as pairs of class name and source code. The
+     * output directory is on the class path of the compilation. The index is
+     * written only if the processor is enabled.
+     */
+    static void compile(File directory, File output, boolean index, String... sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("The tests should run on JDK.", compiler);
+
+        File sourceDirectory = new File(directory, "src");
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < sources.length; i += 2) {
+            File file = new File(sourceDirectory, sources[i].replace('.', '/') + ".java");
+            file.getParentFile().mkdirs();
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            try {
+                writer.write(sources[i + 1]);
+            } finally {
+                writer.close();
+            }
+            files.add(file);
+        }
+
+        String classpath = output.getPath() + File.pathSeparator
+                + new File(FlipContext.class.getProtectionDomain().getCodeSource().getLocation().getPath()).getPath();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        try {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null,
+                    Arrays.asList("-d", output.getPath(), "-classpath", classpath, index ? "-implicit:class" : "-proc:none"),
+                    null, fileManager.getJavaFileObjectsFromFiles(files));
+            if (index) {
+                task.setProcessors(Collections.singletonList(new ProviderIndexProcessor()));
+            }
+            assertTrue(task.call());
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    static File createDirectory() throws IOException {
+        File directory = File.createTempFile("flip_", "");
+        directory.delete();
+        directory.mkdir();
+        return directory;
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
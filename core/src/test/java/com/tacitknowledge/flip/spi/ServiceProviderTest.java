@@ -18,9 +18,24 @@ import com.tacitknowledge.flip.fixtures.TestContextProvider;
 import com.tacitknowledge.flip.otherfixtures.Test1ContextProvider;
 import com.tacitknowledge.flip.properties.FlipProperty;
 import com.tacitknowledge.flip.properties.PropertyReader;
+import com.tacitknowledge.flip.properties.XmlPropertyReader;
 import com.tacitknowledge.flip.context.FlipContext;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import org.junit.Before;
@@ -88,6 +103,122 @@ public class ServiceProviderTest {
         testAllItemsOfType(objects, PropertyReader.class);
     }
 
+    @Test
+    public void testIndexIsWrittenAtCompileTime() throws IOException {
+        boolean found = false;
+        Enumeration<URL> urls = getClass().getClassLoader().getResources(ServiceProvider.INDEX_LOCATION + FlipContext.class.getName());
+        while(urls.hasMoreElements()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(urls.nextElement().openStream(), "UTF-8"));
+            try {
+                Map<String, Integer> index = ServiceProvider.readIndex(reader);
+                found |= Integer.valueOf(2).equals(index.get(TestContextProvider.class.getName()));
+            } finally {
+                reader.close();
+            }
+        }
+        assertTrue(found);
+    }
+    
+    @Test
+    public void testCoreIndexMatchesMarkedClasses() throws IOException {
+        URL root = XmlPropertyReader.class.getProtectionDomain().getCodeSource().getLocation();
+        serviceProvider = new ServiceProvider("com.tacitknowledge.flip");
+        
+        Map<String, Integer> properties = new HashMap<String, Integer>();
+        for (Class<?> type : serviceProvider.scan(FlipProperty.class, Collections.singleton(root))) {
+            properties.put(type.getName(), type.getAnnotation(FlipProperty.class).priority());
+        }
+        Map<String, Integer> contexts = new HashMap<String, Integer>();
+        for (Class<?> type : serviceProvider.scan(FlipContext.class, Collections.singleton(root))) {
+            contexts.put(type.getName(), type.getAnnotation(FlipContext.class).priority());
+        }
+        
+        assertFalse(properties.isEmpty());
+        assertEquals(properties, readIndex(root, FlipProperty.class));
+        assertEquals(contexts, readIndex(root, FlipContext.class));
+    }
+    
+    @Test
+    public void testIndexedClassesAreNotScanned() {
+        final Set<URL> scanned = new HashSet<URL>();
+        serviceProvider = new ServiceProvider("com.tacitknowledge.flip.fixtures") {
+            @Override
+            protected Collection<Class<?>> scan(Class<? extends Annotation> annotationClass, Set<URL> roots) {
+                scanned.addAll(roots);
+                return super.scan(annotationClass, roots);
+            }
+        };
+        
+        assertTrue(serviceProvider.findClass(FlipContext.class).contains(TestContextProvider.class));
+        assertTrue(scanned.isEmpty());
+    }
+    
+    @Test
+    public void testClassesAreScannedIfIndexIsIgnored() {
+        final Set<URL> scanned = new HashSet<URL>();
+        serviceProvider = new ServiceProvider("com.tacitknowledge.flip.fixtures") {
+            @Override
+            protected Collection<Class<?>> scan(Class<? extends Annotation> annotationClass, Set<URL> roots) {
+                scanned.addAll(roots);
+                return super.scan(annotationClass, roots);
+            }
+        };
+        
+        System.setProperty(ServiceProvider.IGNORE_INDEX_PROPERTY, "true");
+        try {
+            assertTrue(serviceProvider.findClass(FlipContext.class).contains(TestContextProvider.class));
+            assertFalse(scanned.isEmpty());
+        } finally {
+            System.clearProperty(ServiceProvider.IGNORE_INDEX_PROPERTY);
+        }
+    }
+    
+    @Test
+    public void testIndexedClassesAreMergedWithScannedClasses() throws Exception {
+        File directory = ProviderIndexProcessorTest.createDirectory();
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            File output = new File(directory, "classes");
+            output.mkdir();
+            ProviderIndexProcessorTest.compile(directory, output, false,
+                    "com.tacitknowledge.flip.fixtures.ScannedContextProvider",
+                    "package com.tacitknowledge.flip.fixtures; @com.tacitknowledge.flip.context.FlipContext(name = \"scanned\") public class ScannedContextProvider { }");
+            URL root = output.toURI().toURL();
+            Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[] {root}, contextClassLoader));
+            
+            final Set<URL> scanned = new HashSet<URL>();
+            serviceProvider = new ServiceProvider("com.tacitknowledge.flip.fixtures") {
+                @Override
+                protected Collection<Class<?>> scan(Class<? extends Annotation> annotationClass, Set<URL> roots) {
+                    scanned.addAll(roots);
+                    return super.scan(annotationClass, roots);
+                }
+            };
+            
+            Set<String> names = new HashSet<String>();
+            for (Class<?> type : serviceProvider.findClass(FlipContext.class)) {
+                names.add(type.getName());
+            }
+            assertTrue(names.contains(TestContextProvider.class.getName()));
+            assertTrue(names.contains("com.tacitknowledge.flip.fixtures.ScannedContextProvider"));
+            assertEquals(1, scanned.size());
+            assertEquals(root.toExternalForm().replaceAll("/$", ""), scanned.iterator().next().toExternalForm().replaceAll("/$", ""));
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+            ProviderIndexProcessorTest.delete(directory);
+        }
+    }
+
+    private Map<String, Integer> readIndex(URL root, Class<? extends Annotation> annotationClass) throws IOException {
+        URL url = new URL(root, ServiceProvider.INDEX_LOCATION + annotationClass.getName());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
+        try {
+            return ServiceProvider.readIndex(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
     private void testAllItemsAreAnnotatedWith(Collection<Class<?>> obj, Class annotationType) {
         Iterator<Class<?>> i = obj.iterator();
         while(i.hasNext()) {
@@ -0,0 +1,68 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.servlet;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import com.tacitknowledge.flip.context.EvaluationScope;
+
+/**
+ * Filter which opens an {@link EvaluationScope} for each request. While the 
+ * request is processed each context property is read from its context provider 
+ * only once, no matter how many features reference it. The scope is closed 
+ * when the request processing completes.
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FlipEvaluationScopeFilter implements Filter
+{
+
+    public void init(final FilterConfig filterConfig) throws ServletException
+    {
+
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain)
+        throws IOException, ServletException
+    {
+        final EvaluationScope scope = EvaluationScope.open();
+        try
+        {
+            chain.doFilter(request, response);
+        }
+        finally
+        {
+            scope.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    public void destroy()
+    {
+
+    }
+}
@@ -0,0 +1,86 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.servlet;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.tacitknowledge.flip.context.EvaluationScope;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FlipEvaluationScopeFilterTest
+{
+
+    private FlipEvaluationScopeFilter filter;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private FilterChain filterChain;
+    
+    @Before
+    public void setUp() {
+        filter = new FlipEvaluationScopeFilter();
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        filterChain = mock(FilterChain.class);
+    }
+    
+    @Test
+    public void testScopeIsOpenDuringRequest() throws IOException, ServletException {
+        doAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) {
+                assertNotNull(EvaluationScope.current());
+                return null;
+            }
+        }).when(filterChain).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+        
+        filter.doFilter(request, response, filterChain);
+        
+        assertNull(EvaluationScope.current());
+    }
+    
+    @Test
+    public void testScopeIsClosedOnFailure() throws IOException, ServletException {
+        doThrow(new ServletException()).when(filterChain).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+        
+        try {
+            filter.doFilter(request, response, filterChain);
+        } catch (ServletException ex) {
+            // expected
+        }
+        
+        assertNull(EvaluationScope.current());
+    }
+}
@@ -0,0 +1,51 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.spring;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.tacitknowledge.flip.context.EvaluationScope;
+
+/**
+ * The Spring MVC interceptor which opens an {@link EvaluationScope} before the 
+ * handler is invoked and closes it after the request is completed, so each 
+ * context property is read from its context provider once per request. 
+ * 
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FlipEvaluationScopeInterceptor extends HandlerInterceptorAdapter {
+
+    /** {@inheritDoc } */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) 
+            throws Exception {
+        EvaluationScope.open();
+        return true;
+    }
+
+    /** {@inheritDoc } */
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, 
+            Exception ex) throws Exception {
+        final EvaluationScope scope = EvaluationScope.current();
+        if (scope != null) {
+            scope.close();
+        }
+    }
+    
+}
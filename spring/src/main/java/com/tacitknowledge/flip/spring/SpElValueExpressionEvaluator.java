@@ -15,21 +15,116 @@
  */
 package com.tacitknowledge.flip.spring;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import com.tacitknowledge.flip.aspectj.ValueExpressionEvaluator;
+import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 
 /**
  * The SpEL value expression evaluator used in spring managed application.
+ * The parsed expressions are cached by the expression string, so the disabled 
+ * values are not parsed on each call. When the cache is full the least recently 
+ * used expression is evicted.
  * 
  * @author ssoloviov
  */
 public class SpElValueExpressionEvaluator implements ValueExpressionEvaluator {
+    
+    /**
+     * The default maximum number of parsed expressions held by the evaluator.
+     */
+    public static final int DEFAULT_MAX_CACHE_SIZE = 256;
+    
+    private final ExpressionParser parser = new SpelExpressionParser();
+    
+    private final Map<String, Expression> expressions = new LinkedHashMap<String, Expression>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+            return size() > maxCacheSize;
+        }
+    };
+    
+    private volatile int maxCacheSize;
+
+    /**
+     * Constructs the evaluator with the default cache size.
+     */
+    public SpElValueExpressionEvaluator() {
+        this(DEFAULT_MAX_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs the evaluator which holds at most <code>maxCacheSize</code> parsed expressions.
+     * 
+     * @param maxCacheSize the maximum number of expressions to hold.
+     * @throws IllegalArgumentException if the <code>maxCacheSize</code> is not positive.
+     */
+    public SpElValueExpressionEvaluator(int maxCacheSize) {
+        setMaxCacheSize(maxCacheSize);
+    }
 
     /** {@inheritDoc } */
     public Object evaluate(Object context, String expression) {
-        final ExpressionParser parser = new SpelExpressionParser();
-        return parser.parseExpression(expression).getValue(context);
+        return getExpression(expression).getValue(context);
+    }
+    
+    /**
+     * Returns the parsed expression for the string passed. If the expression 
+     * was parsed before it is taken from the cache.
+     * 
+     * @param expression the expression string.
+     * @return the parsed expression.
+     */
+    private Expression getExpression(String expression) {
+        synchronized (expressions) {
+            Expression result = expressions.get(expression);
+            if (result != null) {
+                return result;
+            }
+        }
+        
+        Expression result = parser.parseExpression(expression);
+        synchronized (expressions) {
+            expressions.put(expression, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of parsed expressions held by the evaluator.
+     * 
+     * @return the maximum cache size.
+     */
+    public int getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of parsed expressions held by the evaluator. 
+     * If there are more expressions cached they are evicted as the new ones are parsed.
+     * 
+     * @param maxCacheSize the maximum number of expressions to hold.
+     * @throws IllegalArgumentException if the <code>maxCacheSize</code> is not positive.
+     */
+    public void setMaxCacheSize(int maxCacheSize) {
+        if (maxCacheSize <= 0) {
+            throw new IllegalArgumentException("The maximum size of expression cache should be positive.");
+        }
+        this.maxCacheSize = maxCacheSize;
+    }
+    
+    /**
+     * Returns the number of parsed expressions held by the evaluator.
+     * 
+     * @return the current cache size.
+     */
+    public int getCacheSize() {
+        synchronized (expressions) {
+            return expressions.size();
+        }
     }
     
 }
@@ -0,0 +1,44 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.spring;
+
+import com.tacitknowledge.flip.context.EvaluationScope;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class FlipEvaluationScopeInterceptorTest {
+    
+    @Test
+    public void testScopeIsOpenUntilCompletion() throws Exception {
+        FlipEvaluationScopeInterceptor interceptor = new FlipEvaluationScopeInterceptor();
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        
+        assertTrue(interceptor.preHandle(request, response, null));
+        assertNotNull(EvaluationScope.current());
+        
+        interceptor.afterCompletion(request, response, null, null);
+        assertNull(EvaluationScope.current());
+    }
+}
@@ -0,0 +1,62 @@
+/* Copyright 2012 Tacit Knowledge
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.tacitknowledge.flip.spring;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author Serghei Soloviov <ssoloviov@tacitknowledge.com>
+ */
+public class SpElValueExpressionEvaluatorTest {
+    
+    @Test
+    public void testExpressionIsParsedOnce() {
+        SpElValueExpressionEvaluator evaluator = new SpElValueExpressionEvaluator();
+        
+        assertEquals("abc", evaluator.evaluate(new Fixture("abc"), "value"));
+        assertEquals("xyz", evaluator.evaluate(new Fixture("xyz"), "value"));
+        assertEquals(1, evaluator.getCacheSize());
+    }
+    
+    @Test
+    public void testCacheIsBounded() {
+        SpElValueExpressionEvaluator evaluator = new SpElValueExpressionEvaluator(2);
+        
+        evaluator.evaluate(new Fixture("abc"), "value");
+        evaluator.evaluate(new Fixture("abc"), "value + '1'");
+        assertEquals("abc2", evaluator.evaluate(new Fixture("abc"), "value + '2'"));
+        assertEquals(2, evaluator.getCacheSize());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testCacheSizeShouldBePositive() {
+        new SpElValueExpressionEvaluator(0);
+    }
+    
+    public static class Fixture {
+        
+        private final String value;
+
+        public Fixture(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+}